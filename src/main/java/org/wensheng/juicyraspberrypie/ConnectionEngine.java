@@ -0,0 +1,190 @@
+package org.wensheng.juicyraspberrypie;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+
+/**
+ * A single selector loop that accepts incoming connections and performs the non-blocking socket I/O of all sessions.
+ */
+public class ConnectionEngine implements Runnable {
+	/**
+	 * The selector all channels are registered with.
+	 */
+	private final Selector selector;
+
+	/**
+	 * The server socket channel.
+	 */
+	private final ServerSocketChannel serverChannel;
+
+	/**
+	 * The plugin.
+	 */
+	private final JuicyRaspberryPie plugin;
+
+	/**
+	 * The keys of sessions whose reading should be resumed by the selector loop.
+	 */
+	private final Queue<SelectionKey> pendingResumes = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Create a new connection engine.
+	 *
+	 * @param plugin      The plugin.
+	 * @param bindAddress The address to bind to.
+	 * @throws IOException If the selector or the server socket cannot be created.
+	 */
+	@SuppressFBWarnings("CT_CONSTRUCTOR_THROW")
+	public ConnectionEngine(final JuicyRaspberryPie plugin, final SocketAddress bindAddress) throws IOException {
+		this.plugin = plugin;
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		serverChannel.bind(bindAddress);
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/**
+	 * Close the server socket and stop the selector loop.
+	 */
+	public void close() {
+		try {
+			serverChannel.close();
+		} catch (final IOException e) {
+			plugin.getLogger().log(Level.WARNING, "Error closing server socket", e);
+		}
+		selector.wakeup();
+	}
+
+	/**
+	 * Register interest in writing to the channel of the given key and wake up the selector loop.
+	 * May be called from any thread.
+	 *
+	 * @param key The selection key of the session.
+	 */
+	public void requestWrite(final SelectionKey key) {
+		try {
+			key.interestOpsOr(SelectionKey.OP_WRITE);
+			selector.wakeup();
+		} catch (final CancelledKeyException e) {
+			plugin.getLogger().log(Level.FINE, "Dropping write request for closed connection", e);
+		}
+	}
+
+	/**
+	 * Resume reading from the channel of the given key in the selector loop.
+	 * May be called from any thread.
+	 *
+	 * @param key The selection key of the session.
+	 */
+	public void resumeReading(final SelectionKey key) {
+		pendingResumes.add(key);
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		while (serverChannel.isOpen()) {
+			try {
+				selector.select();
+				processPendingResumes();
+				final Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+				while (selectedKeys.hasNext()) {
+					final SelectionKey key = selectedKeys.next();
+					selectedKeys.remove();
+					handleKey(key);
+				}
+			} catch (final IOException e) {
+				plugin.getLogger().log(Level.WARNING, "Error in connection selector loop", e);
+			}
+		}
+		try {
+			selector.close();
+		} catch (final IOException e) {
+			plugin.getLogger().log(Level.WARNING, "Error closing selector", e);
+		}
+	}
+
+	@SuppressWarnings("PMD.AvoidCatchingGenericException")
+	private void processPendingResumes() {
+		SelectionKey key = pendingResumes.poll();
+		while (key != null) {
+			if (key.isValid()) {
+				final RemoteSession session = (RemoteSession) key.attachment();
+				try {
+					session.resumeReading();
+				} catch (final IOException | RuntimeException e) {
+					session.disconnect(e);
+				}
+			}
+			key = pendingResumes.poll();
+		}
+	}
+
+	@SuppressWarnings("PMD.AvoidCatchingGenericException")
+	private void handleKey(final SelectionKey key) {
+		if (!key.isValid()) {
+			return;
+		}
+		if (key.isAcceptable()) {
+			accept();
+			return;
+		}
+		final RemoteSession session = (RemoteSession) key.attachment();
+		try {
+			if (key.isReadable()) {
+				session.read();
+			}
+			if (key.isValid() && key.isWritable()) {
+				session.write();
+			}
+		} catch (final IOException | RuntimeException e) {
+			// a failing session must not end the selector loop that serves all other sessions
+			session.disconnect(e);
+		}
+	}
+
+	@SuppressWarnings({"PMD.CloseResource", "PMD.AvoidCatchingGenericException"})
+	private void accept() {
+		SocketChannel channel = null;
+		try {
+			channel = serverChannel.accept();
+			if (channel == null) {
+				return;
+			}
+			channel.configureBlocking(false);
+			final RemoteSession session = new RemoteSession(plugin, channel, this);
+			session.setKey(channel.register(selector, SelectionKey.OP_READ, session));
+			plugin.handleConnection(session);
+		} catch (final IOException | RuntimeException e) {
+			if (serverChannel.isOpen()) {
+				plugin.getLogger().log(Level.WARNING, "Error creating new connection", e);
+			}
+			closeQuietly(channel);
+		}
+	}
+
+	private void closeQuietly(final SocketChannel channel) {
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.close();
+		} catch (final IOException e) {
+			plugin.getLogger().log(Level.FINE, "Error closing rejected connection", e);
+		}
+	}
+}
@@ -1,13 +1,17 @@
 package org.wensheng.juicyraspberrypie;
 
+import org.apache.commons.lang3.math.NumberUtils;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.event.Listener;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 import org.wensheng.juicyraspberrypie.command.Registry;
+import org.wensheng.juicyraspberrypie.command.block.BlockDataCache;
+import org.wensheng.juicyraspberrypie.command.block.ChunkPreloader;
 import org.wensheng.juicyraspberrypie.command.entity.EntityByPlayerNameProvider;
 import org.wensheng.juicyraspberrypie.command.entity.EntityByUUIDProvider;
+import org.wensheng.juicyraspberrypie.command.job.JobManager;
 import org.wensheng.juicyraspberrypie.command.handlers.GetPlayer;
 import org.wensheng.juicyraspberrypie.command.handlers.SetPlayer;
 import org.wensheng.juicyraspberrypie.command.handlers.chat.Post;
@@ -28,20 +32,49 @@ import org.wensheng.juicyraspberrypie.command.handlers.entity.SetTile;
 import org.wensheng.juicyraspberrypie.command.handlers.entity.WalkTo;
 import org.wensheng.juicyraspberrypie.command.handlers.events.Clear;
 import org.wensheng.juicyraspberrypie.command.handlers.events.chat.Posts;
+import org.wensheng.juicyraspberrypie.command.handlers.events.jobs.Completed;
+import org.wensheng.juicyraspberrypie.command.handlers.jobs.Cancel;
+import org.wensheng.juicyraspberrypie.command.handlers.jobs.GetBlocksInJob;
+import org.wensheng.juicyraspberrypie.command.handlers.jobs.Progress;
+import org.wensheng.juicyraspberrypie.command.handlers.jobs.RedoInJob;
+import org.wensheng.juicyraspberrypie.command.handlers.jobs.Result;
+import org.wensheng.juicyraspberrypie.command.handlers.jobs.SetBlockListInJob;
+import org.wensheng.juicyraspberrypie.command.handlers.jobs.SetBlocksInJob;
+import org.wensheng.juicyraspberrypie.command.handlers.jobs.SetMesh;
+import org.wensheng.juicyraspberrypie.command.handlers.jobs.Status;
+import org.wensheng.juicyraspberrypie.command.handlers.jobs.UndoInJob;
+import org.wensheng.juicyraspberrypie.command.handlers.protocol.Batch;
+import org.wensheng.juicyraspberrypie.command.handlers.protocol.Commands;
+import org.wensheng.juicyraspberrypie.command.handlers.protocol.Materials;
+import org.wensheng.juicyraspberrypie.command.handlers.world.CopyBlocks;
 import org.wensheng.juicyraspberrypie.command.handlers.world.GetBlock;
 import org.wensheng.juicyraspberrypie.command.handlers.world.GetBlockWithData;
 import org.wensheng.juicyraspberrypie.command.handlers.world.GetBlocks;
+import org.wensheng.juicyraspberrypie.command.handlers.world.GetBlocksEncoded;
 import org.wensheng.juicyraspberrypie.command.handlers.world.GetHeight;
+import org.wensheng.juicyraspberrypie.command.handlers.world.GetHeights;
 import org.wensheng.juicyraspberrypie.command.handlers.world.GetNearbyEntities;
 import org.wensheng.juicyraspberrypie.command.handlers.world.GetPlayerId;
 import org.wensheng.juicyraspberrypie.command.handlers.world.GetPlayerIds;
 import org.wensheng.juicyraspberrypie.command.handlers.world.IsBlockPassable;
+import org.wensheng.juicyraspberrypie.command.handlers.world.Preload;
+import org.wensheng.juicyraspberrypie.command.handlers.world.Redo;
 import org.wensheng.juicyraspberrypie.command.handlers.world.SetBlock;
+import org.wensheng.juicyraspberrypie.command.handlers.world.SetBlockList;
 import org.wensheng.juicyraspberrypie.command.handlers.world.SetBlocks;
+import org.wensheng.juicyraspberrypie.command.handlers.world.SetCylinder;
+import org.wensheng.juicyraspberrypie.command.handlers.world.SetDiffMode;
+import org.wensheng.juicyraspberrypie.command.handlers.world.SetLine;
+import org.wensheng.juicyraspberrypie.command.handlers.world.SetPolygon;
+import org.wensheng.juicyraspberrypie.command.handlers.world.SetUndoJournal;
 import org.wensheng.juicyraspberrypie.command.handlers.world.SetPowered;
 import org.wensheng.juicyraspberrypie.command.handlers.world.SetSign;
+import org.wensheng.juicyraspberrypie.command.handlers.world.SetSphere;
 import org.wensheng.juicyraspberrypie.command.handlers.world.SpawnEntity;
 import org.wensheng.juicyraspberrypie.command.handlers.world.SpawnParticle;
+import org.wensheng.juicyraspberrypie.command.handlers.world.SpawnParticles;
+import org.wensheng.juicyraspberrypie.command.handlers.world.Undo;
+import org.wensheng.juicyraspberrypie.command.particle.ParticleLimiter;
 import org.wensheng.juicyraspberrypie.listener.EntityListener;
 
 import java.io.BufferedReader;
@@ -52,24 +85,42 @@ import java.io.InputStreamReader;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 @SuppressWarnings({"PMD.CommentRequired", "PMD.AvoidSynchronizedStatement"})
 public class JuicyRaspberryPie extends JavaPlugin implements Listener {
+	private static final long TICKS_PER_SECOND = 20;
+
 	private final Logger logger = Logger.getLogger("Minecraft");
 
-	private ServerListenerThread serverThread;
+	private ConnectionEngine connectionEngine;
+
+	private volatile SessionScheduler sessionScheduler;
+
+	private volatile TickBudget tickBudget;
+
+	private ExecutorService workers;
 
-	private final List<RemoteSession> sessions = new ArrayList<>();
+	private ChunkPreloader chunkPreloader;
+
+	private ParticleLimiter particleLimiter;
 
 	@NotNull
 	private final Registry registry = new Registry();
 
+	private JobManager jobManager;
+
+	@NotNull
+	private final BlockDataCache blockDataCache = new BlockDataCache();
+
 	public JuicyRaspberryPie() {
 		super();
 	}
@@ -113,16 +164,26 @@ public class JuicyRaspberryPie extends JavaPlugin implements Listener {
 	public void onEnable() {
 		this.saveDefaultConfig();
 		final int port = this.getConfig().getInt("api_port");
+		workers = createWorkers();
+		jobManager = new JobManager(getConfig().getLong("job-result-seconds", 300) * TICKS_PER_SECOND);
+		chunkPreloader = new ChunkPreloader(this, getConfig().getInt("preload-max-chunks", 1024));
+		particleLimiter = new ParticleLimiter(getConfig().getDouble("particle-view-distance", 48),
+				getConfig().getInt("particle-limit-per-player", 2000));
 		setupRegistry();
 		getServer().getPluginManager().registerEvents(new EntityListener(this), this);
+		// the connection thread hands new sessions to the scheduler right away, so it must exist before the thread starts
+		sessionScheduler = new SessionScheduler(loadSessionWeights());
+		tickBudget = new TickBudget(getConfig().getLong("tick-budget-nanos", 25_000_000L),
+				getConfig().getLong("session-tick-budget-nanos", 10_000_000L),
+				getConfig().getLong("job-tick-budget-nanos", 10_000_000L));
 
-		//create new tcp listener thread
+		//create new tcp connection engine
 		try {
-			serverThread = new ServerListenerThread(this, new InetSocketAddress(port));
-			new Thread(serverThread).start();
-			logger.info("ThreadListener Started");
+			connectionEngine = new ConnectionEngine(this, new InetSocketAddress(port));
+			new Thread(connectionEngine, "JuicyRaspberryPie-Connections").start();
+			logger.info("ConnectionEngine Started");
 		} catch (final IOException e) {
-			logger.log(Level.WARNING, "Failed to start ThreadListener", e);
+			logger.log(Level.WARNING, "Failed to start ConnectionEngine", e);
 			return;
 		}
 		getServer().getScheduler().scheduleSyncRepeatingTask(this, new TickHandler(), 1, 1);
@@ -168,13 +229,20 @@ public class JuicyRaspberryPie extends JavaPlugin implements Listener {
 		}
 
 		getServer().getScheduler().cancelTasks(this);
-		for (final RemoteSession session : sessions) {
-			session.close();
+		if (sessionScheduler != null) {
+			sessionScheduler.closeAll();
+		}
+		if (jobManager != null) {
+			jobManager.clear();
+		}
+		logger.info("Block data cache: " + blockDataCache);
+		if (workers != null) {
+			workers.shutdownNow();
 		}
 
-		if (serverThread != null) {
-			serverThread.close();
-			serverThread = null;
+		if (connectionEngine != null) {
+			connectionEngine.close();
+			connectionEngine = null;
 		}
 	}
 
@@ -213,16 +281,11 @@ public class JuicyRaspberryPie extends JavaPlugin implements Listener {
 
 		@Override
 		public void run() {
-			final Iterator<RemoteSession> remoteSessionIterator = sessions.iterator();
-			while (remoteSessionIterator.hasNext()) {
-				final RemoteSession session = remoteSessionIterator.next();
-				if (session.isPendingRemoval()) {
-					session.close();
-					remoteSessionIterator.remove();
-				} else {
-					session.tick();
-				}
-			}
+			tickBudget.startTick(getServer().getAverageTickTime());
+			particleLimiter.nextTick();
+			sessionScheduler.tick(tickBudget);
+			tickBudget.spend(jobManager.tick(tickBudget.jobAllowance()));
+			tickBudget.endTick();
 		}
 	}
 
@@ -235,9 +298,49 @@ public class JuicyRaspberryPie extends JavaPlugin implements Listener {
 			newSession.kick("You've been banned from this server!");
 			return;
 		}
-		synchronized (sessions) {
-			sessions.add(newSession);
+		sessionScheduler.add(newSession);
+	}
+
+	@SuppressWarnings("PMD.DoNotUseThreads")
+	private ExecutorService createWorkers() {
+		final int configured = getConfig().getInt("worker-threads", 0);
+		final int threads = configured > 0 ? configured : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+		final AtomicInteger count = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, runnable -> {
+			final Thread thread = new Thread(runnable, "JuicyRaspberryPie-Worker-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Get the directory for the undo journal files, deleting the files left behind if the server was not stopped cleanly.
+	 */
+	private Path getUndoDirectory() {
+		final File undoFolder = new File(getDataFolder(), "undo");
+		final File[] staleFiles = undoFolder.listFiles((dir, name) -> name.endsWith(".journal"));
+		if (staleFiles != null) {
+			for (final File staleFile : staleFiles) {
+				if (!staleFile.delete()) {
+					logger.warning("Could not delete stale undo journal " + staleFile);
+				}
+			}
+		}
+		return undoFolder.toPath();
+	}
+
+	private Map<String, Double> loadSessionWeights() {
+		final Map<String, Double> weights = new HashMap<>();
+		for (final String entry : getConfig().getStringList("session-weights")) {
+			final int separator = entry.lastIndexOf('=');
+			final double weight = separator < 0 ? 0 : NumberUtils.toDouble(entry.substring(separator + 1).trim());
+			if (weight > 0) {
+				weights.put(entry.substring(0, separator).trim(), weight);
+			} else {
+				logger.warning("Ignoring invalid session weight '" + entry + "', expected <ip address>=<positive weight>.");
+			}
 		}
+		return weights;
 	}
 
 	private boolean checkBanned(final RemoteSession session) {
@@ -255,31 +358,81 @@ public class JuicyRaspberryPie extends JavaPlugin implements Listener {
 		return registry;
 	}
 
+	/**
+	 * Get the preloader loading the chunks of commands in the background.
+	 *
+	 * @return The chunk preloader.
+	 */
+	public @NotNull ChunkPreloader getChunkPreloader() {
+		return chunkPreloader;
+	}
+
 	private void setupRegistry() {
 		final EntityByPlayerNameProvider playerEntityProvider = new EntityByPlayerNameProvider();
 		final EntityByUUIDProvider entityProvider = new EntityByUUIDProvider(getServer());
+		final long maxGetBlocks = getConfig().getLong("get-blocks-max-blocks", 4_194_304L);
+		final int maxSnapshotChunks = chunkPreloader.getMaxChunks();
 
 		registry.register("getPlayer", new GetPlayer());
 		registry.register("setPlayer", new SetPlayer());
 		registry.register("world.getBlock", new GetBlock());
-		registry.register("world.getBlocks", new GetBlocks());
+		registry.register("world.getBlocks", new GetBlocks(workers, maxGetBlocks, maxSnapshotChunks));
+		registry.register("world.getBlocksEncoded", new GetBlocksEncoded(workers, maxGetBlocks, maxSnapshotChunks));
 		registry.register("world.getBlockWithData", new GetBlockWithData());
-		registry.register("world.setBlock", new SetBlock());
-		registry.register("world.setBlocks", new SetBlocks());
+		registry.register("world.setBlock", new SetBlock(blockDataCache));
+		registry.register("world.setBlocks", new SetBlocks(blockDataCache));
+		registry.register("world.setBlockList", new SetBlockList(blockDataCache,
+				getConfig().getLong("set-block-list-max-blocks", 262_144L)));
+		registry.register("world.setDiffMode", new SetDiffMode());
+		final long maxShapeBlocks = getConfig().getLong("shape-max-blocks", 1_048_576L);
+		registry.register("world.setSphere", new SetSphere(blockDataCache, maxShapeBlocks));
+		registry.register("world.setCylinder", new SetCylinder(blockDataCache, maxShapeBlocks));
+		registry.register("world.setLine", new SetLine(blockDataCache, maxShapeBlocks));
+		registry.register("world.setPolygon", new SetPolygon(blockDataCache, maxShapeBlocks));
+		final long maxCopyBlocks = getConfig().getLong("copy-max-blocks", 262_144L);
+		registry.register("world.copyBlocks", new CopyBlocks(getServer(), false, maxSnapshotChunks, maxCopyBlocks));
+		registry.register("world.moveBlocks", new CopyBlocks(getServer(), true, maxSnapshotChunks, maxCopyBlocks));
+		registry.register("world.setUndoJournal", new SetUndoJournal(getUndoDirectory(),
+				getConfig().getLong("undo-memory-bytes", 16_777_216L),
+				getConfig().getLong("undo-file-bytes", 268_435_456L),
+				getConfig().getInt("undo-edits", 1024)));
+		final long maxUndoBlocks = getConfig().getLong("undo-max-blocks", 262_144L);
+		registry.register("world.undo", new Undo(maxUndoBlocks));
+		registry.register("world.redo", new Redo(maxUndoBlocks));
 		registry.register("world.isBlockPassable", new IsBlockPassable());
 		registry.register("world.setPowered", new SetPowered());
 		registry.register("world.getPlayerIds", new GetPlayerIds(getServer()));
 		registry.register("world.getPlayerId", new GetPlayerId());
-		registry.register("world.setSign", new SetSign());
+		registry.register("world.setSign", new SetSign(blockDataCache));
 		registry.register("world.getNearbyEntities", new GetNearbyEntities());
 		registry.register("world.spawnEntity", new SpawnEntity());
 		registry.register("world.spawnParticle", new SpawnParticle());
+		registry.register("world.spawnParticles", new SpawnParticles(particleLimiter));
 		registry.register("world.getHeight", new GetHeight());
+		registry.register("world.getHeights", new GetHeights(workers, maxSnapshotChunks));
+		registry.register("world.preload", new Preload(chunkPreloader));
 		registry.register("chat.post", new Post(getServer()));
 		registry.register("events.block.hits", new org.wensheng.juicyraspberrypie.command.handlers.events.block.Hits());
 		registry.register("events.projectile.hits", new org.wensheng.juicyraspberrypie.command.handlers.events.projectile.Hits());
 		registry.register("events.chat.posts", new Posts());
 		registry.register("events.clear", new Clear(registry));
+		registry.register("events.jobs.completed", new Completed(jobManager));
+		registry.register("jobs.setBlocks", new SetBlocksInJob(jobManager, blockDataCache,
+				getConfig().getLong("job-set-blocks-max-blocks", 16_777_216L)));
+		registry.register("jobs.setBlockList", new SetBlockListInJob(jobManager, blockDataCache,
+				getConfig().getLong("job-set-block-list-max-blocks", 4_194_304L)));
+		registry.register("jobs.getBlocks", new GetBlocksInJob(jobManager, maxGetBlocks));
+		final long maxJobUndoBlocks = getConfig().getLong("job-undo-max-blocks", 16_777_216L);
+		registry.register("jobs.undo", new UndoInJob(jobManager, maxJobUndoBlocks));
+		registry.register("jobs.redo", new RedoInJob(jobManager, maxJobUndoBlocks));
+		registry.register("jobs.setMesh", new SetMesh(jobManager, blockDataCache, workers, getConfig().getInt("mesh-max-blocks", 4_194_304)));
+		registry.register("jobs.status", new Status(jobManager));
+		registry.register("jobs.progress", new Progress(jobManager));
+		registry.register("jobs.cancel", new Cancel(jobManager));
+		registry.register("jobs.result", new Result(jobManager));
+		registry.register("batch", new Batch());
+		registry.register("protocol.commands", new Commands(registry));
+		registry.register("protocol.materials", new Materials());
 		registry.register("player.getTile", new GetTile(playerEntityProvider));
 		registry.register("entity.getTile", new GetTile(entityProvider));
 		registry.register("player.setTile", new SetTile(playerEntityProvider));
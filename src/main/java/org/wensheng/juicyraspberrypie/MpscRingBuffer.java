@@ -0,0 +1,126 @@
+package org.wensheng.juicyraspberrypie;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded, lock-free queue for many producer threads and a single consumer thread.
+ * Every slot carries a sequence number that tells producers when it is free and the consumer when it is filled.
+ *
+ * @param <E> The type of the queued elements.
+ */
+final class MpscRingBuffer<E> {
+	/**
+	 * The slots holding the elements.
+	 */
+	private final Object[] elements;
+
+	/**
+	 * The sequence number of every slot.
+	 */
+	private final AtomicLongArray sequences;
+
+	/**
+	 * The mask to map a position to a slot index.
+	 */
+	private final int mask;
+
+	/**
+	 * The next position to be claimed by a producer.
+	 */
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * The next position to be consumed, only advanced by the consumer.
+	 */
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * Create a new ring buffer.
+	 *
+	 * @param capacity The capacity, must be a power of two.
+	 */
+	MpscRingBuffer(final int capacity) {
+		if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+		}
+		elements = new Object[capacity];
+		sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Add an element if there is space left. May be called from any thread.
+	 *
+	 * @param element The element to add.
+	 * @return true if the element was added, false if the buffer is full.
+	 */
+	boolean offer(final E element) {
+		long position = tail.get();
+		while (true) {
+			final int index = (int) (position & mask);
+			final long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (tail.compareAndSet(position, position + 1)) {
+					elements[index] = element;
+					sequences.set(index, position + 1);
+					return true;
+				}
+				position = tail.get();
+			} else if (difference < 0) {
+				return false;
+			} else {
+				position = tail.get();
+			}
+		}
+	}
+
+	/**
+	 * Remove the oldest element. Must only be called from the consumer thread.
+	 *
+	 * @return The oldest element, or null if the buffer is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	E poll() {
+		final long position = head.get();
+		final int index = (int) (position & mask);
+		if (sequences.get(index) != position + 1) {
+			return null;
+		}
+		final E element = (E) elements[index];
+		elements[index] = null;
+		sequences.set(index, position + elements.length);
+		head.lazySet(position + 1);
+		return element;
+	}
+
+	/**
+	 * Get the number of queued elements. The result is only a snapshot while producers are active.
+	 *
+	 * @return The number of queued elements.
+	 */
+	int size() {
+		return (int) Math.max(0, tail.get() - head.get());
+	}
+
+	/**
+	 * Check whether the buffer is empty.
+	 *
+	 * @return true if no element is queued.
+	 */
+	boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Get the capacity.
+	 *
+	 * @return The maximum number of queued elements.
+	 */
+	int capacity() {
+		return elements.length;
+	}
+}
@@ -0,0 +1,264 @@
+package org.wensheng.juicyraspberrypie;
+
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.AsyncHandler;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.HandlerVoid;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A command line that was parsed and resolved by the connection engine, ready to be executed on the server main thread.
+ * Lines that could not be parsed or resolved carry their response instead, so that it is sent in order.
+ * If the client tagged the line with a request id, the response is tagged with the same id.
+ * A batch carries several commands that are executed together and answered with one response.
+ */
+final class ParsedCommand {
+	/**
+	 * The handler, or null if the response is already known.
+	 */
+	private final Handler handler;
+
+	/**
+	 * The instruction for the handler.
+	 */
+	private final Instruction instruction;
+
+	/**
+	 * The response if there is no handler.
+	 */
+	private final String response;
+
+	/**
+	 * The request id to tag the response with, or null.
+	 */
+	private final String requestId;
+
+	/**
+	 * Whether the "OK" response of a successful void command is suppressed.
+	 */
+	private final boolean quiet;
+
+	/**
+	 * Whether the responses after this one are sent as binary frames.
+	 */
+	private final boolean switchingToBinary;
+
+	/**
+	 * The commands of a batch, or null if this is a single command.
+	 */
+	private final ParsedCommand[] batch;
+
+	@SuppressWarnings("PMD.ExcessiveParameterList")
+	private ParsedCommand(final Handler handler, final Instruction instruction, final String response,
+						  final String requestId, final boolean quiet, final boolean switchingToBinary,
+						  final ParsedCommand[] batch) {
+		this.handler = handler;
+		this.instruction = instruction;
+		this.response = response;
+		this.requestId = requestId;
+		this.quiet = quiet;
+		this.switchingToBinary = switchingToBinary;
+		this.batch = batch;
+	}
+
+	/**
+	 * Create a command that is executed by a handler.
+	 *
+	 * @param handler     The handler.
+	 * @param instruction The instruction for the handler.
+	 * @param requestId   The request id to tag the response with, or null.
+	 * @param quiet       Whether to suppress the response of a successful void command.
+	 * @return The command.
+	 */
+	static ParsedCommand of(@NotNull final Handler handler, @NotNull final Instruction instruction,
+							final String requestId, final boolean quiet) {
+		return new ParsedCommand(handler, instruction, null, requestId, quiet, false, null);
+	}
+
+	/**
+	 * Create a command that only answers with a fixed response.
+	 *
+	 * @param response  The response.
+	 * @param requestId The request id to tag the response with, or null.
+	 * @return The command.
+	 */
+	static ParsedCommand answered(@NotNull final String response, final String requestId) {
+		return new ParsedCommand(null, null, response, requestId, false, false, null);
+	}
+
+	/**
+	 * Create a command that acknowledges the switch to the binary protocol.
+	 * The acknowledgement is the last response sent as a text line.
+	 *
+	 * @param requestId The request id to tag the response with, or null.
+	 * @return The command.
+	 */
+	static ParsedCommand switchToBinary(final String requestId) {
+		return new ParsedCommand(null, null, HandlerVoid.OK, requestId, false, true, null);
+	}
+
+	/**
+	 * Create a batch of commands that are executed back-to-back.
+	 *
+	 * @param commands  The commands, their request ids are ignored.
+	 * @param requestId The request id to tag the combined response with, or null.
+	 * @param quiet     Whether to suppress the combined response if every command answered "OK".
+	 * @return The command.
+	 */
+	static ParsedCommand batch(@NotNull final ParsedCommand[] commands, final String requestId, final boolean quiet) {
+		return new ParsedCommand(null, null, null, requestId, quiet, false, commands);
+	}
+
+	/**
+	 * Check whether the responses after the response of this command are sent as binary frames.
+	 *
+	 * @return true if this command switches to the binary protocol
+	 */
+	boolean isSwitchingToBinary() {
+		return switchingToBinary;
+	}
+
+	/**
+	 * Execute the command on the server main thread.
+	 *
+	 * @param attachment The session attachment.
+	 * @return The response, or null if no response should be sent.
+	 */
+	String execute(@NotNull final SessionAttachment attachment) {
+		return tag(result(attachment));
+	}
+
+	/**
+	 * Check whether the command is executed by an {@link AsyncHandler}, or is a batch containing such a command, and
+	 * should be started with {@link #executeAsync(SessionAttachment)}.
+	 *
+	 * @return true if the command completes asynchronously
+	 */
+	boolean isAsync() {
+		if (batch != null) {
+			for (final ParsedCommand command : batch) {
+				if (command.isAsync()) {
+					return true;
+				}
+			}
+			return false;
+		}
+		return handler instanceof AsyncHandler;
+	}
+
+	/**
+	 * Get the regions the command works on, see {@link Handler#getRegions(SessionAttachment, Instruction)}.
+	 * The regions of a batch are those of all its commands.
+	 *
+	 * @param attachment The session attachment.
+	 * @return The regions, empty if they cannot be read from the arguments.
+	 */
+	@SuppressWarnings("PMD.AvoidCatchingGenericException")
+	List<Cuboid> getRegions(@NotNull final SessionAttachment attachment) {
+		if (batch != null) {
+			final List<Cuboid> regions = new ArrayList<>();
+			for (final ParsedCommand command : batch) {
+				regions.addAll(command.getRegions(attachment));
+			}
+			return regions;
+		}
+		if (handler == null) {
+			return List.of();
+		}
+		try {
+			return handler.getRegions(attachment, instruction);
+		} catch (final RuntimeException e) {
+			// the command reports the malformed arguments when it is executed
+			return List.of();
+		} finally {
+			instruction.rewind();
+		}
+	}
+
+	/**
+	 * Start executing an asynchronous command on the server main thread.
+	 * All commands of a batch are started right away, and the batch completes once all of them are complete.
+	 *
+	 * @param attachment The session attachment.
+	 * @return The future response, completed with null if no response should be sent.
+	 */
+	CompletableFuture<String> executeAsync(@NotNull final SessionAttachment attachment) {
+		return resultAsync(attachment).thenApply(this::tag);
+	}
+
+	private CompletableFuture<String> resultAsync(@NotNull final SessionAttachment attachment) {
+		if (batch == null) {
+			return isAsync() ? ((AsyncHandler) handler).getAsync(attachment, instruction)
+					: CompletableFuture.completedFuture(result(attachment));
+		}
+		final List<CompletableFuture<String>> results = new ArrayList<>(batch.length);
+		for (final ParsedCommand command : batch) {
+			results.add(command.resultAsync(attachment));
+		}
+		return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+				.thenApply(ignored -> combine(results.stream().map(CompletableFuture::join).toList()));
+	}
+
+	private String tag(final String result) {
+		if (requestId == null) {
+			return result;
+		}
+		if (quiet && (handler instanceof HandlerVoid || batch != null) && HandlerVoid.OK.equals(result)) {
+			return null;
+		}
+		return "#" + requestId + " " + result;
+	}
+
+	private String result(@NotNull final SessionAttachment attachment) {
+		if (batch != null) {
+			return batchResult(attachment);
+		}
+		return handler == null ? response : handler.get(attachment, instruction);
+	}
+
+	private String batchResult(@NotNull final SessionAttachment attachment) {
+		final List<String> results = new ArrayList<>(batch.length);
+		for (final ParsedCommand command : batch) {
+			results.add(command.result(attachment));
+		}
+		return combine(results);
+	}
+
+	/**
+	 * Combine the answers of the commands of a batch into its answer.
+	 */
+	static String combine(final List<String> answers) {
+		final StringBuilder results = new StringBuilder();
+		boolean allOk = true;
+		for (final String result : answers) {
+			allOk &= HandlerVoid.OK.equals(result);
+			appendEscaped(results, String.valueOf(result)).append('|');
+		}
+		if (allOk) {
+			return HandlerVoid.OK;
+		}
+		results.setLength(results.length() - 1);
+		return results.toString();
+	}
+
+	/**
+	 * Append an answer to the answers of a batch, with every backslash and '|' escaped by a backslash,
+	 * so that the answers can be split.
+	 */
+	private static StringBuilder appendEscaped(final StringBuilder results, final String result) {
+		for (int i = 0; i < result.length(); i++) {
+			final char c = result.charAt(i);
+			if (c == '|' || c == '\\') {
+				results.append('\\');
+			}
+			results.append(c);
+		}
+		return results;
+	}
+}
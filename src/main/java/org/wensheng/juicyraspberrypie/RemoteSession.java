@@ -1,49 +1,118 @@
 package org.wensheng.juicyraspberrypie;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
-import org.apache.commons.lang3.ArrayUtils;
 import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.FrameParser;
 import org.wensheng.juicyraspberrypie.command.Handler;
 import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.LineParser;
 import org.wensheng.juicyraspberrypie.command.LocationParser;
 import org.wensheng.juicyraspberrypie.command.Registry;
 import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.Varints;
+import org.wensheng.juicyraspberrypie.command.block.ChunkPreloader;
+import org.wensheng.juicyraspberrypie.command.handlers.protocol.Batch;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
 import java.util.Deque;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 @SuppressWarnings({"PMD.CommentRequired", "PMD.AvoidSynchronizedStatement"})
-class RemoteSession {
-	private static final int MAX_COMMANDS_PER_TICK = 9000;
+class RemoteSession implements ScheduledSession {
+	private static final int INITIAL_BUFFER_SIZE = 8192;
 
-	private final Socket socket;
+	private static final int MAX_COMMAND_LENGTH = 16 * 1024 * 1024;
 
-	@SuppressWarnings("PMD.ShortVariable")
-	private BufferedReader in;
+	private static final int IN_QUEUE_CAPACITY = 16_384;
 
-	private BufferedWriter out;
+	private static final int IN_QUEUE_HIGH_WATERMARK = IN_QUEUE_CAPACITY * 3 / 4;
 
-	@SuppressWarnings("PMD.DoNotUseThreads")
-	private Thread inThread;
+	private static final int IN_QUEUE_LOW_WATERMARK = IN_QUEUE_CAPACITY / 4;
 
-	@SuppressWarnings("PMD.DoNotUseThreads")
-	private Thread outThread;
+	/**
+	 * The text command after which the client sends binary frames instead of lines.
+	 */
+	private static final String BINARY_HANDSHAKE = "protocol.binary";
+
+	/**
+	 * Queued instead of a response to tell the connection engine that the following responses are binary frames.
+	 * It is only ever compared by identity.
+	 */
+	@SuppressWarnings("PMD.StringInstantiation")
+	private static final String SWITCH_TO_BINARY = new String(BINARY_HANDSHAKE);
+
+	private final SocketChannel channel;
+
+	private final SocketAddress remoteAddress;
+
+	private final ConnectionEngine engine;
+
+	private SelectionKey key;
+
+	private ByteBuffer inBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+	private int scannedBytes;
+
+	private boolean binaryInput;
+
+	private boolean binaryOutput;
+
+	/**
+	 * The commands of the batch being collected, or null.
+	 */
+	private ParsedCommand[] batch;
+
+	private int batchSize;
+
+	private String batchRequestId;
+
+	private boolean batchQuiet;
+
+	private ByteBuffer outBuffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+	private final MpscRingBuffer<ParsedCommand> inQueue = new MpscRingBuffer<>(IN_QUEUE_CAPACITY);
 
-	private final Deque<String> inQueue = new ArrayDeque<>();
+	private final AtomicBoolean readingPaused = new AtomicBoolean(false);
 
 	private final Deque<String> outQueue = new ArrayDeque<>();
 
+	/**
+	 * The responses waiting for an asynchronous command before them, only accessed from the server main thread.
+	 */
+	private final Deque<CompletableFuture<String>> pendingResponses = new ArrayDeque<>();
+
+	/**
+	 * The command waiting for its chunks to be loaded, or null, only accessed from the server main thread.
+	 * The following commands wait for it, so commands are still executed in order.
+	 */
+	private ParsedCommand preloadedCommand;
+
+	/**
+	 * The tickets of the chunks of the preloaded command, completed with null if they could not be loaded.
+	 */
+	private CompletableFuture<ChunkPreloader.Tickets> preloading;
+
 	private final AtomicBoolean running = new AtomicBoolean(true);
 
 	private final AtomicBoolean pendingRemoval = new AtomicBoolean(false);
@@ -54,97 +123,250 @@ class RemoteSession {
 	@NotNull
 	private final Logger logger;
 
-	private final LocationParser locationParser;
+	@NotNull
+	private final ChunkPreloader preloader;
+
+	private final LineParser lineParser;
+
+	private final FrameParser frameParser;
 
 	private final SessionAttachment attachment;
 
 	@SuppressFBWarnings("CT_CONSTRUCTOR_THROW")
-	public RemoteSession(@NotNull final JuicyRaspberryPie plugin, @NotNull final Socket socket) throws IOException {
-		this.socket = Objects.requireNonNull(socket);
+	public RemoteSession(@NotNull final JuicyRaspberryPie plugin, @NotNull final SocketChannel channel,
+						 @NotNull final ConnectionEngine engine) throws IOException {
+		this.channel = Objects.requireNonNull(channel);
+		this.engine = Objects.requireNonNull(engine);
 		this.registry = Objects.requireNonNull(plugin.getRegistry());
 		this.logger = Objects.requireNonNull(plugin.getLogger());
+		this.preloader = Objects.requireNonNull(plugin.getChunkPreloader());
+		this.remoteAddress = channel.getRemoteAddress();
 		init();
 
 		attachment = new SessionAttachment(logger, plugin.getServer());
 		attachment.setPlayerAndOrigin();
-		locationParser = new LocationParser(attachment);
+		final LocationParser locationParser = new LocationParser(attachment);
+		lineParser = new LineParser(locationParser);
+		frameParser = new FrameParser(locationParser);
 		registry.createContexts(plugin, attachment);
 	}
 
 	private void init() throws IOException {
-		socket.setTcpNoDelay(true);
-		socket.setKeepAlive(true);
-		socket.setTrafficClass(0x10);
-		this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-		this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
-		startThreads();
-		logger.log(Level.INFO, "Opened connection to" + socket.getRemoteSocketAddress() + ".");
-
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+		channel.setOption(StandardSocketOptions.IP_TOS, 0x10);
+		logger.log(Level.INFO, "Opened connection to" + remoteAddress + ".");
 	}
 
-	@SuppressWarnings("PMD.DoNotUseThreads")
-	private void startThreads() {
-		inThread = new Thread(new InputThread());
-		inThread.start();
-		outThread = new Thread(new OutputThread());
-		outThread.start();
+	/**
+	 * called from the connection engine once the channel has been registered
+	 */
+	void setKey(@NotNull final SelectionKey key) {
+		this.key = key;
 	}
 
 	public Socket getSocket() {
-		return socket;
+		return channel.socket();
+	}
+
+	@Override
+	public String getHostAddress() {
+		return getSocket().getInetAddress().getHostAddress();
 	}
 
 	/**
-	 * called from the server main thread
+	 * called from the server main thread, commands waiting for their chunks to be loaded are not pending yet
 	 */
-	public void tick() {
-		int processedCount = 0;
-		while (!inQueue.isEmpty()) {
-			handleLine(inQueue.poll());
-			processedCount++;
-			if (processedCount >= MAX_COMMANDS_PER_TICK) {
-				logger.log(Level.WARNING, "Over " + MAX_COMMANDS_PER_TICK
-						+ " commands were queued - deferring " + inQueue.size() + " to next tick");
-				break;
+	@Override
+	public boolean hasPendingCommands() {
+		return preloadedCommand == null ? !inQueue.isEmpty() : preloading.isDone();
+	}
+
+	/**
+	 * called from the server main thread to execute queued commands until the allowance is used up
+	 *
+	 * @return the time spent in nanoseconds
+	 */
+	@Override
+	public long execute(final long allowanceNanos) {
+		long spentNanos = 0;
+		while (spentNanos < allowanceNanos) {
+			final long start = System.nanoTime();
+			final ParsedCommand command;
+			ChunkPreloader.Tickets tickets = null;
+			if (preloadedCommand != null) {
+				if (!preloading.isDone()) {
+					break;
+				}
+				command = preloadedCommand;
+				tickets = preloading.join();
+				preloadedCommand = null;
+				preloading = null;
+			} else {
+				command = inQueue.poll();
+				if (command == null) {
+					break;
+				}
+				if (startPreloading(command)) {
+					spentNanos += System.nanoTime() - start;
+					continue;
+				}
 			}
+			try {
+				if (command.isAsync()) {
+					pendingResponses.add(command.executeAsync(attachment));
+				} else {
+					respond(command.execute(attachment));
+				}
+			} finally {
+				if (tickets != null) {
+					tickets.close();
+				}
+			}
+			if (command.isSwitchingToBinary()) {
+				respond(SWITCH_TO_BINARY);
+			}
+			spentNanos += System.nanoTime() - start;
+		}
+		return spentNanos;
+	}
+
+	/**
+	 * Start loading the chunks of a command in the background if any of them is not loaded, so that the server main
+	 * thread does not load them one by one while the command runs. Commands touching more chunks than the preloader
+	 * may load at once are executed right away.
+	 *
+	 * @return true if the command waits for its chunks
+	 */
+	private boolean startPreloading(final ParsedCommand command) {
+		final List<Cuboid> regions = command.getRegions(attachment);
+		if (regions.isEmpty() || !preloader.needsLoading(regions)) {
+			return false;
 		}
+		preloadedCommand = command;
+		// the command is executed anyway and lets the server load the chunks that could not be loaded
+		preloading = preloader.load(regions).exceptionally(e -> null);
+		return true;
+	}
 
-		if (!running.get() && inQueue.isEmpty()) {
+	/**
+	 * called from the server main thread after all sessions executed their commands
+	 */
+	@Override
+	public void tick() {
+		if (!inQueue.isEmpty()) {
+			logger.log(Level.FINE, "Tick budget used up - deferring " + inQueue.size() + " commands to next tick");
+		}
+
+		sendCompletedResponses();
+		flush();
+
+		if (inQueue.size() <= IN_QUEUE_LOW_WATERMARK && readingPaused.compareAndSet(true, false)) {
+			engine.resumeReading(key);
+		}
+
+		if (!running.get() && inQueue.isEmpty() && preloadedCommand == null && pendingResponses.isEmpty()) {
 			pendingRemoval.set(true);
 		}
 	}
 
-	private void handleLine(final String line) {
-		final String trimmedLine = line.trim();
-		if (!trimmedLine.contains("(") || !trimmedLine.endsWith(")")) {
-			send("Wrong format");
-			return;
+	/**
+	 * called from the connection engine to parse a line and resolve its handler
+	 */
+	private ParsedCommand parse(final String line) {
+		if (!lineParser.parse(line)) {
+			return ParsedCommand.answered("Wrong format", lineParser.getRequestId());
 		}
-		final String methodName = trimmedLine.substring(0, trimmedLine.indexOf('('));
-		final String methodArgs = trimmedLine.substring(trimmedLine.indexOf('(') + 1, trimmedLine.length() - 1);
-		String[] args = methodArgs.split(",", -1);
-		args = ArrayUtils.remove(args, args.length - 1);
-		for (int i = 0; i < args.length; i++) {
-			final String arg = args[i];
-			if (arg.isEmpty()) {
-				args[i] = null;
-			}
+		if (batch == null && lineParser.isMethod(BINARY_HANDSHAKE)) {
+			binaryInput = true;
+			return ParsedCommand.switchToBinary(lineParser.getRequestId());
+		}
+		final Handler handler = lineParser.getHandler(registry);
+		if (handler == null) {
+			logger.warning(lineParser.getMethodName() + " is not supported.");
+			return ParsedCommand.answered("Fail", lineParser.getRequestId());
+		}
+		return resolve(handler, lineParser.getInstruction(), lineParser.getRequestId(), lineParser.isQuiet());
+	}
+
+	/**
+	 * called from the connection engine to parse the frame body between position and limit of the read buffer
+	 */
+	private ParsedCommand parseFrame() {
+		if (!frameParser.parse(inBuffer)) {
+			return ParsedCommand.answered("Wrong format", frameParser.getRequestId());
+		}
+		final Handler handler = frameParser.getHandler(registry);
+		if (handler == null) {
+			logger.warning("Command id " + frameParser.getCommandId() + " is not supported.");
+			return ParsedCommand.answered("Fail", frameParser.getRequestId());
+		}
+		return resolve(handler, frameParser.getInstruction(), frameParser.getRequestId(), frameParser.isQuiet());
+	}
+
+	/**
+	 * @return the command, or null if it is the header of a batch whose commands are collected next
+	 */
+	private ParsedCommand resolve(final Handler handler, final Instruction instruction, final String requestId, final boolean quiet) {
+		if (!(handler instanceof Batch)) {
+			return ParsedCommand.of(handler, instruction, requestId, quiet);
+		}
+		if (batch != null) {
+			return ParsedCommand.answered("Fail: Batches cannot be nested", requestId);
+		}
+		final int size;
+		try {
+			size = instruction.nextInt();
+		} catch (final NumberFormatException e) {
+			return ParsedCommand.answered("Wrong format", requestId);
+		}
+		if (size < 1 || size > Batch.MAX_SIZE) {
+			return ParsedCommand.answered("Fail: Batch size must be between 1 and " + Batch.MAX_SIZE, requestId);
 		}
-		handleCommand(methodName, args);
+		batch = new ParsedCommand[size];
+		batchSize = 0;
+		batchRequestId = requestId;
+		batchQuiet = quiet;
+		return null;
 	}
 
-	private void handleCommand(final String command, final String... args) {
-		final Handler handler = registry.getHandler(command);
-		if (handler != null) {
-			send(handler.get(attachment, new Instruction(args, locationParser)));
+	/**
+	 * Queue a command for the main thread, or add it to the batch being collected.
+	 */
+	private void enqueue(final ParsedCommand command) {
+		if (command == null) {
+			return;
+		}
+		if (batch == null) {
+			inQueue.offer(command);
 			return;
 		}
-		logger.warning(command + " is not supported.");
-		send("Fail");
+		batch[batchSize++] = command;
+		if (batchSize == batch.length) {
+			inQueue.offer(ParsedCommand.batch(batch, batchRequestId, batchQuiet));
+			batch = null;
+		}
+	}
+
+	/**
+	 * Send a response right away, or after the responses of asynchronous commands that are still running.
+	 */
+	private void respond(final String message) {
+		if (pendingResponses.isEmpty()) {
+			send(message);
+		} else {
+			pendingResponses.add(CompletableFuture.completedFuture(message));
+		}
+	}
+
+	private void sendCompletedResponses() {
+		while (!pendingResponses.isEmpty() && pendingResponses.peek().isDone()) {
+			send(pendingResponses.poll().join());
+		}
 	}
 
 	private void send(final String message) {
-		if (pendingRemoval.get()) {
+		if (message == null || pendingRemoval.get()) {
 			return;
 		}
 		synchronized (outQueue) {
@@ -152,36 +374,50 @@ class RemoteSession {
 		}
 	}
 
+	/**
+	 * Wake up the connection engine once for everything that was sent since the last flush.
+	 */
+	private void flush() {
+		synchronized (outQueue) {
+			if (!outQueue.isEmpty()) {
+				engine.requestWrite(key);
+			}
+		}
+	}
+
+	@Override
 	public void close() {
 		running.set(false);
 		pendingRemoval.set(true);
 
 		attachment.close();
-
-		//wait for threads to stop
-		try {
-			inThread.join(2000);
-			outThread.join(2000);
-		} catch (final InterruptedException e) {
-			logger.log(Level.WARNING, "Failed to stop in/out thread", e);
+		if (preloading != null) {
+			preloading.thenAccept(tickets -> {
+				if (tickets != null) {
+					tickets.close();
+				}
+			});
 		}
 
+		if (key != null) {
+			key.cancel();
+		}
 		try {
-			socket.close();
+			channel.close();
 		} catch (final IOException e) {
 			logger.log(Level.WARNING, "Failed to close socket", e);
 		}
-		logger.log(Level.INFO, "Closed connection to" + socket.getRemoteSocketAddress() + ".");
+		logger.log(Level.INFO, "Closed connection to" + remoteAddress + ".");
 	}
 
+	@Override
 	public boolean isPendingRemoval() {
 		return pendingRemoval.get();
 	}
 
 	public void kick(final String reason) {
 		try {
-			out.write(reason);
-			out.flush();
+			channel.write(ByteBuffer.wrap(reason.getBytes(StandardCharsets.UTF_8)));
 		} catch (final IOException e) {
 			logger.log(Level.FINE, "Failed to send kick reason", e);
 		}
@@ -189,68 +425,204 @@ class RemoteSession {
 	}
 
 	/**
-	 * socket listening thread
+	 * called from the connection engine when the channel is readable
 	 */
-	private class InputThread implements Runnable {
-		public InputThread() {
-		}
-
-		@Override
-		public void run() {
-			logger.log(Level.INFO, "Starting input thread");
-			while (running.get()) {
-				try {
-					final String newLine = in.readLine();
-					if (newLine == null) {
-						running.set(false);
-					} else {
-						inQueue.add(newLine);
-					}
-				} catch (final IOException e) {
-					if (running.get()) {
-						logger.log(Level.WARNING, "Error occurred in input thread", e);
-						running.set(false);
-					}
-				}
+	void read() throws IOException {
+		final int count = channel.read(inBuffer);
+		if (count < 0) {
+			if (!binaryInput && inBuffer.position() > 0) {
+				enqueue(parse(new String(inBuffer.array(), 0, inBuffer.position(), StandardCharsets.UTF_8)));
 			}
-			try {
-				in.close();
-			} catch (final IOException e) {
-				logger.log(Level.WARNING, "Failed to close in buffer", e);
+			running.set(false);
+			key.cancel();
+			return;
+		}
+		extractCommands();
+	}
+
+	/**
+	 * called from the connection engine when the main thread drained the queue below the low watermark
+	 */
+	void resumeReading() throws IOException {
+		extractCommands();
+		if (!readingPaused.get()) {
+			key.interestOpsOr(SelectionKey.OP_READ);
+		}
+	}
+
+	/**
+	 * Move all complete lines or frames from the read buffer into the queue, or stop reading from the socket once the
+	 * queue reaches the high watermark, so that the client is throttled by TCP flow control.
+	 */
+	private void extractCommands() throws IOException {
+		int consumed = 0;
+		int next = binaryInput ? extractFrame(consumed) : extractLine(consumed);
+		while (next >= 0) {
+			consumed = next;
+			if (inQueue.size() >= IN_QUEUE_HIGH_WATERMARK) {
+				readingPaused.set(true);
+				key.interestOpsAnd(~SelectionKey.OP_READ);
+				break;
+			}
+			next = binaryInput ? extractFrame(consumed) : extractLine(consumed);
+		}
+		inBuffer.flip().position(consumed);
+		inBuffer.compact();
+		scannedBytes = Math.max(0, scannedBytes - consumed);
+		if (!inBuffer.hasRemaining()) {
+			growInBuffer();
+		}
+	}
+
+	/**
+	 * @return the end of the extracted line, or -1 if the line is not complete yet
+	 */
+	private int extractLine(final int lineStart) {
+		int scanned = Math.max(lineStart, scannedBytes);
+		while (scanned < inBuffer.position()) {
+			if (inBuffer.get(scanned++) == '\n') {
+				final int lineEnd = scanned - 1 > lineStart && inBuffer.get(scanned - 2) == '\r' ? scanned - 2 : scanned - 1;
+				scannedBytes = scanned;
+				enqueue(parse(new String(inBuffer.array(), lineStart, lineEnd - lineStart, StandardCharsets.UTF_8)));
+				return scanned;
+			}
+		}
+		scannedBytes = scanned;
+		return -1;
+	}
+
+	/**
+	 * @return the end of the extracted frame, or -1 if the frame is not complete yet
+	 */
+	private int extractFrame(final int frameStart) throws IOException {
+		final int filled = inBuffer.position();
+		int bodyStart = frameStart;
+		int length = 0;
+		for (int shift = 0; ; shift += 7) {
+			if (bodyStart == filled) {
+				return -1;
+			}
+			if (shift == Varints.MAX_BYTES * 7) {
+				throw new IOException("Malformed frame length");
+			}
+			final byte b = inBuffer.get(bodyStart++);
+			length |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				break;
 			}
 		}
+		if (length < 0 || length > MAX_COMMAND_LENGTH) {
+			throw new IOException("Frame exceeds " + MAX_COMMAND_LENGTH + " bytes");
+		}
+		final int frameEnd = bodyStart + length;
+		if (frameEnd > filled) {
+			return -1;
+		}
+		inBuffer.limit(frameEnd).position(bodyStart);
+		final ParsedCommand command = parseFrame();
+		inBuffer.limit(inBuffer.capacity()).position(filled);
+		enqueue(command);
+		return frameEnd;
+	}
+
+	private void growInBuffer() throws IOException {
+		if (inBuffer.capacity() >= MAX_COMMAND_LENGTH) {
+			throw new IOException("Command exceeds " + MAX_COMMAND_LENGTH + " bytes");
+		}
+		final ByteBuffer grown = ByteBuffer.allocate(inBuffer.capacity() * 2);
+		inBuffer.flip();
+		grown.put(inBuffer);
+		inBuffer = grown;
 	}
 
-	private class OutputThread implements Runnable {
-		public OutputThread() {
-		}
-
-		@SuppressWarnings("PMD.DoNotUseThreads")
-		@Override
-		public void run() {
-			logger.log(Level.INFO, "Starting output thread!");
-			while (running.get()) {
-				try {
-					while (!outQueue.isEmpty()) {
-						out.write(outQueue.poll());
-						out.write('\n');
-					}
-					out.flush();
-					Thread.yield();
-					Thread.sleep(1L);
-				} catch (final IOException | InterruptedException e) {
-					if (running.get()) {
-						logger.log(Level.WARNING, "Error occurred in output thread", e);
-						running.set(false);
-					}
+	/**
+	 * called from the connection engine when the channel is writable
+	 */
+	void write() throws IOException {
+		synchronized (outQueue) {
+			String message = outQueue.poll();
+			while (message != null) {
+				encodeResponse(message);
+				message = outQueue.poll();
+			}
+		}
+		outBuffer.flip();
+		channel.write(outBuffer);
+		outBuffer.compact();
+		if (outBuffer.position() == 0) {
+			synchronized (outQueue) {
+				if (outQueue.isEmpty()) {
+					key.interestOpsAnd(~SelectionKey.OP_WRITE);
 				}
 			}
-			//close out buffer
-			try {
-				out.close();
-			} catch (final IOException e) {
-				logger.log(Level.WARNING, "Failed to close out buffer", e);
+		}
+	}
+
+	/**
+	 * Encode a response as a line, or as a frame with the length of its UTF-8 bytes as variable-length int.
+	 */
+	@SuppressWarnings("PMD.CompareObjectsWithEquals")
+	private void encodeResponse(final String message) {
+		if (message == SWITCH_TO_BINARY) {
+			binaryOutput = true;
+		} else if (binaryOutput) {
+			if (outBuffer.remaining() < Varints.MAX_BYTES) {
+				growOutBuffer();
 			}
+			Varints.write(outBuffer, utf8Length(message));
+			encode(message);
+		} else {
+			encode(message);
+			encode("\n");
+		}
+	}
+
+	private void encode(final String message) {
+		final CharBuffer chars = CharBuffer.wrap(message);
+		while (encoder.encode(chars, outBuffer, true).isOverflow()) {
+			growOutBuffer();
+		}
+		encoder.reset();
+	}
+
+	private void growOutBuffer() {
+		final ByteBuffer grown = ByteBuffer.allocate(outBuffer.capacity() * 2);
+		outBuffer.flip();
+		grown.put(outBuffer);
+		outBuffer = grown;
+	}
+
+	/**
+	 * Count the bytes the encoder produces for a message, including the replacement of unpaired surrogates.
+	 */
+	private static int utf8Length(final String message) {
+		int length = 0;
+		int i = 0;
+		while (i < message.length()) {
+			final char c = message.charAt(i++);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i < message.length() && Character.isLowSurrogate(message.charAt(i))) {
+				length += 4;
+				i++;
+			} else if (Character.isSurrogate(c)) {
+				length++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * called from the connection engine when the channel failed
+	 */
+	void disconnect(final Exception cause) {
+		if (running.getAndSet(false)) {
+			logger.log(Level.WARNING, "Error occurred in connection to " + remoteAddress, cause);
 		}
+		key.cancel();
 	}
 }
@@ -0,0 +1,46 @@
+package org.wensheng.juicyraspberrypie;
+
+/**
+ * A session whose commands are executed by the {@link SessionScheduler}.
+ * All methods are called from the server main thread.
+ */
+interface ScheduledSession {
+	/**
+	 * Get the IP address of the client, which selects the weight of the session.
+	 *
+	 * @return The address as text.
+	 */
+	String getHostAddress();
+
+	/**
+	 * Check whether the session has commands that can be executed now.
+	 *
+	 * @return Whether commands are pending.
+	 */
+	boolean hasPendingCommands();
+
+	/**
+	 * Execute queued commands until the allowance is used up.
+	 *
+	 * @param allowanceNanos The time the session may spend in nanoseconds.
+	 * @return The time spent in nanoseconds.
+	 */
+	long execute(long allowanceNanos);
+
+	/**
+	 * Finish the tick after all sessions executed their commands.
+	 */
+	void tick();
+
+	/**
+	 * Check whether the session is closing and should be removed.
+	 *
+	 * @return Whether the session should be removed.
+	 */
+	boolean isPendingRemoval();
+
+	/**
+	 * Close the session.
+	 */
+	void close();
+}
@@ -0,0 +1,192 @@
+package org.wensheng.juicyraspberrypie;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Shares the tick budget between all sessions with weighted deficit round-robin scheduling.
+ * Every visited session earns a quantum proportional to its weight and may execute commands until its deficit is used up.
+ * Unused deficit and the position in the round are carried over to the next tick, so no session starves the others.
+ */
+final class SessionScheduler {
+	/**
+	 * The weight of sessions whose address has no configured weight.
+	 */
+	private static final double DEFAULT_WEIGHT = 1.0;
+
+	/**
+	 * The configured weights by client IP address.
+	 */
+	private final Map<String, Double> weights;
+
+	/**
+	 * The sessions added by the connection engine since the last tick.
+	 */
+	private final Queue<ScheduledSession> addedSessions = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * The scheduled sessions, only accessed from the server main thread.
+	 */
+	private final List<Entry> entries = new ArrayList<>();
+
+	/**
+	 * The index of the session to visit first in the next round.
+	 */
+	private int nextIndex;
+
+	/**
+	 * Create a new session scheduler.
+	 *
+	 * @param weights The weights by client IP address.
+	 */
+	SessionScheduler(@NotNull final Map<String, Double> weights) {
+		this.weights = Map.copyOf(weights);
+	}
+
+	/**
+	 * Add a session. May be called from any thread.
+	 *
+	 * @param session The session to add.
+	 */
+	void add(@NotNull final ScheduledSession session) {
+		addedSessions.add(session);
+	}
+
+	/**
+	 * Execute the queued commands of all sessions within the given budget.
+	 *
+	 * @param budget The budget of the current tick.
+	 */
+	void tick(@NotNull final TickBudget budget) {
+		acceptAddedSessions();
+		entries.forEach(entry -> entry.spentNanos = 0);
+		boolean progress = true;
+		while (progress && budget.remaining() > 0) {
+			progress = runRound(budget);
+		}
+		finishTick();
+	}
+
+	/**
+	 * Close all sessions.
+	 */
+	void closeAll() {
+		acceptAddedSessions();
+		entries.forEach(entry -> entry.session.close());
+		entries.clear();
+	}
+
+	private void acceptAddedSessions() {
+		ScheduledSession session = addedSessions.poll();
+		while (session != null) {
+			entries.add(new Entry(session, weights.getOrDefault(session.getHostAddress(), DEFAULT_WEIGHT)));
+			session = addedSessions.poll();
+		}
+	}
+
+	private boolean runRound(final TickBudget budget) {
+		final double activeWeight = entries.stream()
+				.filter(entry -> entry.session.hasPendingCommands())
+				.mapToDouble(entry -> entry.weight)
+				.sum();
+		if (activeWeight <= 0) {
+			return false;
+		}
+		final double quantumPerWeight = budget.remaining() / activeWeight;
+		final int count = entries.size();
+		boolean progress = false;
+		for (int i = 0; i < count; i++) {
+			if (budget.remaining() <= 0) {
+				creditRestOfRound(i, quantumPerWeight, budget);
+				nextIndex = (nextIndex + i) % count;
+				return false;
+			}
+			final Entry entry = entries.get((nextIndex + i) % count);
+			if (!entry.session.hasPendingCommands()) {
+				entry.deficitNanos = Math.min(entry.deficitNanos, 0);
+				continue;
+			}
+			credit(entry, quantumPerWeight, budget);
+			final long allowanceNanos = Math.min(entry.deficitNanos, budget.sessionAllowance(entry.spentNanos));
+			if (allowanceNanos > 0) {
+				final long spentNanos = entry.session.execute(allowanceNanos);
+				entry.deficitNanos -= spentNanos;
+				entry.spentNanos += spentNanos;
+				budget.spend(spentNanos);
+				progress |= spentNanos > 0;
+			}
+		}
+		nextIndex = count == 0 ? 0 : (nextIndex + 1) % count;
+		return progress;
+	}
+
+	/**
+	 * Credit the quantum of an interrupted round to the sessions not visited yet, which would otherwise lose their share
+	 * of the round to the session that used up the budget.
+	 */
+	private void creditRestOfRound(final int from, final double quantumPerWeight, final TickBudget budget) {
+		final int count = entries.size();
+		for (int i = from; i < count; i++) {
+			final Entry entry = entries.get((nextIndex + i) % count);
+			if (entry.session.hasPendingCommands()) {
+				credit(entry, quantumPerWeight, budget);
+			}
+		}
+	}
+
+	private static void credit(final Entry entry, final double quantumPerWeight, final TickBudget budget) {
+		entry.deficitNanos = Math.min(entry.deficitNanos + (long) (quantumPerWeight * entry.weight), budget.sessionMaximum());
+	}
+
+	private void finishTick() {
+		final Iterator<Entry> iterator = entries.iterator();
+		while (iterator.hasNext()) {
+			final ScheduledSession session = iterator.next().session;
+			if (session.isPendingRemoval()) {
+				session.close();
+				iterator.remove();
+			} else {
+				session.tick();
+			}
+		}
+		if (nextIndex >= entries.size()) {
+			nextIndex = 0;
+		}
+	}
+
+	/**
+	 * The scheduling state of a session.
+	 */
+	private static final class Entry {
+		/**
+		 * The session.
+		 */
+		private final ScheduledSession session;
+
+		/**
+		 * The relative share of the tick budget.
+		 */
+		private final double weight;
+
+		/**
+		 * The time the session may still spend, negative if it overran its share.
+		 */
+		private long deficitNanos;
+
+		/**
+		 * The time the session spent in the current tick.
+		 */
+		private long spentNanos;
+
+		private Entry(final ScheduledSession session, final double weight) {
+			this.session = session;
+			this.weight = weight;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package org.wensheng.juicyraspberrypie;
+
+/**
+ * Tracks how much time the server main thread may spend on executing API commands in the current tick.
+ * The allowance shrinks when the rest of the server already uses most of the 50 ms a tick may take.
+ */
+final class TickBudget {
+	/**
+	 * The duration of a tick at 20 TPS.
+	 */
+	private static final long TICK_NANOS = 50_000_000L;
+
+	/**
+	 * The allowance granted even on a lagging server, so that sessions keep making progress.
+	 */
+	private static final long MINIMUM_NANOS = 1_000_000L;
+
+	/**
+	 * The weight of the last tick in the moving average of the time spent on commands.
+	 */
+	private static final double SMOOTHING = 0.02;
+
+	/**
+	 * The configured maximum time for all sessions per tick.
+	 */
+	private final long maximumNanos;
+
+	/**
+	 * The configured maximum time for a single session per tick.
+	 */
+	private final long sessionNanos;
+
+	/**
+	 * The configured maximum time for jobs per tick.
+	 */
+	private final long jobNanos;
+
+	/**
+	 * The allowance of the current tick.
+	 */
+	private long allowanceNanos;
+
+	/**
+	 * The time spent on commands in the current tick.
+	 */
+	private long spentNanos;
+
+	/**
+	 * The moving average of the time spent on commands per tick.
+	 */
+	private double averageSpentNanos;
+
+	/**
+	 * Create a new tick budget.
+	 *
+	 * @param maximumNanos The maximum time for all sessions per tick.
+	 * @param sessionNanos The maximum time for a single session per tick.
+	 * @param jobNanos     The maximum time for jobs per tick.
+	 */
+	TickBudget(final long maximumNanos, final long sessionNanos, final long jobNanos) {
+		this.maximumNanos = Math.max(1, maximumNanos);
+		this.sessionNanos = Math.max(1, sessionNanos);
+		this.jobNanos = Math.max(1, jobNanos);
+	}
+
+	/**
+	 * Start a new tick and derive its allowance from the current MSPT.
+	 *
+	 * @param averageTickMillis The average duration of recent ticks in milliseconds.
+	 */
+	void startTick(final double averageTickMillis) {
+		final long otherWorkNanos = (long) (averageTickMillis * 1_000_000) - (long) averageSpentNanos;
+		final long headroomNanos = TICK_NANOS - Math.max(0, otherWorkNanos);
+		allowanceNanos = Math.min(maximumNanos, Math.max(MINIMUM_NANOS, headroomNanos));
+		spentNanos = 0;
+	}
+
+	/**
+	 * Finish the current tick.
+	 */
+	void endTick() {
+		averageSpentNanos += (spentNanos - averageSpentNanos) * SMOOTHING;
+	}
+
+	/**
+	 * Get the time a session may still spend in this tick.
+	 *
+	 * @param sessionSpentNanos The time the session already spent in this tick.
+	 * @return The allowance for the session in nanoseconds.
+	 */
+	long sessionAllowance(final long sessionSpentNanos) {
+		return Math.min(sessionNanos - sessionSpentNanos, remaining());
+	}
+
+	/**
+	 * Get the configured maximum time for a single session per tick.
+	 *
+	 * @return The maximum time in nanoseconds.
+	 */
+	long sessionMaximum() {
+		return sessionNanos;
+	}
+
+	/**
+	 * Get the time jobs may spend in this tick, after the sessions executed their commands.
+	 * Jobs get at least the minimum allowance, so that they keep making progress while sessions are busy.
+	 *
+	 * @return The allowance for jobs in nanoseconds.
+	 */
+	long jobAllowance() {
+		return Math.min(jobNanos, Math.max(MINIMUM_NANOS, remaining()));
+	}
+
+	/**
+	 * Get the time left in this tick.
+	 *
+	 * @return The remaining allowance in nanoseconds.
+	 */
+	long remaining() {
+		return Math.max(0, allowanceNanos - spentNanos);
+	}
+
+	/**
+	 * Record time spent on commands.
+	 *
+	 * @param nanos The spent time in nanoseconds.
+	 */
+	void spend(final long nanos) {
+		spentNanos += nanos;
+	}
+}
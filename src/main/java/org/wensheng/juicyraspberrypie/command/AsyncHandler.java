@@ -0,0 +1,52 @@
+package org.wensheng.juicyraspberrypie.command;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * A handler for a command that captures what it needs from the world on the server main thread and computes its
+ * result on another thread. The responses of a session are still sent in the order of the commands.
+ */
+public interface AsyncHandler extends Handler {
+	/**
+	 * Start handling the instruction for a command. Called from the server main thread.
+	 * If an exception is thrown or the future fails, the result will be "Fail: " followed by the exception message.
+	 *
+	 * @param sessionAttachment the session attachment
+	 * @param instruction       the instruction
+	 * @return the future result
+	 */
+	@SuppressWarnings({"PMD.AvoidPrintStackTrace", "PMD.AvoidCatchingGenericException"})
+	default @NotNull CompletableFuture<String> getAsync(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		try {
+			return handleAsync(sessionAttachment, instruction).exceptionally(e -> {
+				final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+				cause.printStackTrace();
+				return "Fail: " + cause.getMessage();
+			});
+		} catch (final Exception e) {
+			e.printStackTrace();
+			return CompletableFuture.completedFuture("Fail: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Start handling the instruction for a command. Called from the server main thread.
+	 *
+	 * @param sessionAttachment the session attachment
+	 * @param instruction       the instruction
+	 * @return the future result
+	 */
+	@NotNull CompletableFuture<String> handleAsync(@NotNull SessionAttachment sessionAttachment, @NotNull Instruction instruction);
+
+	/**
+	 * Asynchronous commands, also those in batches, are always started with {@link #getAsync}, since waiting for
+	 * their result would block the server main thread.
+	 */
+	@Override
+	default String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		throw new IllegalStateException("Asynchronous commands cannot be waited for");
+	}
+}
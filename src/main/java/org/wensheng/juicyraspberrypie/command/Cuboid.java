@@ -0,0 +1,216 @@
+package org.wensheng.juicyraspberrypie.command;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * A cuboid of blocks in a world, given by its inclusive minimum and maximum block coordinates.
+ */
+public class Cuboid {
+	/**
+	 * The world.
+	 */
+	private final World world;
+
+	/**
+	 * The minimum x coordinate.
+	 */
+	private final int minX;
+
+	/**
+	 * The minimum y coordinate.
+	 */
+	private final int minY;
+
+	/**
+	 * The minimum z coordinate.
+	 */
+	private final int minZ;
+
+	/**
+	 * The maximum x coordinate.
+	 */
+	private final int maxX;
+
+	/**
+	 * The maximum y coordinate.
+	 */
+	private final int maxY;
+
+	/**
+	 * The maximum z coordinate.
+	 */
+	private final int maxZ;
+
+	/**
+	 * Create a new cuboid between two corners.
+	 *
+	 * @param world the world
+	 * @param x1    the x coordinate of the first corner
+	 * @param y1    the y coordinate of the first corner
+	 * @param z1    the z coordinate of the first corner
+	 * @param x2    the x coordinate of the second corner
+	 * @param y2    the y coordinate of the second corner
+	 * @param z2    the z coordinate of the second corner
+	 */
+	@SuppressWarnings("PMD.ExcessiveParameterList")
+	public Cuboid(final World world, final int x1, final int y1, final int z1, final int x2, final int y2, final int z2) {
+		this.world = world;
+		this.minX = Math.min(x1, x2);
+		this.minY = Math.min(y1, y2);
+		this.minZ = Math.min(z1, z2);
+		this.maxX = Math.max(x1, x2);
+		this.maxY = Math.max(y1, y2);
+		this.maxZ = Math.max(z1, z2);
+	}
+
+	/**
+	 * Create a new cuboid between the blocks at two locations, in the world of the first location.
+	 *
+	 * @param loc1 the first corner
+	 * @param loc2 the second corner
+	 * @return the cuboid
+	 */
+	public static Cuboid between(final Location loc1, final Location loc2) {
+		return new Cuboid(loc1.getWorld(), loc1.getBlockX(), loc1.getBlockY(), loc1.getBlockZ(),
+				loc2.getBlockX(), loc2.getBlockY(), loc2.getBlockZ());
+	}
+
+	/**
+	 * Get the world.
+	 *
+	 * @return the world
+	 */
+	public World getWorld() {
+		return world;
+	}
+
+	/**
+	 * Get the minimum x coordinate.
+	 *
+	 * @return the minimum x coordinate
+	 */
+	public int getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Get the minimum y coordinate.
+	 *
+	 * @return the minimum y coordinate
+	 */
+	public int getMinY() {
+		return minY;
+	}
+
+	/**
+	 * Get the minimum z coordinate.
+	 *
+	 * @return the minimum z coordinate
+	 */
+	public int getMinZ() {
+		return minZ;
+	}
+
+	/**
+	 * Get the maximum x coordinate.
+	 *
+	 * @return the maximum x coordinate
+	 */
+	public int getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Get the maximum y coordinate.
+	 *
+	 * @return the maximum y coordinate
+	 */
+	public int getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Get the maximum z coordinate.
+	 *
+	 * @return the maximum z coordinate
+	 */
+	public int getMaxZ() {
+		return maxZ;
+	}
+
+	/**
+	 * Get the number of blocks along the x axis.
+	 *
+	 * @return the size along the x axis
+	 */
+	public int getSizeX() {
+		return maxX - minX + 1;
+	}
+
+	/**
+	 * Get the number of blocks along the y axis.
+	 *
+	 * @return the size along the y axis
+	 */
+	public int getSizeY() {
+		return maxY - minY + 1;
+	}
+
+	/**
+	 * Get the number of blocks along the z axis.
+	 *
+	 * @return the size along the z axis
+	 */
+	public int getSizeZ() {
+		return maxZ - minZ + 1;
+	}
+
+	/**
+	 * Get the number of blocks.
+	 *
+	 * @return the volume, {@link Long#MAX_VALUE} if it does not fit in a long
+	 */
+	public long getVolume() {
+		final long sizeX = (long) maxX - minX + 1;
+		final long sizeY = (long) maxY - minY + 1;
+		final long sizeZ = (long) maxZ - minZ + 1;
+		if ((double) sizeX * sizeY * sizeZ >= Long.MAX_VALUE) {
+			return Long.MAX_VALUE;
+		}
+		return sizeX * sizeY * sizeZ;
+	}
+
+	/**
+	 * Check whether a block is inside the cuboid.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param z the z coordinate
+	 * @return true if the block is inside
+	 */
+	public boolean contains(final int x, final int y, final int z) {
+		return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+	}
+
+	/**
+	 * Get the position of a block of the cuboid when it is traversed in x, z, y order, with y changing fastest.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param z the z coordinate
+	 * @return the index of the block
+	 */
+	public long indexOf(final int x, final int y, final int z) {
+		return ((long) (x - minX) * getSizeZ() + z - minZ) * getSizeY() + y - minY;
+	}
+
+	/**
+	 * Create a cursor over all blocks of the cuboid.
+	 *
+	 * @return the cursor
+	 */
+	public CuboidCursor cursor() {
+		return new CuboidCursor(this);
+	}
+}
@@ -0,0 +1,217 @@
+package org.wensheng.juicyraspberrypie.command;
+
+/**
+ * A cursor over the blocks of a {@link Cuboid} that does not create any objects while moving.
+ * The blocks are visited one chunk section (16x16x16 blocks) after the other, so that consecutive blocks share their
+ * chunk and section. Within a section, x changes fastest, then z, then y, like the blocks are stored in a section.
+ * {@link #getIndex()} still gives the position of the block in x, z, y order, with y changing fastest.
+ */
+public class CuboidCursor {
+	/**
+	 * The cuboid.
+	 */
+	private final Cuboid cuboid;
+
+	/**
+	 * The x coordinate of the current chunk section.
+	 */
+	private int sectionX;
+
+	/**
+	 * The y coordinate of the current chunk section.
+	 */
+	private int sectionY;
+
+	/**
+	 * The z coordinate of the current chunk section.
+	 */
+	private int sectionZ;
+
+	/**
+	 * The minimum x coordinate of the cuboid within the current section.
+	 */
+	private int sectionMinX;
+
+	/**
+	 * The minimum z coordinate of the cuboid within the current section.
+	 */
+	private int sectionMinZ;
+
+	/**
+	 * The maximum x coordinate of the cuboid within the current section.
+	 */
+	private int sectionMaxX;
+
+	/**
+	 * The maximum y coordinate of the cuboid within the current section.
+	 */
+	private int sectionMaxY;
+
+	/**
+	 * The maximum z coordinate of the cuboid within the current section.
+	 */
+	private int sectionMaxZ;
+
+	/**
+	 * The x coordinate of the current block.
+	 */
+	private int x;
+
+	/**
+	 * The y coordinate of the current block.
+	 */
+	private int y;
+
+	/**
+	 * The z coordinate of the current block.
+	 */
+	private int z;
+
+	/**
+	 * Whether the cursor moved to the first block.
+	 */
+	private boolean started;
+
+	/**
+	 * Whether the cursor moved past the last block.
+	 */
+	private boolean finished;
+
+	/**
+	 * Create a new cursor before the first block of a cuboid.
+	 *
+	 * @param cuboid the cuboid
+	 */
+	CuboidCursor(final Cuboid cuboid) {
+		this.cuboid = cuboid;
+	}
+
+	/**
+	 * Move to the next block.
+	 *
+	 * @return true if there is a next block, false if all blocks were visited
+	 */
+	public boolean next() {
+		if (finished) {
+			return false;
+		}
+		if (!started) {
+			started = true;
+			sectionX = cuboid.getMinX() >> 4;
+			sectionY = cuboid.getMinY() >> 4;
+			sectionZ = cuboid.getMinZ() >> 4;
+			enterSection();
+			return true;
+		}
+		if (x < sectionMaxX) {
+			x++;
+			return true;
+		}
+		x = sectionMinX;
+		if (z < sectionMaxZ) {
+			z++;
+			return true;
+		}
+		z = sectionMinZ;
+		if (y < sectionMaxY) {
+			y++;
+			return true;
+		}
+		return nextSection();
+	}
+
+	private boolean nextSection() {
+		if (sectionY < cuboid.getMaxY() >> 4) {
+			sectionY++;
+		} else if (sectionZ < cuboid.getMaxZ() >> 4) {
+			sectionY = cuboid.getMinY() >> 4;
+			sectionZ++;
+		} else if (sectionX < cuboid.getMaxX() >> 4) {
+			sectionY = cuboid.getMinY() >> 4;
+			sectionZ = cuboid.getMinZ() >> 4;
+			sectionX++;
+		} else {
+			finished = true;
+			return false;
+		}
+		enterSection();
+		return true;
+	}
+
+	private void enterSection() {
+		sectionMinX = Math.max(cuboid.getMinX(), sectionX << 4);
+		sectionMinZ = Math.max(cuboid.getMinZ(), sectionZ << 4);
+		sectionMaxX = Math.min(cuboid.getMaxX(), (sectionX << 4) + 15);
+		sectionMaxY = Math.min(cuboid.getMaxY(), (sectionY << 4) + 15);
+		sectionMaxZ = Math.min(cuboid.getMaxZ(), (sectionZ << 4) + 15);
+		x = sectionMinX;
+		y = Math.max(cuboid.getMinY(), sectionY << 4);
+		z = sectionMinZ;
+	}
+
+	/**
+	 * Get the x coordinate of the current block.
+	 *
+	 * @return the x coordinate
+	 */
+	public int getX() {
+		return x;
+	}
+
+	/**
+	 * Get the y coordinate of the current block.
+	 *
+	 * @return the y coordinate
+	 */
+	public int getY() {
+		return y;
+	}
+
+	/**
+	 * Get the z coordinate of the current block.
+	 *
+	 * @return the z coordinate
+	 */
+	public int getZ() {
+		return z;
+	}
+
+	/**
+	 * Check whether a block of the cuboid comes after the current block, so that moving on reaches it.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param z the z coordinate
+	 * @return true if the cursor has not visited the block yet
+	 */
+	public boolean isAhead(final int x, final int y, final int z) {
+		if (!started) {
+			return true;
+		}
+		if (finished) {
+			return false;
+		}
+		final int order = compare(x >> 4, this.x >> 4, z >> 4, this.z >> 4, y >> 4, this.y >> 4);
+		return order == 0 ? compare(y, this.y, z, this.z, x, this.x) > 0 : order > 0;
+	}
+
+	private static int compare(final int first, final int otherFirst, final int second, final int otherSecond,
+							   final int third, final int otherThird) {
+		if (first != otherFirst) {
+			return Integer.compare(first, otherFirst);
+		}
+		if (second != otherSecond) {
+			return Integer.compare(second, otherSecond);
+		}
+		return Integer.compare(third, otherThird);
+	}
+
+	/**
+	 * Get the position of the current block when the cuboid is traversed in x, z, y order, with y changing fastest.
+	 *
+	 * @return the index of the current block
+	 */
+	public long getIndex() {
+		return cuboid.indexOf(x, y, z);
+	}
+}
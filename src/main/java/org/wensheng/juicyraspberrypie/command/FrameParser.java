@@ -0,0 +1,216 @@
+package org.wensheng.juicyraspberrypie.command;
+
+import org.bukkit.Material;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A parser for the body of a binary command frame, the compact alternative to the lines parsed by {@link LineParser}.
+ * A body consists of a flags byte, the request id as variable-length int if {@link #FLAG_REQUEST_ID} is set,
+ * the command id as variable-length int (see {@link Registry#getCommands()}) and the arguments up to the end of the
+ * body. Every argument starts with a type byte:
+ * <ul>
+ *     <li>{@link #TYPE_NULL}: a missing argument</li>
+ *     <li>{@link #TYPE_STRING}: the length as variable-length int and the UTF-8 bytes</li>
+ *     <li>{@link #TYPE_INT}: a little-endian 32 bit int</li>
+ *     <li>{@link #TYPE_DOUBLE}: a little-endian 64 bit double</li>
+ *     <li>{@link #TYPE_MATERIAL}: the ordinal of a {@link Material} as variable-length int</li>
+ * </ul>
+ */
+public class FrameParser {
+	/**
+	 * The flag for a request id following the flags byte.
+	 */
+	public static final int FLAG_REQUEST_ID = 1;
+
+	/**
+	 * The flag to suppress the "OK" response of a successful void command.
+	 */
+	public static final int FLAG_QUIET = 2;
+
+	/**
+	 * The type of a missing argument.
+	 */
+	public static final int TYPE_NULL = 0;
+
+	/**
+	 * The type of a string argument.
+	 */
+	public static final int TYPE_STRING = 1;
+
+	/**
+	 * The type of an int argument.
+	 */
+	public static final int TYPE_INT = 2;
+
+	/**
+	 * The type of a double argument.
+	 */
+	public static final int TYPE_DOUBLE = 3;
+
+	/**
+	 * The type of a material argument.
+	 */
+	public static final int TYPE_MATERIAL = 4;
+
+	/**
+	 * The initial number of arguments.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The materials by their ordinal.
+	 */
+	private static final Material[] MATERIALS = Material.values();
+
+	/**
+	 * The location parser for the instructions.
+	 */
+	private final LocationParser locationParser;
+
+	/**
+	 * The instruction of the last parsed frame.
+	 */
+	private Instruction instruction;
+
+	/**
+	 * The request id of the last parsed frame, or null if it has none.
+	 */
+	private String requestId;
+
+	/**
+	 * Whether the last parsed frame asked to suppress the response of a successful void command.
+	 */
+	private boolean quiet;
+
+	/**
+	 * The command id of the last parsed frame.
+	 */
+	private int commandId;
+
+	/**
+	 * The string arguments, null for numeric and missing arguments.
+	 */
+	private String[] strings = new String[INITIAL_CAPACITY];
+
+	/**
+	 * The numeric arguments, NaN for other arguments.
+	 */
+	private double[] numbers = new double[INITIAL_CAPACITY];
+
+	/**
+	 * Create a new frame parser.
+	 *
+	 * @param locationParser the location parser for the instructions
+	 */
+	public FrameParser(final LocationParser locationParser) {
+		this.locationParser = locationParser;
+	}
+
+	/**
+	 * Parse the body of a frame from the position to the limit of the buffer.
+	 *
+	 * @param body the buffer containing the body
+	 * @return true if the body has the expected format
+	 */
+	public boolean parse(final ByteBuffer body) {
+		requestId = null;
+		try {
+			final byte flags = body.get();
+			quiet = (flags & FLAG_QUIET) != 0;
+			if ((flags & FLAG_REQUEST_ID) != 0) {
+				requestId = Integer.toUnsignedString(Varints.read(body));
+			}
+			commandId = Varints.read(body);
+			int count = 0;
+			while (body.hasRemaining()) {
+				if (count == strings.length) {
+					strings = Arrays.copyOf(strings, count * 2);
+					numbers = Arrays.copyOf(numbers, count * 2);
+				}
+				strings[count] = null;
+				numbers[count] = Double.NaN;
+				parseArgument(body, count++);
+			}
+			instruction = new Instruction(Arrays.copyOf(strings, count), Arrays.copyOf(numbers, count), locationParser);
+			return true;
+		} catch (final BufferUnderflowException | IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private void parseArgument(final ByteBuffer body, final int index) {
+		final byte type = body.get();
+		switch (type) {
+			case TYPE_NULL -> {
+			}
+			case TYPE_STRING -> {
+				final int length = Varints.read(body);
+				if (length < 0 || length > body.remaining()) {
+					throw new BufferUnderflowException();
+				}
+				strings[index] = new String(body.array(), body.arrayOffset() + body.position(), length, StandardCharsets.UTF_8);
+				body.position(body.position() + length);
+			}
+			case TYPE_INT -> numbers[index] = Integer.reverseBytes(body.getInt());
+			case TYPE_DOUBLE -> numbers[index] = Double.longBitsToDouble(Long.reverseBytes(body.getLong()));
+			case TYPE_MATERIAL -> {
+				final int ordinal = Varints.read(body);
+				if (ordinal < 0 || ordinal >= MATERIALS.length) {
+					throw new IllegalArgumentException("Unknown material ordinal " + ordinal);
+				}
+				strings[index] = MATERIALS[ordinal].name();
+			}
+			default -> throw new IllegalArgumentException("Unknown argument type " + type);
+		}
+	}
+
+	/**
+	 * Get the request id of the last parsed frame. It is also available if the frame had the wrong format.
+	 *
+	 * @return the request id, or null if the frame has none
+	 */
+	public String getRequestId() {
+		return requestId;
+	}
+
+	/**
+	 * Check whether the last parsed frame asked to suppress the "OK" response of a successful void command.
+	 *
+	 * @return true if the response should be suppressed
+	 */
+	public boolean isQuiet() {
+		return quiet;
+	}
+
+	/**
+	 * Get the command id of the last parsed frame.
+	 *
+	 * @return the command id
+	 */
+	public int getCommandId() {
+		return commandId;
+	}
+
+	/**
+	 * Look up the handler for the command id of the last parsed frame.
+	 *
+	 * @param registry the registry to look the command up in
+	 * @return the handler, or null if no command has the id
+	 */
+	public Handler getHandler(final Registry registry) {
+		return registry.getHandler(commandId);
+	}
+
+	/**
+	 * Get the instruction with the arguments of the last parsed frame.
+	 *
+	 * @return the instruction
+	 */
+	public Instruction getInstruction() {
+		return instruction;
+	}
+}
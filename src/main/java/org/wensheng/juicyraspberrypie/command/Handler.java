@@ -3,6 +3,7 @@ package org.wensheng.juicyraspberrypie.command;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -37,6 +38,18 @@ public interface Handler {
 	 */
 	String handle(@NotNull SessionAttachment sessionAttachment, @NotNull Instruction instruction);
 
+	/**
+	 * Get the regions a command works on, so that their chunks can be loaded in the background before the command is
+	 * executed. Called from the server main thread; the instruction is rewound afterwards.
+	 *
+	 * @param sessionAttachment the session attachment
+	 * @param instruction       the instruction
+	 * @return the regions, empty if the command does not work on regions
+	 */
+	default @NotNull List<Cuboid> getRegions(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		return List.of();
+	}
+
 	/**
 	 * Return a context object that is attached to the current session (and available to the Handler via
 	 * {@link SessionAttachment#getContext(Handler)}) if the handler needs session-scoped information.
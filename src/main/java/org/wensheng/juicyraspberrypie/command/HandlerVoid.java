@@ -7,10 +7,15 @@ import org.jetbrains.annotations.NotNull;
  */
 @FunctionalInterface
 public interface HandlerVoid extends Handler {
+	/**
+	 * The result of a successfully handled instruction.
+	 */
+	String OK = "OK";
+
 	@Override
 	default String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
 		handleVoid(sessionAttachment, instruction);
-		return "OK";
+		return OK;
 	}
 
 	/**
@@ -2,13 +2,10 @@ package org.wensheng.juicyraspberrypie.command;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
-import org.bukkit.World;
 import org.bukkit.entity.Player;
 
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.stream.Collectors;
@@ -19,10 +16,36 @@ import java.util.stream.StreamSupport;
  */
 public class Instruction implements Iterator<String> {
 	/**
-	 * The arguments.
+	 * The arguments, or null if the arguments are spans of {@link #source}.
+	 * Numeric arguments of a binary frame are null here and only held in {@link #numbers}.
 	 */
 	private final String[] args;
 
+	/**
+	 * The text the argument spans refer to.
+	 */
+	private final String source;
+
+	/**
+	 * The start index of every argument span.
+	 */
+	private final int[] starts;
+
+	/**
+	 * The end index of every argument span.
+	 */
+	private final int[] ends;
+
+	/**
+	 * The arguments decoded as numbers, NaN where an argument was not decoded, or null if nothing was decoded.
+	 */
+	private final double[] numbers;
+
+	/**
+	 * The number of arguments.
+	 */
+	private final int count;
+
 	/**
 	 * The location parser.
 	 */
@@ -41,6 +64,52 @@ public class Instruction implements Iterator<String> {
 	 */
 	public Instruction(final String[] args, final LocationParser locationParser) {
 		this.args = Arrays.copyOf(args, args.length);
+		this.source = null;
+		this.starts = null;
+		this.ends = null;
+		this.numbers = null;
+		this.count = args.length;
+		this.locationParser = locationParser;
+		this.courser = 0;
+	}
+
+	/**
+	 * Create a new instruction whose arguments are spans of a text, as produced by {@link LineParser}.
+	 * An empty span stands for a missing (null) argument.
+	 *
+	 * @param source         the text the spans refer to
+	 * @param starts         the start index of every span
+	 * @param ends           the end index of every span
+	 * @param numbers        the arguments decoded as numbers, NaN where an argument was not decoded
+	 * @param locationParser the location parser
+	 */
+	Instruction(final String source, final int[] starts, final int[] ends, final double[] numbers, final LocationParser locationParser) {
+		this.args = null;
+		this.source = source;
+		this.starts = starts;
+		this.ends = ends;
+		this.numbers = numbers;
+		this.count = starts.length;
+		this.locationParser = locationParser;
+		this.courser = 0;
+	}
+
+	/**
+	 * Create a new instruction from the typed arguments of a binary frame, as produced by {@link FrameParser}.
+	 * An argument is a String if it is non-null in {@code args}, a number if it is not NaN in {@code numbers},
+	 * and missing otherwise.
+	 *
+	 * @param args           the String arguments
+	 * @param numbers        the numeric arguments
+	 * @param locationParser the location parser
+	 */
+	Instruction(final String[] args, final double[] numbers, final LocationParser locationParser) {
+		this.args = args;
+		this.source = null;
+		this.starts = null;
+		this.ends = null;
+		this.numbers = numbers;
+		this.count = args.length;
 		this.locationParser = locationParser;
 		this.courser = 0;
 	}
@@ -62,7 +131,7 @@ public class Instruction implements Iterator<String> {
 	 * @return true if there are n more arguments
 	 */
 	public boolean hasNext(final int amount) {
-		return courser + amount <= args.length;
+		return courser + amount <= count;
 	}
 
 	/**
@@ -72,7 +141,14 @@ public class Instruction implements Iterator<String> {
 	 */
 	@Override
 	public String next() {
-		return hasNext() ? args[courser++] : null;
+		return hasNext() ? argument(courser++) : null;
+	}
+
+	/**
+	 * Go back to the first argument, so that the instruction can be read again.
+	 */
+	public void rewind() {
+		courser = 0;
 	}
 
 	/**
@@ -81,7 +157,62 @@ public class Instruction implements Iterator<String> {
 	 * @return the next argument
 	 */
 	public String peek() {
-		return hasNext() ? args[courser] : null;
+		return hasNext() ? argument(courser) : null;
+	}
+
+	/**
+	 * Get the next argument as an int without creating a String for it.
+	 *
+	 * @return the next argument as an int
+	 * @throws NumberFormatException if there is no next argument or it is not an int
+	 */
+	public int nextInt() {
+		if (!hasNext()) {
+			throw new NumberFormatException("Missing argument");
+		}
+		final int index = courser++;
+		if (source != null) {
+			return Integer.parseInt(source, starts[index], ends[index], 10);
+		}
+		if (args[index] == null && isNumber(index) && numbers[index] == (int) numbers[index]) {
+			return (int) numbers[index];
+		}
+		return Integer.parseInt(argument(index));
+	}
+
+	/**
+	 * Get the next argument as a double, decoded in advance where possible.
+	 *
+	 * @return the next argument as a double
+	 * @throws NumberFormatException if there is no next argument or it is not a number
+	 */
+	public double nextDouble() {
+		if (!hasNext()) {
+			throw new NumberFormatException("Missing argument");
+		}
+		final int index = courser++;
+		if (isNumber(index)) {
+			return numbers[index];
+		}
+		if (source != null) {
+			return NumberParser.parseDouble(source, starts[index], ends[index]);
+		}
+		return Double.parseDouble(args[index]);
+	}
+
+	private boolean isNumber(final int index) {
+		return numbers != null && !Double.isNaN(numbers[index]);
+	}
+
+	private String argument(final int index) {
+		if (source != null) {
+			return starts[index] == ends[index] ? null : source.substring(starts[index], ends[index]);
+		}
+		if (args[index] != null || !isNumber(index)) {
+			return args[index];
+		}
+		final double number = numbers[index];
+		return number == (int) number ? Integer.toString((int) number) : Double.toString(number);
 	}
 
 	/**
@@ -90,34 +221,16 @@ public class Instruction implements Iterator<String> {
 	 * @return the location
 	 */
 	public Location nextLocation() {
-		return locationParser.parse(next(), next(), next());
+		return locationParser.parse(nextDouble(), nextDouble(), nextDouble());
 	}
 
 	/**
-	 * Get the locations between the next two locations from the instruction.
+	 * Get the cuboid between the blocks at the next two locations from the instruction.
 	 *
-	 * @return the locations
-	 */
-	public List<Location> nextLocationsBetween() {
-		final Location loc1 = nextLocation();
-		final Location loc2 = nextLocation();
-		final List<Location> locations = new ArrayList<>();
-		final World world = loc1.getWorld();
-		final int minX = Math.min(loc1.getBlockX(), loc2.getBlockX());
-		final int maxX = Math.max(loc1.getBlockX(), loc2.getBlockX());
-		final int minY = Math.min(loc1.getBlockY(), loc2.getBlockY());
-		final int maxY = Math.max(loc1.getBlockY(), loc2.getBlockY());
-		final int minZ = Math.min(loc1.getBlockZ(), loc2.getBlockZ());
-		final int maxZ = Math.max(loc1.getBlockZ(), loc2.getBlockZ());
-
-		for (int x = minX; x <= maxX; ++x) {
-			for (int z = minZ; z <= maxZ; ++z) {
-				for (int y = minY; y <= maxY; ++y) {
-					locations.add(new Location(world, x, y, z));
-				}
-			}
-		}
-		return locations;
+	 * @return the cuboid
+	 */
+	public Cuboid nextCuboid() {
+		return Cuboid.between(nextLocation(), nextLocation());
 	}
 
 	/**
@@ -0,0 +1,207 @@
+package org.wensheng.juicyraspberrypie.command;
+
+import java.util.Arrays;
+
+/**
+ * A parser for command lines of the form {@code method.name(arg1,arg2,...,)}, optionally prefixed with a request id
+ * like {@code #42 } or {@code #42! } that the response is tagged with.
+ * The line is scanned once and the method name and arguments are only recorded as index ranges, so that the handler
+ * lookup does not create any objects and arguments only become Strings when a handler asks for them.
+ * Numeric arguments are decoded up front, so that a parser running on the network thread takes that work off the
+ * thread executing the instruction.
+ */
+public class LineParser {
+	/**
+	 * The initial number of argument spans.
+	 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * The location parser for the instructions.
+	 */
+	private final LocationParser locationParser;
+
+	/**
+	 * The instruction of the last parsed line.
+	 */
+	private Instruction instruction;
+
+	/**
+	 * The last parsed line.
+	 */
+	private String line;
+
+	/**
+	 * The request id of the last parsed line, or null if it has none.
+	 */
+	private String requestId;
+
+	/**
+	 * Whether the last parsed line asked to suppress the response of a successful void command.
+	 */
+	private boolean quiet;
+
+	/**
+	 * The start index of the method name.
+	 */
+	private int methodStart;
+
+	/**
+	 * The end index of the method name.
+	 */
+	private int methodEnd;
+
+	/**
+	 * The start index of every argument.
+	 */
+	private int[] starts = new int[INITIAL_CAPACITY];
+
+	/**
+	 * The end index of every argument.
+	 */
+	private int[] ends = new int[INITIAL_CAPACITY];
+
+	/**
+	 * Create a new line parser.
+	 *
+	 * @param locationParser the location parser for the instructions
+	 */
+	public LineParser(final LocationParser locationParser) {
+		this.locationParser = locationParser;
+	}
+
+	/**
+	 * Parse a line. Surrounding whitespace is ignored, and as the client terminates every argument with a comma,
+	 * the text after the last comma is not an argument.
+	 *
+	 * @param line the line
+	 * @return true if the line has the expected format
+	 */
+	public boolean parse(final String line) {
+		this.line = line;
+		int start = 0;
+		int end = line.length();
+		while (start < end && line.charAt(start) <= ' ') {
+			start++;
+		}
+		while (end > start && line.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		start = parseRequestId(line, start, end);
+		if (start < 0) {
+			return false;
+		}
+		final int open = line.indexOf('(', start);
+		if (end == start || line.charAt(end - 1) != ')' || open < 0 || open >= end) {
+			return false;
+		}
+		methodStart = start;
+		methodEnd = open;
+
+		int count = 0;
+		int argumentStart = open + 1;
+		for (int i = argumentStart; i < end - 1; i++) {
+			if (line.charAt(i) == ',') {
+				if (count == starts.length) {
+					starts = Arrays.copyOf(starts, count * 2);
+					ends = Arrays.copyOf(ends, count * 2);
+				}
+				starts[count] = argumentStart;
+				ends[count] = i;
+				count++;
+				argumentStart = i + 1;
+			}
+		}
+		final double[] numbers = new double[count];
+		for (int i = 0; i < count; i++) {
+			numbers[i] = NumberParser.parseExactDouble(line, starts[i], ends[i]);
+		}
+		instruction = new Instruction(line, Arrays.copyOf(starts, count), Arrays.copyOf(ends, count), numbers, locationParser);
+		return true;
+	}
+
+	/**
+	 * Parse the optional request id prefix {@code #<id> } or {@code #<id>! }.
+	 *
+	 * @return the start index of the method name, or -1 if the prefix is not followed by a command
+	 */
+	private int parseRequestId(final String line, final int start, final int end) {
+		requestId = null;
+		quiet = false;
+		if (start == end || line.charAt(start) != '#') {
+			return start;
+		}
+		int idEnd = start + 1;
+		while (idEnd < end && line.charAt(idEnd) > ' ') {
+			idEnd++;
+		}
+		int commandStart = idEnd;
+		while (commandStart < end && line.charAt(commandStart) <= ' ') {
+			commandStart++;
+		}
+		quiet = line.charAt(idEnd - 1) == '!';
+		final int idStart = start + 1;
+		final int idLength = (quiet ? idEnd - 1 : idEnd) - idStart;
+		if (idLength <= 0) {
+			return -1;
+		}
+		requestId = line.substring(idStart, idStart + idLength);
+		return commandStart == idEnd ? -1 : commandStart;
+	}
+
+	/**
+	 * Get the request id of the last parsed line. It is also available if the line had the wrong format.
+	 *
+	 * @return the request id, or null if the line has none
+	 */
+	public String getRequestId() {
+		return requestId;
+	}
+
+	/**
+	 * Check whether the last parsed line asked to suppress the "OK" response of a successful void command.
+	 *
+	 * @return true if the response should be suppressed
+	 */
+	public boolean isQuiet() {
+		return quiet;
+	}
+
+	/**
+	 * Look up the handler for the method of the last parsed line.
+	 *
+	 * @param registry the registry to look the method up in
+	 * @return the handler, or null if the method is not registered
+	 */
+	public Handler getHandler(final Registry registry) {
+		return registry.getHandler(line, methodStart, methodEnd);
+	}
+
+	/**
+	 * Get the method name of the last parsed line.
+	 *
+	 * @return the method name
+	 */
+	public String getMethodName() {
+		return line.substring(methodStart, methodEnd);
+	}
+
+	/**
+	 * Check whether the method of the last parsed line has the given name, without creating a String for it.
+	 *
+	 * @param name the method name
+	 * @return true if the method has the name
+	 */
+	public boolean isMethod(final String name) {
+		return name.length() == methodEnd - methodStart && name.regionMatches(0, line, methodStart, name.length());
+	}
+
+	/**
+	 * Get the instruction with the arguments of the last parsed line.
+	 *
+	 * @return the instruction
+	 */
+	public Instruction getInstruction() {
+		return instruction;
+	}
+}
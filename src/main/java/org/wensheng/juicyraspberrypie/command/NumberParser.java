@@ -0,0 +1,77 @@
+package org.wensheng.juicyraspberrypie.command;
+
+/**
+ * Parses numbers directly from a region of a text without creating a String for it.
+ */
+final class NumberParser {
+	/**
+	 * The largest number of significant digits that always fits exactly into the mantissa of a double.
+	 */
+	private static final int MAX_EXACT_DIGITS = 15;
+
+	/**
+	 * The powers of ten that are exactly representable as double.
+	 */
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	private NumberParser() {
+	}
+
+	/**
+	 * Parse a double from the given region of a text.
+	 * Plain decimals are converted by {@link #parseExactDouble(CharSequence, int, int)}, everything else is handed to
+	 * {@link Double#parseDouble(String)}.
+	 *
+	 * @param text  the text
+	 * @param start the start index of the number
+	 * @param end   the end index of the number
+	 * @return the parsed number
+	 * @throws NumberFormatException if the region does not contain a number
+	 */
+	static double parseDouble(final CharSequence text, final int start, final int end) {
+		final double value = parseExactDouble(text, start, end);
+		return Double.isNaN(value) ? Double.parseDouble(text.subSequence(start, end).toString()) : value;
+	}
+
+	/**
+	 * Parse a plain decimal like {@code -12.5} with up to 15 digits from the given region of a text.
+	 * The conversion is exact because both the digits and the power of ten are exact doubles and a single division
+	 * is correctly rounded.
+	 *
+	 * @param text  the text
+	 * @param start the start index of the number
+	 * @param end   the end index of the number
+	 * @return the parsed number, or NaN if the region does not contain a plain decimal
+	 */
+	static double parseExactDouble(final CharSequence text, final int start, final int end) {
+		int index = start;
+		final boolean negative = index < end && text.charAt(index) == '-';
+		if (negative || index < end && text.charAt(index) == '+') {
+			index++;
+		}
+		long digits = 0;
+		int digitCount = 0;
+		int fractionDigits = -1;
+		for (; index < end; index++) {
+			final char character = text.charAt(index);
+			if (character >= '0' && character <= '9') {
+				digits = digits * 10 + character - '0';
+				digitCount++;
+				if (fractionDigits >= 0) {
+					fractionDigits++;
+				}
+			} else if (character == '.' && fractionDigits < 0) {
+				fractionDigits = 0;
+			} else {
+				break;
+			}
+		}
+		if (index < end || digitCount == 0 || digitCount > MAX_EXACT_DIGITS) {
+			return Double.NaN;
+		}
+		final double value = fractionDigits > 0 ? digits / POWERS_OF_TEN[fractionDigits] : digits;
+		return negative ? -value : value;
+	}
+}
@@ -3,8 +3,11 @@ package org.wensheng.juicyraspberrypie.command;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -16,11 +19,33 @@ public class Registry {
 	 */
 	private final Map<String, Handler> handlers;
 
+	/**
+	 * The commands in the order they were first registered, so that the index of a command is its id.
+	 */
+	private final List<String> commands;
+
+	/**
+	 * The handlers by command id.
+	 */
+	private Handler[] handlersById;
+
+	/**
+	 * The commands in an open-addressing table, indexed by their hash code, to look them up by a region of a text.
+	 */
+	private String[] tableCommands;
+
+	/**
+	 * The handlers at the same index as their command in {@link #tableCommands}.
+	 */
+	private Handler[] tableHandlers;
+
 	/**
 	 * Create a new registry.
 	 */
 	public Registry() {
 		handlers = new HashMap<>();
+		commands = new ArrayList<>();
+		rebuildTable();
 	}
 
 	/**
@@ -39,7 +64,19 @@ public class Registry {
 	 * @param handler the handler
 	 */
 	public void register(final String command, final Handler handler) {
-		handlers.put(command, handler);
+		if (handlers.put(command, handler) == null) {
+			commands.add(command);
+		}
+		rebuildTable();
+	}
+
+	/**
+	 * Get all commands in the order of their ids. The id of a command is its index in the list.
+	 *
+	 * @return the commands
+	 */
+	public @NotNull List<String> getCommands() {
+		return Collections.unmodifiableList(commands);
 	}
 
 	/**
@@ -52,6 +89,59 @@ public class Registry {
 		return handlers.get(command);
 	}
 
+	/**
+	 * Get the handler for the command in the given region of a text, without creating a String for it.
+	 *
+	 * @param text  the text containing the command
+	 * @param start the start index of the command
+	 * @param end   the end index of the command
+	 * @return the handler
+	 */
+	public Handler getHandler(final String text, final int start, final int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + text.charAt(i);
+		}
+		final int mask = tableCommands.length - 1;
+		final int length = end - start;
+		for (int index = spread(hash) & mask; tableCommands[index] != null; index = index + 1 & mask) {
+			final String command = tableCommands[index];
+			if (command.length() == length && command.regionMatches(0, text, start, length)) {
+				return tableHandlers[index];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Get the handler for the command with the given id.
+	 *
+	 * @param id the command id
+	 * @return the handler, or null if no command has the id
+	 */
+	public Handler getHandler(final int id) {
+		return id >= 0 && id < handlersById.length ? handlersById[id] : null;
+	}
+
+	private void rebuildTable() {
+		handlersById = commands.stream().map(handlers::get).toArray(Handler[]::new);
+		final int capacity = Integer.highestOneBit(Math.max(1, handlers.size()) * 4);
+		tableCommands = new String[capacity];
+		tableHandlers = new Handler[capacity];
+		handlers.forEach((command, handler) -> {
+			int index = spread(command.hashCode()) & capacity - 1;
+			while (tableCommands[index] != null) {
+				index = index + 1 & capacity - 1;
+			}
+			tableCommands[index] = command;
+			tableHandlers[index] = handler;
+		});
+	}
+
+	private static int spread(final int hash) {
+		return hash ^ hash >>> 16;
+	}
+
 	/**
 	 * Create all contexts for the passed session.
 	 */
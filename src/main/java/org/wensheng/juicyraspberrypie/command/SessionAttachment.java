@@ -4,7 +4,9 @@ import org.bukkit.Server;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.block.UndoJournal;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
@@ -43,6 +45,21 @@ public class SessionAttachment implements AutoCloseable {
 	@NotNull
 	private final Map<@NotNull Handler, @NotNull Object> contexts = new HashMap<>();
 
+	/**
+	 * Whether the session was closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Whether block-setting commands should skip blocks that already match and answer the number of changed blocks.
+	 */
+	private boolean diffMode;
+
+	/**
+	 * The journal of block edits that can be undone, or null if edits are not recorded.
+	 */
+	private UndoJournal undoJournal;
+
 	/**
 	 * Create a new session attachment.
 	 *
@@ -121,9 +138,71 @@ public class SessionAttachment implements AutoCloseable {
 		return Optional.ofNullable(contexts.get(handler));
 	}
 
+	/**
+	 * Check whether the session was closed.
+	 *
+	 * @return true if the session was closed
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Check whether block-setting commands should skip blocks that already match and answer the number of changed
+	 * blocks.
+	 *
+	 * @return true if diff mode is enabled
+	 */
+	public boolean isDiffMode() {
+		return diffMode;
+	}
+
+	/**
+	 * Set whether block-setting commands should skip blocks that already match and answer the number of changed blocks.
+	 *
+	 * @param diffMode true to enable diff mode
+	 */
+	public void setDiffMode(final boolean diffMode) {
+		this.diffMode = diffMode;
+	}
+
+	/**
+	 * Get the journal the block edits of the session are recorded in.
+	 *
+	 * @return the journal, or null if edits are not recorded
+	 */
+	public UndoJournal getUndoJournal() {
+		return undoJournal;
+	}
+
+	/**
+	 * Set the journal to record the block edits of the session in. The previous journal is closed.
+	 *
+	 * @param undoJournal the journal, or null to stop recording edits
+	 */
+	public void setUndoJournal(final UndoJournal undoJournal) {
+		if (this.undoJournal != null && this.undoJournal != undoJournal) {
+			closeJournal();
+		}
+		this.undoJournal = undoJournal;
+	}
+
+	private void closeJournal() {
+		try {
+			undoJournal.close();
+		} catch (final IOException e) {
+			logger.log(Level.WARNING, "Failed to close undo journal: " + e.getMessage(), e);
+		}
+	}
+
 	@Override
 	@SuppressWarnings("PMD.AvoidCatchingGenericException")
 	public void close() {
+		closed = true;
+		if (undoJournal != null) {
+			closeJournal();
+			undoJournal = null;
+		}
 		contexts.values().stream()
 				.filter(context -> context instanceof AutoCloseable)
 				.forEach(context -> {
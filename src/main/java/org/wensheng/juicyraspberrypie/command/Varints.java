@@ -0,0 +1,53 @@
+package org.wensheng.juicyraspberrypie.command;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes unsigned variable-length integers, seven bits per byte with the lowest bits first.
+ * The highest bit of every byte is set if another byte follows.
+ */
+public final class Varints {
+	/**
+	 * The largest number of bytes of an encoded int.
+	 */
+	public static final int MAX_BYTES = 5;
+
+	private Varints() {
+	}
+
+	/**
+	 * Read a variable-length int at the position of the buffer and advance the position.
+	 *
+	 * @param buffer the buffer
+	 * @return the value
+	 * @throws BufferUnderflowException if the buffer ends before the value
+	 * @throws IllegalArgumentException if the value does not fit into an int
+	 */
+	public static int read(final ByteBuffer buffer) {
+		int value = 0;
+		for (int shift = 0; shift < MAX_BYTES * 7; shift += 7) {
+			final byte b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Variable-length int is longer than " + MAX_BYTES + " bytes");
+	}
+
+	/**
+	 * Write a variable-length int at the position of the buffer and advance the position.
+	 *
+	 * @param buffer the buffer
+	 * @param value  the value, treated as unsigned
+	 */
+	public static void write(final ByteBuffer buffer, final int value) {
+		int remaining = value;
+		while ((remaining & ~0x7F) != 0) {
+			buffer.put((byte) (remaining & 0x7F | 0x80));
+			remaining >>>= 7;
+		}
+		buffer.put((byte) remaining);
+	}
+}
@@ -0,0 +1,128 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.bukkit.Material;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.Directional;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches the resolution of material names sent by clients and the block data created for a material and facing.
+ * Block data handed out by {@link #blockData(Material, BlockFace)} is shared and must not be modified.
+ */
+public class BlockDataCache {
+	/**
+	 * The largest number of cached material names, so that clients sending arbitrary names cannot grow the cache.
+	 */
+	private static final int MAX_NAMES = 4096;
+
+	/**
+	 * All block faces by ordinal.
+	 */
+	private static final BlockFace[] FACES = BlockFace.values();
+
+	/**
+	 * The materials by the name sent by a client, empty if the name does not match a material.
+	 */
+	private final Map<String, Optional<Material>> materials = new ConcurrentHashMap<>();
+
+	/**
+	 * The block data by material and facing ordinal, only accessed from the server main thread.
+	 */
+	private final Map<Material, BlockData[]> blockData = new EnumMap<>(Material.class);
+
+	/**
+	 * The number of material names found in the cache.
+	 */
+	private final LongAdder materialHits = new LongAdder();
+
+	/**
+	 * The number of material names that had to be matched.
+	 */
+	private final LongAdder materialMisses = new LongAdder();
+
+	/**
+	 * The number of block data found in the cache.
+	 */
+	private final LongAdder blockDataHits = new LongAdder();
+
+	/**
+	 * The number of block data that had to be created.
+	 */
+	private final LongAdder blockDataMisses = new LongAdder();
+
+	/**
+	 * Create a new, empty cache.
+	 */
+	public BlockDataCache() {
+	}
+
+	/**
+	 * Get the material for a name sent by a client, like {@link Material#matchMaterial(String)}.
+	 *
+	 * @param name     the name
+	 * @param fallback the material to use if the name does not match a material
+	 * @return the material
+	 */
+	public Material material(final String name, final Material fallback) {
+		if (name == null) {
+			return fallback;
+		}
+		Optional<Material> material = materials.get(name);
+		if (material == null) {
+			materialMisses.increment();
+			material = Optional.ofNullable(Material.matchMaterial(name));
+			if (materials.size() < MAX_NAMES) {
+				materials.put(name, material);
+			}
+		} else {
+			materialHits.increment();
+		}
+		return material.orElse(fallback);
+	}
+
+	/**
+	 * Get the shared block data for a material, facing the given direction if the material is directional.
+	 * Must be called from the server main thread. The block data must not be modified.
+	 *
+	 * @param material the material
+	 * @param facing   the facing
+	 * @return the block data
+	 */
+	public BlockData blockData(final Material material, final BlockFace facing) {
+		final BlockData[] byFacing = blockData.computeIfAbsent(material, m -> new BlockData[FACES.length]);
+		BlockData data = byFacing[facing.ordinal()];
+		if (data == null) {
+			blockDataMisses.increment();
+			data = material.createBlockData();
+			if (data instanceof Directional directional) {
+				directional.setFacing(facing);
+			}
+			byFacing[facing.ordinal()] = data;
+		} else {
+			blockDataHits.increment();
+		}
+		return data;
+	}
+
+	/**
+	 * Get the facing for the number sent by a client.
+	 *
+	 * @param facing the ordinal of the facing
+	 * @return the facing
+	 */
+	public BlockFace facing(final int facing) {
+		return FACES[facing];
+	}
+
+	@Override
+	public String toString() {
+		return "material names: " + materialHits.sum() + " hits, " + materialMisses.sum() + " misses; block data: "
+				+ blockDataHits.sum() + " hits, " + blockDataMisses.sum() + " misses";
+	}
+}
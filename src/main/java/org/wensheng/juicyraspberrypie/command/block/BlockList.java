@@ -0,0 +1,139 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.block.data.BlockData;
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * A region of different blocks read from the arguments of {@code world.setBlockList} and {@code jobs.setBlockList}:
+ * the lowest corner, the size along x, y and z, whether the runs are compressed, whether air should be skipped, the
+ * base64 encoded runs of palette indices in x, z, y order (see {@link RunLengthCodec}), and the materials of the palette.
+ */
+public final class BlockList {
+	/**
+	 * The region.
+	 */
+	private final Cuboid cuboid;
+
+	/**
+	 * The block data of every palette entry, null for skipped air.
+	 */
+	private final BlockData[] palette;
+
+	/**
+	 * The palette index of every block in x, z, y order.
+	 */
+	private final int[] indices;
+
+	private BlockList(final Cuboid cuboid, final BlockData[] palette, final int[] indices) {
+		this.cuboid = cuboid;
+		this.palette = palette;
+		this.indices = indices;
+	}
+
+	/**
+	 * Read the region from its lowest corner and its size.
+	 *
+	 * @param instruction the instruction
+	 * @return the region
+	 */
+	public static Cuboid nextRegion(@NotNull final Instruction instruction) {
+		final Location origin = instruction.nextLocation();
+		final int sizeX = instruction.nextInt();
+		final int sizeY = instruction.nextInt();
+		final int sizeZ = instruction.nextInt();
+		if (sizeX <= 0 || sizeY <= 0 || sizeZ <= 0) {
+			throw new IllegalArgumentException("Sizes must be positive");
+		}
+		return new Cuboid(origin.getWorld(), origin.getBlockX(), origin.getBlockY(), origin.getBlockZ(),
+				origin.getBlockX() + sizeX - 1, origin.getBlockY() + sizeY - 1, origin.getBlockZ() + sizeZ - 1);
+	}
+
+	/**
+	 * Read a block list. The size of the region is checked before the runs are decoded.
+	 *
+	 * @param instruction    the instruction
+	 * @param blockDataCache the cache for materials and block data
+	 * @param maxBlocks      the largest number of blocks in the region
+	 * @return the block list
+	 * @throws IllegalArgumentException if the region is too large or the arguments are malformed
+	 */
+	public static BlockList read(@NotNull final Instruction instruction, @NotNull final BlockDataCache blockDataCache,
+								 final long maxBlocks) {
+		final Cuboid cuboid = nextRegion(instruction);
+		if (cuboid.getVolume() > maxBlocks) {
+			throw new IllegalArgumentException("Region has more than " + maxBlocks + " blocks");
+		}
+		final boolean compressed = Boolean.parseBoolean(instruction.next());
+		final boolean skipAir = Boolean.parseBoolean(instruction.next());
+		final byte[] data = Base64.getDecoder().decode(instruction.next());
+		final BlockData[] palette = readPalette(instruction, blockDataCache, skipAir);
+
+		final int[] indices = RunLengthCodec.decode(data, (int) cuboid.getVolume(), compressed);
+		for (final int index : indices) {
+			if (index < 0 || index >= palette.length) {
+				throw new IllegalArgumentException("Palette index " + index + " out of range");
+			}
+		}
+		return new BlockList(cuboid, palette, indices);
+	}
+
+	/**
+	 * Read the remaining arguments as the materials of the palette.
+	 *
+	 * @return the block data of every palette entry, null for air if air should be skipped
+	 */
+	private static BlockData[] readPalette(final Instruction instruction, final BlockDataCache blockDataCache,
+										   final boolean skipAir) {
+		final List<BlockData> palette = new ArrayList<>();
+		while (instruction.hasNext()) {
+			final String name = instruction.next();
+			final Material material = blockDataCache.material(name, null);
+			if (material == null) {
+				throw new IllegalArgumentException("Unknown material " + name);
+			}
+			palette.add(skipAir && material.isAir() ? null : blockDataCache.blockData(material, blockDataCache.facing(0)));
+		}
+		return palette.toArray(new BlockData[0]);
+	}
+
+	/**
+	 * Get the region.
+	 *
+	 * @return the region
+	 */
+	public Cuboid getCuboid() {
+		return cuboid;
+	}
+
+	/**
+	 * Get the block data to set at a position within the region.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param z the z coordinate
+	 * @return the block data, or null if the block is skipped
+	 */
+	public BlockData get(final int x, final int y, final int z) {
+		return palette[indices[(int) cuboid.indexOf(x, y, z)]];
+	}
+
+	/**
+	 * Check whether a block within the region is set, for {@link BulkBlockWriter.Coverage}.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param z the z coordinate
+	 * @return true if the block is not skipped
+	 */
+	public boolean covers(final int x, final int y, final int z) {
+		return get(x, y, z) != null;
+	}
+}
@@ -0,0 +1,306 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes many blocks of a region at once.
+ * Blocks whose six neighbours are all written by the same operation, as told by its {@link Coverage}, are set right
+ * away without physics. Blocks with a neighbour that is not written, like the blocks on the surface of the region, are
+ * set with physics once all other blocks are set, by {@link #finish()} or {@link #finishNext()}. Their neighbours outside
+ * the operation are updated once, and connecting blocks like fences, fluids and falling blocks on the surface see the
+ * final blocks inside. Blocks inside do not get any updates, so for example sand above air written by the same
+ * operation stays in place. Blocks skipped because they are unchanged count as written.
+ * Writes should be issued in the order of a {@link org.wensheng.juicyraspberrypie.command.CuboidCursor}, so that
+ * consecutive writes stay within one chunk section.
+ * If unchanged blocks are skipped, blocks that already have the block data are not written at all, which avoids block
+ * updates, lighting updates and chunk packets for them. If an edit of an {@link UndoJournal} is given, the block data of
+ * every written block is recorded in it before it is replaced, and the edit ends once the writer is finished.
+ */
+public class BulkBlockWriter {
+	/**
+	 * The region that is written.
+	 */
+	private final Cuboid region;
+
+	/**
+	 * The world the region is in.
+	 */
+	private final World world;
+
+	/**
+	 * Whether blocks that already have the block data are skipped.
+	 */
+	private final boolean skipUnchanged;
+
+	/**
+	 * The edit to record the written blocks in, or null.
+	 */
+	private final JournalEdit edit;
+
+	/**
+	 * The blocks of the region that the operation writes.
+	 */
+	private final Coverage coverage;
+
+	/**
+	 * The blocks to set with physics once the other blocks are set.
+	 */
+	private final List<PendingBlock> pending = new ArrayList<>();
+
+	/**
+	 * The index of the next pending block to set.
+	 */
+	private int nextPending;
+
+	/**
+	 * The number of blocks passed to the writer.
+	 */
+	private int visited;
+
+	/**
+	 * The number of blocks written.
+	 */
+	private int written;
+
+	/**
+	 * Create a new bulk block writer that writes every block.
+	 *
+	 * @param region the region that is written
+	 */
+	public BulkBlockWriter(final Cuboid region) {
+		this(region, false, null);
+	}
+
+	/**
+	 * Create a new bulk block writer.
+	 *
+	 * @param region        the region that is written
+	 * @param skipUnchanged whether blocks that already have the block data are skipped
+	 * @param edit          the edit to record the written blocks in, or null
+	 */
+	public BulkBlockWriter(final Cuboid region, final boolean skipUnchanged, final JournalEdit edit) {
+		this(region, skipUnchanged, edit, region::contains);
+	}
+
+	/**
+	 * Create a new bulk block writer for an operation that does not write every block of the region.
+	 *
+	 * @param region        the region that is written
+	 * @param skipUnchanged whether blocks that already have the block data are skipped
+	 * @param edit          the edit to record the written blocks in, or null
+	 * @param coverage      the blocks of the region that the operation writes
+	 */
+	public BulkBlockWriter(final Cuboid region, final boolean skipUnchanged, final JournalEdit edit, final Coverage coverage) {
+		this.region = region;
+		this.world = region.getWorld();
+		this.skipUnchanged = skipUnchanged;
+		this.edit = edit;
+		this.coverage = coverage;
+	}
+
+	/**
+	 * Create a new bulk block writer with the settings of a session: unchanged blocks are skipped in diff mode, and
+	 * the written blocks are recorded if the session has an undo journal.
+	 *
+	 * @param session the session
+	 * @param region  the region that is written
+	 * @return the writer
+	 */
+	public static BulkBlockWriter forSession(final SessionAttachment session, final Cuboid region) {
+		return forSession(session, region, region::contains);
+	}
+
+	/**
+	 * Create a new bulk block writer with the settings of a session for an operation that does not write every block
+	 * of the region.
+	 *
+	 * @param session  the session
+	 * @param region   the region that is written
+	 * @param coverage the blocks of the region that the operation writes
+	 * @return the writer
+	 */
+	public static BulkBlockWriter forSession(final SessionAttachment session, final Cuboid region, final Coverage coverage) {
+		final UndoJournal journal = session.getUndoJournal();
+		return new BulkBlockWriter(region, session.isDiffMode(), journal == null ? null : journal.begin(region), coverage);
+	}
+
+	/**
+	 * Create a new bulk block writer with the settings of a session for a job, which records its own edit in the undo
+	 * journal while other commands run. The job must call {@link #endEdit()} if it stops before the writer is finished.
+	 *
+	 * @param session the session
+	 * @param region  the region that is written
+	 * @return the writer
+	 */
+	public static BulkBlockWriter forJob(final SessionAttachment session, final Cuboid region) {
+		return forJob(session, region, region::contains);
+	}
+
+	/**
+	 * Create a new bulk block writer with the settings of a session for a job that does not write every block of the
+	 * region.
+	 *
+	 * @param session  the session
+	 * @param region   the region that is written
+	 * @param coverage the blocks of the region that the operation writes
+	 * @return the writer
+	 */
+	public static BulkBlockWriter forJob(final SessionAttachment session, final Cuboid region, final Coverage coverage) {
+		final UndoJournal journal = session.getUndoJournal();
+		return new BulkBlockWriter(region, session.isDiffMode(), journal == null ? null : journal.beginJob(region), coverage);
+	}
+
+	/**
+	 * Set a block of the region. A block with a neighbour that is not written by the operation is only set by
+	 * {@link #finish()} or {@link #finishNext()}, but already counts as written.
+	 *
+	 * @param x    the x coordinate
+	 * @param y    the y coordinate
+	 * @param z    the z coordinate
+	 * @param data the block data
+	 * @return true if the block was written, false if it was skipped because it already had the block data
+	 */
+	public boolean set(final int x, final int y, final int z, final BlockData data) {
+		visited++;
+		final Block block = world.getBlockAt(x, y, z);
+		if (skipUnchanged && hasBlockData(block, data)) {
+			return false;
+		}
+		if (edit != null) {
+			edit.record(x, y, z, block.getBlockData(), data);
+		}
+		if (hasUnwrittenNeighbour(x, y, z)) {
+			pending.add(new PendingBlock(x, y, z, data));
+		} else {
+			block.setBlockData(data, false);
+		}
+		written++;
+		return true;
+	}
+
+	/**
+	 * Set all blocks that wait for the other blocks to be set, with physics.
+	 */
+	public void finish() {
+		while (nextPending < pending.size()) {
+			setNextPending();
+		}
+		pending.clear();
+		nextPending = 0;
+		endEdit();
+	}
+
+	/**
+	 * Set the next block that waits for the other blocks to be set, with physics, so that jobs can spread them over
+	 * several ticks.
+	 *
+	 * @return false if no block was waiting
+	 */
+	public boolean finishNext() {
+		if (nextPending < pending.size()) {
+			setNextPending();
+			return true;
+		}
+		pending.clear();
+		nextPending = 0;
+		endEdit();
+		return false;
+	}
+
+	/**
+	 * End the edit the written blocks are recorded in, so that it can be undone. Called when the writer is finished,
+	 * and by operations that stop early.
+	 */
+	public void endEdit() {
+		if (edit != null) {
+			edit.end();
+		}
+	}
+
+	private void setNextPending() {
+		final PendingBlock block = pending.set(nextPending++, null);
+		world.getBlockAt(block.x(), block.y(), block.z()).setBlockData(block.data(), true);
+	}
+
+	/**
+	 * Check whether a block already has the block data. The type is compared first, as it does not copy the state.
+	 *
+	 * @param block the block
+	 * @param data  the block data
+	 * @return true if the block has the block data
+	 */
+	public static boolean hasBlockData(final Block block, final BlockData data) {
+		return block.getType() == data.getMaterial() && block.getBlockData().equals(data);
+	}
+
+	private boolean hasUnwrittenNeighbour(final int x, final int y, final int z) {
+		return !isWritten(x - 1, y, z) || !isWritten(x + 1, y, z)
+				|| !isWritten(x, y - 1, z) || !isWritten(x, y + 1, z)
+				|| !isWritten(x, y, z - 1) || !isWritten(x, y, z + 1);
+	}
+
+	private boolean isWritten(final int x, final int y, final int z) {
+		return region.contains(x, y, z) && coverage.covers(x, y, z);
+	}
+
+	/**
+	 * Check whether blocks that already have the block data are skipped.
+	 *
+	 * @return true if unchanged blocks are skipped
+	 */
+	public boolean isSkippingUnchanged() {
+		return skipUnchanged;
+	}
+
+	/**
+	 * Get the number of blocks passed to the writer, whether they were written or skipped.
+	 *
+	 * @return the number of blocks passed to the writer
+	 */
+	public int getVisited() {
+		return visited;
+	}
+
+	/**
+	 * Get the number of blocks written.
+	 *
+	 * @return the number of blocks written
+	 */
+	public int getWritten() {
+		return written;
+	}
+
+	/**
+	 * The blocks of a region that an operation writes.
+	 */
+	@FunctionalInterface
+	public interface Coverage {
+		/**
+		 * Check whether the operation writes a block of the region.
+		 *
+		 * @param x the x coordinate
+		 * @param y the y coordinate
+		 * @param z the z coordinate
+		 * @return true if the block is written
+		 */
+		boolean covers(int x, int y, int z);
+	}
+
+	/**
+	 * A block that waits for the other blocks to be set.
+	 *
+	 * @param x    the x coordinate
+	 * @param y    the y coordinate
+	 * @param z    the z coordinate
+	 * @param data the block data
+	 */
+	private record PendingBlock(int x, int y, int z, BlockData data) {
+	}
+}
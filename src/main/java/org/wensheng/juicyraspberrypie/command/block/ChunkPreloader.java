@@ -0,0 +1,204 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Loads the chunks of regions in the background before blocks are read or written there, so that the server main
+ * thread does not stall on chunks that have to be loaded from disk or generated.
+ * Loaded chunks are kept loaded by plugin chunk tickets until every {@link Tickets} holding them is closed.
+ * Must only be used from the server main thread; Paper completes the loads on the server main thread as well.
+ */
+public class ChunkPreloader {
+	/**
+	 * The plugin owning the chunk tickets.
+	 */
+	private final Plugin plugin;
+
+	/**
+	 * The largest number of chunks loaded for one request.
+	 */
+	private final int maxChunks;
+
+	/**
+	 * The number of references to every requested chunk.
+	 */
+	private final Map<ChunkKey, Reference> references = new HashMap<>();
+
+	/**
+	 * Create a new preloader.
+	 *
+	 * @param plugin    the plugin owning the chunk tickets
+	 * @param maxChunks the largest number of chunks loaded for one request
+	 */
+	public ChunkPreloader(final Plugin plugin, final int maxChunks) {
+		this.plugin = plugin;
+		this.maxChunks = maxChunks;
+	}
+
+	/**
+	 * Get the largest number of chunks loaded for one request.
+	 *
+	 * @return the number of chunks
+	 */
+	public int getMaxChunks() {
+		return maxChunks;
+	}
+
+	/**
+	 * Load all chunks touched by regions in the background.
+	 *
+	 * @param regions the regions
+	 * @return the future completed with the tickets keeping the chunks loaded once all of them are loaded
+	 * @throws IllegalArgumentException if the regions touch more than the largest number of chunks
+	 */
+	public CompletableFuture<Tickets> load(final List<Cuboid> regions) {
+		final Set<ChunkKey> chunks = chunksOf(regions, maxChunks);
+		if (chunks.size() > maxChunks) {
+			throw new IllegalArgumentException("Regions touch more than " + maxChunks
+					+ " chunks, which is the most that can be loaded at once");
+		}
+		final Tickets tickets = new Tickets(new ArrayList<>(chunks));
+		final List<CompletableFuture<?>> loads = new ArrayList<>();
+		for (final ChunkKey chunk : chunks) {
+			final Reference reference = references.computeIfAbsent(chunk, key -> new Reference());
+			reference.count++;
+			if (!reference.ticketed) {
+				loads.add(chunk.world().getChunkAtAsync(chunk.x(), chunk.z()).thenRun(() -> addTicket(chunk)));
+			}
+		}
+		if (loads.isEmpty()) {
+			return CompletableFuture.completedFuture(tickets);
+		}
+		return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0])).handle((ignored, e) -> {
+			if (e != null) {
+				tickets.close();
+				throw new IllegalStateException("Could not load chunks: " + e.getMessage(), e);
+			}
+			return tickets;
+		});
+	}
+
+	/**
+	 * Check whether regions touch chunks that are not loaded and could be loaded with {@link #load(List)}.
+	 *
+	 * @param regions the regions
+	 * @return true if a chunk has to be loaded and the regions touch at most the largest number of chunks
+	 */
+	public boolean needsLoading(final List<Cuboid> regions) {
+		final Set<ChunkKey> chunks = chunksOf(regions, maxChunks);
+		if (chunks.size() > maxChunks) {
+			return false;
+		}
+		for (final ChunkKey chunk : chunks) {
+			if (!chunk.world().isChunkLoaded(chunk.x(), chunk.z())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addTicket(final ChunkKey chunk) {
+		final Reference reference = references.get(chunk);
+		if (reference != null && !reference.ticketed) {
+			reference.ticketed = chunk.world().addPluginChunkTicket(chunk.x(), chunk.z(), plugin);
+		}
+	}
+
+	private void release(final ChunkKey chunk) {
+		final Reference reference = references.get(chunk);
+		if (reference == null || --reference.count > 0) {
+			return;
+		}
+		references.remove(chunk);
+		if (reference.ticketed) {
+			chunk.world().removePluginChunkTicket(chunk.x(), chunk.z(), plugin);
+		}
+	}
+
+	/**
+	 * Collect the chunks touched by regions, stopping as soon as there are more than a limit, so that huge regions
+	 * are rejected without visiting all of their chunks.
+	 */
+	private static Set<ChunkKey> chunksOf(final List<Cuboid> regions, final int limit) {
+		final Set<ChunkKey> chunks = new LinkedHashSet<>();
+		for (final Cuboid region : regions) {
+			for (int chunkX = region.getMinX() >> 4; chunkX <= region.getMaxX() >> 4; chunkX++) {
+				for (int chunkZ = region.getMinZ() >> 4; chunkZ <= region.getMaxZ() >> 4; chunkZ++) {
+					chunks.add(new ChunkKey(region.getWorld(), chunkX, chunkZ));
+					if (chunks.size() > limit) {
+						return chunks;
+					}
+				}
+			}
+		}
+		return chunks;
+	}
+
+	/**
+	 * A chunk of a world.
+	 *
+	 * @param world the world
+	 * @param x     the chunk x coordinate
+	 * @param z     the chunk z coordinate
+	 */
+	private record ChunkKey(World world, int x, int z) {
+	}
+
+	/**
+	 * The references to a requested chunk.
+	 */
+	private static final class Reference {
+		/**
+		 * The number of tickets holding the chunk.
+		 */
+		private int count;
+
+		/**
+		 * Whether the plugin chunk ticket was added.
+		 */
+		private boolean ticketed;
+	}
+
+	/**
+	 * The references to the chunks of one request. Closing them lets the chunks unload again once no other request
+	 * holds them.
+	 */
+	public final class Tickets implements AutoCloseable {
+		/**
+		 * The chunks, or null once closed.
+		 */
+		private List<ChunkKey> chunks;
+
+		private Tickets(final List<ChunkKey> chunks) {
+			this.chunks = chunks;
+		}
+
+		/**
+		 * Get the number of chunks held.
+		 *
+		 * @return the number of chunks, 0 once closed
+		 */
+		public int size() {
+			return chunks == null ? 0 : chunks.size();
+		}
+
+		@Override
+		public void close() {
+			if (chunks == null) {
+				return;
+			}
+			chunks.forEach(ChunkPreloader.this::release);
+			chunks = null;
+		}
+	}
+}
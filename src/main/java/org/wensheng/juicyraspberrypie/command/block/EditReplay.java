@@ -0,0 +1,266 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.bukkit.block.data.BlockData;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.CuboidCursor;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the block data before or after a {@link JournalEdit} back to the world, one block per step, so that large
+ * edits can be undone and redone by a job over several ticks.
+ * The runs are decoded twice: first to find the changed blocks, so that the writer knows which neighbours are written
+ * (see {@link BulkBlockWriter}), and then to write them. The changed blocks are kept per chunk section, so the memory
+ * grows with the changed sections and not with the region.
+ */
+public final class EditReplay {
+	/**
+	 * The palette index of a block that was not changed.
+	 */
+	private static final int UNCHANGED = 0;
+
+	/**
+	 * The edited region.
+	 */
+	private final Cuboid region;
+
+	/**
+	 * The block data of the palette, at their index minus one.
+	 */
+	private final List<BlockData> palette;
+
+	/**
+	 * The runs to restore.
+	 */
+	private final byte[] runs;
+
+	/**
+	 * The number of blocks covered by the runs.
+	 */
+	private final long count;
+
+	/**
+	 * The palette indices of the blocks recorded out of order, by their position in x, z, y order.
+	 */
+	private final Map<Long, Integer> later;
+
+	/**
+	 * Whether the blocks before the edit are restored, rather than those after it.
+	 */
+	private final boolean undone;
+
+	/**
+	 * The changed blocks.
+	 */
+	private final ChangedBlocks changed = new ChangedBlocks();
+
+	/**
+	 * The writer.
+	 */
+	private final BulkBlockWriter writer;
+
+	/**
+	 * The decoder of the current pass.
+	 */
+	private RunLengthCodec.Decoder decoder;
+
+	/**
+	 * The cursor of the current pass.
+	 */
+	private CuboidCursor cursor;
+
+	/**
+	 * The number of blocks of the current pass that were handled.
+	 */
+	private long position;
+
+	/**
+	 * Whether the current pass writes the blocks, rather than finding the changed ones.
+	 */
+	private boolean writing;
+
+	/**
+	 * Whether all blocks were written or the replay was stopped.
+	 */
+	private boolean done;
+
+	/**
+	 * Create a new replay.
+	 *
+	 * @param region  the edited region
+	 * @param palette the block data of the palette, at their index minus one
+	 * @param runs    the runs to restore
+	 * @param count   the number of blocks covered by the runs
+	 * @param later   the palette indices of the blocks recorded out of order, by their position
+	 * @param undone  true to restore the blocks before the edit, false to restore them after the edit
+	 */
+	EditReplay(final Cuboid region, final List<BlockData> palette, final byte[] runs, final long count,
+			final Map<Long, Integer> later, final boolean undone) {
+		this.region = region;
+		this.palette = palette;
+		this.runs = runs;
+		this.count = count;
+		this.later = later;
+		this.undone = undone;
+		this.writer = new BulkBlockWriter(region, false, null, changed::contains);
+		this.decoder = new RunLengthCodec.Decoder(runs);
+		this.cursor = region.cursor();
+	}
+
+	/**
+	 * Handle the next block, or set the next block that waits for the other blocks once all are handled.
+	 *
+	 * @return true if the replay is done
+	 * @throws IllegalArgumentException if the runs are malformed
+	 */
+	public boolean step() {
+		if (done) {
+			return true;
+		}
+		if (position < count && cursor.next()) {
+			final int index = target(decoder.next(), cursor.getIndex());
+			position++;
+			if (index == UNCHANGED) {
+				return false;
+			}
+			if (writing) {
+				writer.set(cursor.getX(), cursor.getY(), cursor.getZ(), palette.get(index - 1));
+			} else {
+				changed.add(cursor.getX(), cursor.getY(), cursor.getZ());
+			}
+			return false;
+		}
+		if (!writing) {
+			writing = true;
+			decoder = new RunLengthCodec.Decoder(runs);
+			cursor = region.cursor();
+			position = 0;
+			return false;
+		}
+		done = !writer.finishNext();
+		return done;
+	}
+
+	/**
+	 * Replay all remaining blocks at once.
+	 *
+	 * @return the number of blocks written
+	 */
+	public int run() {
+		while (!done) {
+			step();
+		}
+		return getWritten();
+	}
+
+	/**
+	 * Stop the replay, leaving the blocks that were not written yet as they are.
+	 */
+	public void stop() {
+		done = true;
+	}
+
+	/**
+	 * Check whether all blocks were written or the replay was stopped.
+	 *
+	 * @return true if the replay is done
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Get the number of blocks handled, counting every block once for finding and once for writing.
+	 *
+	 * @return the number of blocks
+	 */
+	public long getDone() {
+		return writing ? count + position : position;
+	}
+
+	/**
+	 * Get the number of blocks to handle, counting every block once for finding and once for writing.
+	 *
+	 * @return the number of blocks
+	 */
+	public long getTotal() {
+		return 2 * count;
+	}
+
+	/**
+	 * Get the number of blocks written.
+	 *
+	 * @return the number of blocks written
+	 */
+	public int getWritten() {
+		return writer.getWritten();
+	}
+
+	/**
+	 * Get the palette index to restore for a block. A block in the runs was changed before any change recorded out of
+	 * order, so its data before the edit comes from the runs and its data after the edit from the later changes.
+	 */
+	private int target(final int runIndex, final long blockPosition) {
+		if (later.isEmpty() || undone && runIndex != UNCHANGED) {
+			return runIndex;
+		}
+		return later.getOrDefault(blockPosition, runIndex);
+	}
+
+	/**
+	 * A set of blocks, kept as one bit per block of the chunk sections that have any.
+	 */
+	private static final class ChangedBlocks {
+		/**
+		 * The number of longs for the bits of one chunk section.
+		 */
+		private static final int SECTION_LONGS = 16 * 16 * 16 / Long.SIZE;
+
+		/**
+		 * The bits of the chunk sections, by their key.
+		 */
+		private final Map<Long, long[]> sections = new HashMap<>();
+
+		/**
+		 * The key of the section that was used last.
+		 */
+		private long lastKey;
+
+		/**
+		 * The bits of the section that was used last, or null.
+		 */
+		private long[] lastBits;
+
+		void add(final int x, final int y, final int z) {
+			final long key = key(x, y, z);
+			if (lastBits == null || key != lastKey) {
+				lastBits = sections.computeIfAbsent(key, k -> new long[SECTION_LONGS]);
+				lastKey = key;
+			}
+			final int bit = bit(x, y, z);
+			lastBits[bit >>> 6] |= 1L << bit;
+		}
+
+		boolean contains(final int x, final int y, final int z) {
+			final long[] bits = sections.get(key(x, y, z));
+			if (bits == null) {
+				return false;
+			}
+			final int bit = bit(x, y, z);
+			return (bits[bit >>> 6] & 1L << bit) != 0;
+		}
+
+		/**
+		 * Pack the coordinates of the section of a block, which fit into 22 bits for x and z within the world border.
+		 */
+		private static long key(final int x, final int y, final int z) {
+			return ((long) (x >> 4) & 0x3FFFFFL) << 42 | ((long) (z >> 4) & 0x3FFFFFL) << 20 | (long) (y >> 4) & 0xFFFFFL;
+		}
+
+		private static int bit(final int x, final int y, final int z) {
+			return (y & 15) << 8 | (z & 15) << 4 | x & 15;
+		}
+	}
+}
@@ -0,0 +1,364 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.bukkit.block.data.BlockData;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.CuboidCursor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One edit of an {@link UndoJournal}: the block data of the changed blocks of a region before and after the edit.
+ * The blocks are recorded in the order of a {@link CuboidCursor} over the region as runs of palette indices (see
+ * {@link RunLengthCodec}), where index 0 stands for a block that was not changed. Blocks should be recorded in cursor
+ * order; blocks the cursor has already passed, like blocks written a second time, are kept in a list beside the runs.
+ * Changes outside the region are not recorded. The edit records until it is ended, usually when its
+ * {@link BulkBlockWriter} is finished, and then joins the edits of its journal that can be undone.
+ */
+public final class JournalEdit {
+	/**
+	 * The palette index of a block that was not changed.
+	 */
+	private static final int UNCHANGED = 0;
+
+	/**
+	 * The estimated memory of an edit besides its runs.
+	 */
+	private static final long OVERHEAD_BYTES = 256;
+
+	/**
+	 * The estimated memory of a palette entry.
+	 */
+	private static final long PALETTE_ENTRY_BYTES = 64;
+
+	/**
+	 * The estimated memory of a block recorded out of order.
+	 */
+	private static final long LATER_BLOCK_BYTES = Long.BYTES + 2 * Integer.BYTES;
+
+	/**
+	 * The journal the edit belongs to.
+	 */
+	private final UndoJournal journal;
+
+	/**
+	 * The edited region.
+	 */
+	private final Cuboid region;
+
+	/**
+	 * The block data of the palette, at their index minus one.
+	 */
+	private final List<BlockData> palette = new ArrayList<>();
+
+	/**
+	 * The palette index of every block data, only while recording.
+	 */
+	private Map<BlockData, Integer> paletteIndices = new HashMap<>();
+
+	/**
+	 * The cursor following the recorded blocks, only while recording.
+	 */
+	private CuboidCursor cursor;
+
+	/**
+	 * The runs of the block data before the edit, only while recording.
+	 */
+	private RunLengthCodec.Encoder beforeEncoder = new RunLengthCodec.Encoder();
+
+	/**
+	 * The runs of the block data after the edit, only while recording.
+	 */
+	private RunLengthCodec.Encoder afterEncoder = new RunLengthCodec.Encoder();
+
+	/**
+	 * The runs of the block data before the edit, null while recording or if moved to the journal file.
+	 */
+	private byte[] before;
+
+	/**
+	 * The runs of the block data after the edit, null while recording or if moved to the journal file.
+	 */
+	private byte[] after;
+
+	/**
+	 * The offset of the runs in the journal file, -1 if they are in memory.
+	 */
+	private long fileOffset = -1;
+
+	/**
+	 * The length of the runs before the edit.
+	 */
+	private int beforeLength;
+
+	/**
+	 * The length of the runs after the edit.
+	 */
+	private int afterLength;
+
+	/**
+	 * The number of blocks covered by the runs.
+	 */
+	private long count;
+
+	/**
+	 * The positions in x, z, y order of the blocks recorded out of order.
+	 */
+	private long[] laterPositions = new long[0];
+
+	/**
+	 * The palette indices before the change of the blocks recorded out of order.
+	 */
+	private int[] laterBefore = new int[0];
+
+	/**
+	 * The palette indices after the change of the blocks recorded out of order.
+	 */
+	private int[] laterAfter = new int[0];
+
+	/**
+	 * The number of blocks recorded out of order.
+	 */
+	private int laterCount;
+
+	/**
+	 * The most recent replay of the edit, or null.
+	 */
+	private EditReplay replay;
+
+	/**
+	 * Create a new edit.
+	 *
+	 * @param journal the journal the edit belongs to
+	 * @param region  the edited region
+	 */
+	JournalEdit(final UndoJournal journal, final Cuboid region) {
+		this.journal = journal;
+		this.region = region;
+		this.cursor = region.cursor();
+	}
+
+	/**
+	 * Get the edited region.
+	 *
+	 * @return the region
+	 */
+	Cuboid getRegion() {
+		return region;
+	}
+
+	/**
+	 * Record a change of a block. Blocks that are skipped between two recorded blocks are recorded as unchanged.
+	 * Does nothing once the edit is sealed.
+	 *
+	 * @param x       the x coordinate
+	 * @param y       the y coordinate
+	 * @param z       the z coordinate
+	 * @param oldData the block data before the change
+	 * @param newData the block data after the change
+	 */
+	public void record(final int x, final int y, final int z, final BlockData oldData, final BlockData newData) {
+		if (cursor == null || !region.contains(x, y, z)) {
+			return;
+		}
+		if (!cursor.isAhead(x, y, z)) {
+			recordLater(region.indexOf(x, y, z), paletteIndex(oldData), paletteIndex(newData));
+			return;
+		}
+		while (cursor.next()) {
+			if (cursor.getX() == x && cursor.getY() == y && cursor.getZ() == z) {
+				beforeEncoder.add(paletteIndex(oldData));
+				afterEncoder.add(paletteIndex(newData));
+				count++;
+				return;
+			}
+			beforeEncoder.add(UNCHANGED);
+			afterEncoder.add(UNCHANGED);
+			count++;
+		}
+	}
+
+	private void recordLater(final long position, final int before, final int after) {
+		if (laterCount == laterPositions.length) {
+			final int capacity = Math.max(16, laterCount * 2);
+			laterPositions = Arrays.copyOf(laterPositions, capacity);
+			laterBefore = Arrays.copyOf(laterBefore, capacity);
+			laterAfter = Arrays.copyOf(laterAfter, capacity);
+		}
+		laterPositions[laterCount] = position;
+		laterBefore[laterCount] = before;
+		laterAfter[laterCount] = after;
+		laterCount++;
+	}
+
+	/**
+	 * End the recording once all blocks of the edit are written, so that the edit can be undone.
+	 * Does nothing if the edit was already ended.
+	 */
+	public void end() {
+		journal.end(this);
+	}
+
+	private int paletteIndex(final BlockData data) {
+		return paletteIndices.computeIfAbsent(data, d -> {
+			palette.add(d);
+			return palette.size();
+		});
+	}
+
+	/**
+	 * Check whether the edit still records changes.
+	 *
+	 * @return true if the edit is not sealed yet
+	 */
+	boolean isRecording() {
+		return cursor != null;
+	}
+
+	/**
+	 * End the recording and keep only the encoded runs.
+	 */
+	void seal() {
+		if (cursor == null) {
+			return;
+		}
+		before = beforeEncoder.toByteArray();
+		after = afterEncoder.toByteArray();
+		beforeLength = before.length;
+		afterLength = after.length;
+		beforeEncoder = null;
+		afterEncoder = null;
+		paletteIndices = null;
+		cursor = null;
+		laterPositions = Arrays.copyOf(laterPositions, laterCount);
+		laterBefore = Arrays.copyOf(laterBefore, laterCount);
+		laterAfter = Arrays.copyOf(laterAfter, laterCount);
+	}
+
+	/**
+	 * Estimate the memory held by the edit.
+	 *
+	 * @return the estimated number of bytes
+	 */
+	long memorySize() {
+		final long runs;
+		if (cursor != null) {
+			runs = (long) beforeEncoder.size() + afterEncoder.size();
+		} else if (fileOffset < 0) {
+			runs = (long) beforeLength + afterLength;
+		} else {
+			runs = 0;
+		}
+		return OVERHEAD_BYTES + palette.size() * PALETTE_ENTRY_BYTES + laterPositions.length * LATER_BLOCK_BYTES + runs;
+	}
+
+	/**
+	 * Get the number of bytes the runs take when moved to a journal file.
+	 *
+	 * @return the number of bytes
+	 */
+	long runsSize() {
+		return (long) beforeLength + afterLength;
+	}
+
+	/**
+	 * Check whether the runs were moved to the journal file.
+	 *
+	 * @return true if the runs are in the journal file
+	 */
+	boolean isInFile() {
+		return fileOffset >= 0;
+	}
+
+	/**
+	 * Get the offset of the runs in the journal file.
+	 *
+	 * @return the offset, or -1 if the runs are in memory
+	 */
+	long getFileOffset() {
+		return fileOffset;
+	}
+
+	/**
+	 * Move the runs of a sealed edit to the journal file.
+	 *
+	 * @param file the journal file
+	 * @throws IOException if the file cannot be written
+	 */
+	void moveToFile(final JournalFile file) throws IOException {
+		final long offset = file.append(before);
+		file.append(after);
+		fileOffset = offset;
+		before = null;
+		after = null;
+	}
+
+	/**
+	 * Move the runs within the journal file towards its start.
+	 *
+	 * @param file   the journal file
+	 * @param offset the new offset of the runs, at most the current one
+	 */
+	void moveWithinFile(final JournalFile file, final long offset) {
+		file.move(fileOffset, offset, runsSize());
+		fileOffset = offset;
+	}
+
+	/**
+	 * Get the number of blocks a replay of the edit goes through, which are the blocks of the region up to the last
+	 * block recorded in order.
+	 *
+	 * @return the number of blocks
+	 */
+	long getBlockCount() {
+		return count;
+	}
+
+	/**
+	 * Check whether a replay of the edit is still writing blocks.
+	 *
+	 * @return true if the edit is being replayed
+	 */
+	boolean isReplaying() {
+		return replay != null && !replay.isDone();
+	}
+
+	/**
+	 * Prepare to write the block data before or after the edit back to the world. The edit is sealed first.
+	 *
+	 * @param file   the journal file the runs may have been moved to
+	 * @param undone true to restore the blocks before the edit, false to restore them after the edit
+	 * @return the replay, which writes the blocks as it is stepped
+	 */
+	EditReplay replay(final JournalFile file, final boolean undone) {
+		seal();
+		final byte[] runs;
+		if (fileOffset < 0) {
+			runs = undone ? before : after;
+		} else {
+			runs = undone ? file.read(fileOffset, beforeLength) : file.read(fileOffset + beforeLength, afterLength);
+		}
+		replay = new EditReplay(region, palette, runs, count, laterIndices(undone), undone);
+		return replay;
+	}
+
+	/**
+	 * Get the palette indices to restore for the blocks recorded out of order: before the edit, a block had the data
+	 * of its first change; after the edit, it has the data of its last change.
+	 */
+	private Map<Long, Integer> laterIndices(final boolean undone) {
+		final Map<Long, Integer> later = new HashMap<>();
+		for (int i = 0; i < laterCount; i++) {
+			if (undone) {
+				later.putIfAbsent(laterPositions[i], laterBefore[i]);
+			} else {
+				later.put(laterPositions[i], laterAfter[i]);
+			}
+		}
+		return later;
+	}
+}
@@ -0,0 +1,159 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The file an {@link UndoJournal} moves edits to when they no longer fit into its memory limit.
+ * Data is appended and read back through one memory mapping of the start of the file, which is only replaced when the
+ * file grows beyond it. The file is created on the first append and deleted when it is closed.
+ */
+final class JournalFile implements AutoCloseable {
+	/**
+	 * The smallest size of the mapping.
+	 */
+	private static final int INITIAL_CAPACITY = 1 << 20;
+
+	/**
+	 * The number of bytes copied at once when data is moved within the file.
+	 */
+	private static final int MOVE_CHUNK = 1 << 16;
+
+	/**
+	 * The path of the file.
+	 */
+	private final Path path;
+
+	/**
+	 * The channel of the file, null until the first append.
+	 */
+	private FileChannel channel;
+
+	/**
+	 * The mapping of the start of the file, null until the first append.
+	 */
+	private MappedByteBuffer buffer;
+
+	/**
+	 * The number of bytes in use.
+	 */
+	private long size;
+
+	/**
+	 * Create a new journal file.
+	 *
+	 * @param path the path of the file
+	 */
+	JournalFile(final Path path) {
+		this.path = path;
+	}
+
+	/**
+	 * Append data to the file.
+	 *
+	 * @param data the data
+	 * @return the offset of the data in the file
+	 * @throws IOException if the file cannot be created, grown or written
+	 */
+	long append(final byte[] data) throws IOException {
+		if (channel == null) {
+			Files.createDirectories(path.getParent());
+			channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+		}
+		final long offset = size;
+		reserve(offset + data.length);
+		buffer.put((int) offset, data);
+		size += data.length;
+		return offset;
+	}
+
+	/**
+	 * Make sure the mapping covers a number of bytes, doubling it if it has to grow.
+	 *
+	 * @param capacity the number of bytes
+	 * @throws IOException if the file cannot be mapped
+	 */
+	private void reserve(final long capacity) throws IOException {
+		if (buffer != null && capacity <= buffer.capacity()) {
+			return;
+		}
+		if (capacity > Integer.MAX_VALUE) {
+			throw new IOException("The undo journal file cannot grow beyond " + Integer.MAX_VALUE + " bytes");
+		}
+		final long grown = buffer == null ? INITIAL_CAPACITY : 2L * buffer.capacity();
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(Integer.MAX_VALUE, Math.max(capacity, grown)));
+	}
+
+	/**
+	 * Read data that was appended before.
+	 *
+	 * @param offset the offset of the data
+	 * @param length the length of the data
+	 * @return the data
+	 */
+	byte[] read(final long offset, final int length) {
+		final byte[] data = new byte[length];
+		if (length > 0) {
+			buffer.get((int) offset, data);
+		}
+		return data;
+	}
+
+	/**
+	 * Move data towards the start of the file, to reclaim the space of data that is no longer needed.
+	 *
+	 * @param from   the offset of the data
+	 * @param to     the new offset of the data, at most {@code from}
+	 * @param length the length of the data
+	 */
+	void move(final long from, final long to, final long length) {
+		final byte[] chunk = new byte[(int) Math.min(MOVE_CHUNK, length)];
+		for (long moved = 0; moved < length; moved += chunk.length) {
+			final int count = (int) Math.min(chunk.length, length - moved);
+			buffer.get((int) (from + moved), chunk, 0, count);
+			buffer.put((int) (to + moved), chunk, 0, count);
+		}
+	}
+
+	/**
+	 * Discard the data at the end of the file, so that it is overwritten by the next append.
+	 *
+	 * @param size the number of bytes to keep
+	 */
+	void truncate(final long size) {
+		this.size = Math.min(this.size, size);
+	}
+
+	/**
+	 * Get the number of bytes in use, including data that is no longer needed but was not moved over yet.
+	 *
+	 * @return the size of the file
+	 */
+	long size() {
+		return size;
+	}
+
+	/**
+	 * Discard all data once no edit refers to the file anymore, so that the next append starts at the beginning.
+	 * The file keeps its size and mapping, as a mapped file cannot be truncated on every platform; its space is
+	 * given back when it is closed.
+	 */
+	void clear() {
+		size = 0;
+	}
+
+	@Override
+	public void close() throws IOException {
+		buffer = null;
+		if (channel != null) {
+			channel.close();
+			channel = null;
+		}
+		size = 0;
+	}
+}
@@ -0,0 +1,257 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Turns the triangles of a mesh into blocks. Every triangle is sampled at points at most half a block apart, and the
+ * blocks the samples fall into belong to the mesh. Works on plain arrays and may run on any thread.
+ * <p>
+ * The blocks are returned as keys sorted in the order a {@link org.wensheng.juicyraspberrypie.command.CuboidCursor}
+ * visits them: chunk sections by x, then z, then y, and within a section by y, then z, then x. Each key also holds the
+ * palette index of the face the block belongs to; where faces with different palette indices meet, the lower one wins.
+ */
+public final class MeshVoxelizer {
+	/**
+	 * The largest size of the bounds along x and z.
+	 */
+	public static final int MAX_SIZE = 4096 * 16 - 16;
+
+	/**
+	 * The largest size of the bounds along y.
+	 */
+	public static final int MAX_HEIGHT = 256 * 16 - 16;
+
+	/**
+	 * The largest number of samples per block a mesh may take, which limits the time spent on long, thin triangles.
+	 */
+	public static final int MAX_SAMPLES_PER_BLOCK = 64;
+
+	/**
+	 * The largest number of palette entries.
+	 */
+	public static final int MAX_PALETTE = 1 << 16;
+
+	/**
+	 * The largest distance between two samples of a triangle.
+	 */
+	private static final double SAMPLE_SPACING = 0.5;
+
+	/**
+	 * The initial number of keys.
+	 */
+	private static final int INITIAL_CAPACITY = 4096;
+
+	private MeshVoxelizer() {
+	}
+
+	/**
+	 * Find the blocks of a mesh.
+	 *
+	 * @param vertices  the x, y and z coordinates of every vertex, relative to the origin
+	 * @param faces     the indices of the three vertices and the palette index of every triangle
+	 * @param originX   the x coordinate of the origin
+	 * @param originY   the y coordinate of the origin
+	 * @param originZ   the z coordinate of the origin
+	 * @param bounds    the region blocks are kept in, at most {@link #MAX_SIZE} blocks wide and {@link #MAX_HEIGHT}
+	 *                  blocks high
+	 * @param maxBlocks the largest number of blocks; the mesh may take {@link #MAX_SAMPLES_PER_BLOCK} samples per block
+	 * @param cancelled checked while the mesh is voxelized, stops it once true
+	 * @return the sorted keys of the blocks, see {@link #getX(long, Cuboid)} and the other getters
+	 * @throws IllegalArgumentException if a face refers to a missing vertex, the bounds are too large, or the mesh
+	 *                                  has too many blocks or samples
+	 * @throws CancellationException    if the voxelization was cancelled
+	 */
+	public static long[] voxelize(final float[] vertices, final int[] faces, final int originX, final int originY,
+								  final int originZ, final Cuboid bounds, final int maxBlocks, final BooleanSupplier cancelled) {
+		if (bounds.getSizeX() > MAX_SIZE || bounds.getSizeZ() > MAX_SIZE || bounds.getSizeY() > MAX_HEIGHT) {
+			throw new IllegalArgumentException("The mesh is larger than " + MAX_SIZE + " x " + MAX_HEIGHT + " x "
+					+ MAX_SIZE + " blocks");
+		}
+		final int[] steps = steps(vertices, faces, originX, originY, originZ, (long) maxBlocks * MAX_SAMPLES_PER_BLOCK);
+		long[] keys = new long[INITIAL_CAPACITY];
+		int size = 0;
+		final double[] a = new double[3];
+		final double[] b = new double[3];
+		final double[] c = new double[3];
+		for (int face = 0; face + 3 < faces.length; face += 4) {
+			vertex(vertices, faces[face], originX, originY, originZ, a);
+			vertex(vertices, faces[face + 1], originX, originY, originZ, b);
+			vertex(vertices, faces[face + 2], originX, originY, originZ, c);
+			final int palette = faces[face + 3];
+			final int faceSteps = steps[face / 4];
+			for (int i = 0; i <= faceSteps; i++) {
+				if (cancelled.getAsBoolean()) {
+					throw new CancellationException("The voxelization was cancelled");
+				}
+				for (int j = 0; j <= faceSteps - i; j++) {
+					final double u = (double) i / faceSteps;
+					final double v = (double) j / faceSteps;
+					final int x = (int) Math.floor(a[0] + (b[0] - a[0]) * u + (c[0] - a[0]) * v + 0.5);
+					final int y = (int) Math.floor(a[1] + (b[1] - a[1]) * u + (c[1] - a[1]) * v + 0.5);
+					final int z = (int) Math.floor(a[2] + (b[2] - a[2]) * u + (c[2] - a[2]) * v + 0.5);
+					if (!bounds.contains(x, y, z)) {
+						continue;
+					}
+					if (size == keys.length) {
+						size = sortUnique(keys, size);
+						if (size > maxBlocks) {
+							throw new IllegalArgumentException("Mesh has more than " + maxBlocks + " blocks");
+						}
+						if (size > keys.length / 2) {
+							keys = Arrays.copyOf(keys, keys.length * 2);
+						}
+					}
+					keys[size++] = key(x, y, z, palette, bounds);
+				}
+			}
+		}
+		size = sortUnique(keys, size);
+		if (size > maxBlocks) {
+			throw new IllegalArgumentException("Mesh has more than " + maxBlocks + " blocks");
+		}
+		return Arrays.copyOf(keys, size);
+	}
+
+	/**
+	 * Check the faces and get the number of steps along the edges of every triangle, so that samples are at most
+	 * {@link #SAMPLE_SPACING} apart.
+	 *
+	 * @throws IllegalArgumentException if a face refers to a missing vertex or the faces take more samples in total
+	 */
+	private static int[] steps(final float[] vertices, final int[] faces, final int originX, final int originY,
+							   final int originZ, final long maxSamples) {
+		final int vertexCount = vertices.length / 3;
+		final int[] steps = new int[faces.length / 4];
+		final double[] a = new double[3];
+		final double[] b = new double[3];
+		final double[] c = new double[3];
+		long samples = 0;
+		for (int face = 0; face + 3 < faces.length; face += 4) {
+			if (faces[face] < 0 || faces[face] >= vertexCount || faces[face + 1] < 0 || faces[face + 1] >= vertexCount
+					|| faces[face + 2] < 0 || faces[face + 2] >= vertexCount) {
+				throw new IllegalArgumentException("Face " + face / 4 + " refers to a missing vertex");
+			}
+			vertex(vertices, faces[face], originX, originY, originZ, a);
+			vertex(vertices, faces[face + 1], originX, originY, originZ, b);
+			vertex(vertices, faces[face + 2], originX, originY, originZ, c);
+			final double longest = Math.max(distance(a, b), Math.max(distance(b, c), distance(c, a))) / SAMPLE_SPACING;
+			if (!(longest <= MAX_SIZE * 2.0 / SAMPLE_SPACING)) {
+				throw new IllegalArgumentException("Face " + face / 4 + " is too large");
+			}
+			final long faceSteps = Math.max(1, (long) Math.ceil(longest));
+			samples += (faceSteps + 1) * (faceSteps + 2) / 2;
+			if (samples > maxSamples) {
+				throw new IllegalArgumentException("The mesh needs more than " + maxSamples + " samples");
+			}
+			steps[face / 4] = (int) faceSteps;
+		}
+		return steps;
+	}
+
+	private static void vertex(final float[] vertices, final int index, final int originX, final int originY,
+							   final int originZ, final double[] vertex) {
+		vertex[0] = originX + vertices[index * 3];
+		vertex[1] = originY + vertices[index * 3 + 1];
+		vertex[2] = originZ + vertices[index * 3 + 2];
+	}
+
+	private static double distance(final double[] from, final double[] to) {
+		final double dx = to[0] - from[0];
+		final double dy = to[1] - from[1];
+		final double dz = to[2] - from[2];
+		return Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+
+	/**
+	 * Sort the keys and keep only the first key of every block.
+	 *
+	 * @return the number of remaining keys
+	 */
+	private static int sortUnique(final long[] keys, final int size) {
+		Arrays.sort(keys, 0, size);
+		int unique = 0;
+		for (int i = 0; i < size; i++) {
+			if (unique == 0 || keys[i] >>> 16 != keys[unique - 1] >>> 16) {
+				keys[unique++] = keys[i];
+			}
+		}
+		return unique;
+	}
+
+	private static long key(final int x, final int y, final int z, final int palette, final Cuboid bounds) {
+		final long sectionX = (x >> 4) - (bounds.getMinX() >> 4);
+		final long sectionZ = (z >> 4) - (bounds.getMinZ() >> 4);
+		final long sectionY = (y >> 4) - (bounds.getMinY() >> 4);
+		final long position = sectionX << 32 | sectionZ << 20 | sectionY << 12 | (y & 15) << 8 | (z & 15) << 4 | x & 15;
+		return position << 16 | palette & 0xFFFF;
+	}
+
+	/**
+	 * Check whether a block belongs to the mesh.
+	 *
+	 * @param keys   the sorted keys of the blocks
+	 * @param x      the x coordinate
+	 * @param y      the y coordinate
+	 * @param z      the z coordinate
+	 * @param bounds the bounds the mesh was voxelized in
+	 * @return true if one of the keys is the block
+	 */
+	public static boolean contains(final long[] keys, final int x, final int y, final int z, final Cuboid bounds) {
+		if (!bounds.contains(x, y, z)) {
+			return false;
+		}
+		final long key = key(x, y, z, 0, bounds);
+		int index = Arrays.binarySearch(keys, key);
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return index < keys.length && keys[index] >>> 16 == key >>> 16;
+	}
+
+	/**
+	 * Get the x coordinate of a block.
+	 *
+	 * @param key    the key of the block
+	 * @param bounds the bounds the mesh was voxelized in
+	 * @return the x coordinate
+	 */
+	public static int getX(final long key, final Cuboid bounds) {
+		return (int) ((key >>> 48 & 0xFFF) + (bounds.getMinX() >> 4)) << 4 | (int) (key >>> 16 & 15);
+	}
+
+	/**
+	 * Get the y coordinate of a block.
+	 *
+	 * @param key    the key of the block
+	 * @param bounds the bounds the mesh was voxelized in
+	 * @return the y coordinate
+	 */
+	public static int getY(final long key, final Cuboid bounds) {
+		return (int) ((key >>> 28 & 0xFF) + (bounds.getMinY() >> 4)) << 4 | (int) (key >>> 24 & 15);
+	}
+
+	/**
+	 * Get the z coordinate of a block.
+	 *
+	 * @param key    the key of the block
+	 * @param bounds the bounds the mesh was voxelized in
+	 * @return the z coordinate
+	 */
+	public static int getZ(final long key, final Cuboid bounds) {
+		return (int) ((key >>> 36 & 0xFFF) + (bounds.getMinZ() >> 4)) << 4 | (int) (key >>> 20 & 15);
+	}
+
+	/**
+	 * Get the palette index of a block.
+	 *
+	 * @param key the key of the block
+	 * @return the palette index
+	 */
+	public static int getPaletteIndex(final long key) {
+		return (int) (key & 0xFFFF);
+	}
+}
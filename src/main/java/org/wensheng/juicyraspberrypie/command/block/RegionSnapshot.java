@@ -0,0 +1,167 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.HeightMap;
+import org.bukkit.Material;
+import org.bukkit.Tag;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.Waterlogged;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Immutable copies of all chunks touched by a cuboid, taken on the server main thread and readable from any thread.
+ * Blocks outside the height range of the world read as {@link Material#VOID_AIR}, like they do in the world.
+ */
+public class RegionSnapshot {
+	/**
+	 * The materials that always hold a fluid, besides waterlogged blocks.
+	 */
+	private static final Set<Material> FLUIDS = EnumSet.of(Material.WATER, Material.LAVA, Material.BUBBLE_COLUMN,
+			Material.KELP, Material.KELP_PLANT, Material.SEAGRASS, Material.TALL_SEAGRASS);
+
+	/**
+	 * The minimum chunk x coordinate.
+	 */
+	private final int minChunkX;
+
+	/**
+	 * The minimum chunk z coordinate.
+	 */
+	private final int minChunkZ;
+
+	/**
+	 * The number of chunks along the z axis.
+	 */
+	private final int chunksZ;
+
+	/**
+	 * The lowest block y coordinate of the world.
+	 */
+	private final int minHeight;
+
+	/**
+	 * The block y coordinate above the highest block of the world.
+	 */
+	private final int maxHeight;
+
+	/**
+	 * The snapshots, x major.
+	 */
+	private final ChunkSnapshot[] snapshots;
+
+	/**
+	 * Take snapshots of all chunks touched by a cuboid. Must be called from the server main thread.
+	 * Chunks that are not loaded are loaded right away, so commands should preload them first.
+	 *
+	 * @param cuboid    the cuboid
+	 * @param maxChunks the largest number of chunks to take snapshots of
+	 * @throws IllegalArgumentException if the cuboid touches more chunks
+	 */
+	public RegionSnapshot(final Cuboid cuboid, final int maxChunks) {
+		final World world = cuboid.getWorld();
+		minChunkX = cuboid.getMinX() >> 4;
+		minChunkZ = cuboid.getMinZ() >> 4;
+		chunksZ = (cuboid.getMaxZ() >> 4) - minChunkZ + 1;
+		minHeight = world.getMinHeight();
+		maxHeight = world.getMaxHeight();
+		final int chunksX = (cuboid.getMaxX() >> 4) - minChunkX + 1;
+		if ((long) chunksX * chunksZ > maxChunks) {
+			throw new IllegalArgumentException("Region touches more than " + maxChunks + " chunks");
+		}
+		snapshots = new ChunkSnapshot[chunksX * chunksZ];
+		for (int chunkX = 0; chunkX < chunksX; chunkX++) {
+			for (int chunkZ = 0; chunkZ < chunksZ; chunkZ++) {
+				snapshots[chunkX * chunksZ + chunkZ] = world.getChunkAt(minChunkX + chunkX, minChunkZ + chunkZ)
+						.getChunkSnapshot(false, false, false);
+			}
+		}
+	}
+
+	private ChunkSnapshot snapshot(final int x, final int z) {
+		return snapshots[((x >> 4) - minChunkX) * chunksZ + (z >> 4) - minChunkZ];
+	}
+
+	/**
+	 * Get the material of a block within the cuboid.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param z the z coordinate
+	 * @return the material
+	 */
+	public Material getType(final int x, final int y, final int z) {
+		if (y < minHeight || y >= maxHeight) {
+			return Material.VOID_AIR;
+		}
+		return snapshot(x, z).getBlockType(x & 15, y, z & 15);
+	}
+
+	/**
+	 * Get the block data of a block within the cuboid.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param z the z coordinate
+	 * @return the block data
+	 */
+	public BlockData getBlockData(final int x, final int y, final int z) {
+		if (y < minHeight || y >= maxHeight) {
+			return Material.VOID_AIR.createBlockData();
+		}
+		return snapshot(x, z).getBlockData(x & 15, y, z & 15);
+	}
+
+	/**
+	 * Get the y coordinate of the highest block of a column within the cuboid that counts for a height map.
+	 * Empty chunk sections are skipped without reading their blocks.
+	 *
+	 * @param x         the x coordinate
+	 * @param z         the z coordinate
+	 * @param heightMap the height map, which must not be one of the world generation height maps
+	 * @return the y coordinate, or one below the lowest block of the world if no block counts
+	 * @throws IllegalArgumentException if the height map is only used during world generation
+	 */
+	public int getHighestBlockYAt(final int x, final int z, final HeightMap heightMap) {
+		if (heightMap == HeightMap.OCEAN_FLOOR_WG || heightMap == HeightMap.WORLD_SURFACE_WG) {
+			throw new IllegalArgumentException("Height map " + heightMap + " is only used during world generation");
+		}
+		final ChunkSnapshot snapshot = snapshot(x, z);
+		for (int y = maxHeight - 1; y >= minHeight; y--) {
+			if (snapshot.isSectionEmpty(y - minHeight >> 4)) {
+				y -= y - minHeight & 15;
+				continue;
+			}
+			if (counts(snapshot.getBlockData(x & 15, y, z & 15), heightMap)) {
+				return y;
+			}
+		}
+		return minHeight - 1;
+	}
+
+	/**
+	 * Check whether a block counts for a height map, following the rules of the game.
+	 *
+	 * @param blockData the block data
+	 * @param heightMap the height map
+	 * @return true if the block counts
+	 */
+	private static boolean counts(final BlockData blockData, final HeightMap heightMap) {
+		final Material material = blockData.getMaterial();
+		return switch (heightMap) {
+			case WORLD_SURFACE -> !material.isAir();
+			case OCEAN_FLOOR -> material.isSolid();
+			case MOTION_BLOCKING -> material.isSolid() || hasFluid(blockData);
+			case MOTION_BLOCKING_NO_LEAVES -> (material.isSolid() || hasFluid(blockData)) && !Tag.LEAVES.isTagged(material);
+			default -> throw new IllegalArgumentException("Unsupported height map " + heightMap);
+		};
+	}
+
+	private static boolean hasFluid(final BlockData blockData) {
+		return FLUIDS.contains(blockData.getMaterial())
+				|| blockData instanceof final Waterlogged waterlogged && waterlogged.isWaterlogged();
+	}
+}
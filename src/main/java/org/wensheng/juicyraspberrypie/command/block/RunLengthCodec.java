@@ -0,0 +1,254 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.wensheng.juicyraspberrypie.command.Varints;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes a sequence of palette indices as runs, each run being its length followed by the palette index, both as
+ * variable-length ints (see {@link Varints}).
+ * The encoded bytes may additionally be compressed with deflate.
+ */
+public final class RunLengthCodec {
+	/**
+	 * The size of the chunks the compressed data is processed in.
+	 */
+	private static final int CHUNK_SIZE = 8192;
+
+	private RunLengthCodec() {
+	}
+
+	/**
+	 * Encode palette indices.
+	 *
+	 * @param indices  the palette indices
+	 * @param compress whether to compress the runs with deflate
+	 * @return the encoded bytes
+	 */
+	public static byte[] encode(final int[] indices, final boolean compress) {
+		final Encoder encoder = new Encoder();
+		for (final int index : indices) {
+			encoder.add(index);
+		}
+		final byte[] runs = encoder.toByteArray();
+		return compress ? deflate(runs) : runs;
+	}
+
+	/**
+	 * Decode palette indices.
+	 *
+	 * @param data       the encoded bytes
+	 * @param count      the expected number of indices
+	 * @param compressed whether the runs are compressed with deflate
+	 * @return the palette indices
+	 * @throws IllegalArgumentException if the data is malformed or does not contain exactly {@code count} indices
+	 */
+	public static int[] decode(final byte[] data, final int count, final boolean compressed) {
+		final ByteBuffer runs = ByteBuffer.wrap(compressed ? inflate(data, (long) count * 2 * Varints.MAX_BYTES) : data);
+		final int[] indices = new int[count];
+		int position = 0;
+		try {
+			while (runs.hasRemaining()) {
+				final int length = Varints.read(runs);
+				final int index = Varints.read(runs);
+				if (length <= 0 || length > count - position) {
+					throw new IllegalArgumentException("Runs exceed " + count + " blocks");
+				}
+				Arrays.fill(indices, position, position + length, index);
+				position += length;
+			}
+		} catch (final BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated run", e);
+		}
+		if (position != count) {
+			throw new IllegalArgumentException("Runs cover " + position + " of " + count + " blocks");
+		}
+		return indices;
+	}
+
+	/**
+	 * Compress encoded runs with deflate, as {@link #decode(byte[], int, boolean)} expects compressed runs.
+	 *
+	 * @param data the encoded runs
+	 * @return the compressed bytes
+	 */
+	public static byte[] deflate(final byte[] data) {
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] chunk = new byte[CHUNK_SIZE];
+			while (!deflater.finished()) {
+				out.write(chunk, 0, deflater.deflate(chunk));
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Inflate data, refusing to produce more than the longest possible runs for the expected number of indices.
+	 */
+	private static byte[] inflate(final byte[] data, final long maxLength) {
+		final Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(data);
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] chunk = new byte[CHUNK_SIZE];
+			while (!inflater.finished()) {
+				final int inflated = inflater.inflate(chunk);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IllegalArgumentException("Truncated compressed data");
+				}
+				out.write(chunk, 0, inflated);
+				if (out.size() > maxLength) {
+					throw new IllegalArgumentException("Compressed data exceeds " + maxLength + " bytes");
+				}
+			}
+			return out.toByteArray();
+		} catch (final DataFormatException e) {
+			throw new IllegalArgumentException("Malformed compressed data", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Encodes palette indices one at a time, for producers that do not have all indices at once.
+	 */
+	public static final class Encoder {
+		/**
+		 * The completed runs.
+		 */
+		private final ByteArrayOutputStream runs = new ByteArrayOutputStream();
+
+		/**
+		 * The palette index of the current run.
+		 */
+		private int index;
+
+		/**
+		 * The length of the current run, 0 before the first index.
+		 */
+		private int length;
+
+		/**
+		 * Create a new, empty encoder.
+		 */
+		public Encoder() {
+		}
+
+		/**
+		 * Add the next palette index.
+		 *
+		 * @param next the palette index
+		 */
+		public void add(final int next) {
+			if (length > 0 && next == index) {
+				length++;
+				return;
+			}
+			flush();
+			index = next;
+			length = 1;
+		}
+
+		/**
+		 * Get the number of bytes of the completed runs.
+		 *
+		 * @return the number of bytes
+		 */
+		public int size() {
+			return runs.size();
+		}
+
+		/**
+		 * Get the encoded runs of all indices added so far.
+		 *
+		 * @return the encoded bytes
+		 */
+		public byte[] toByteArray() {
+			flush();
+			return runs.toByteArray();
+		}
+
+		private void flush() {
+			if (length > 0) {
+				writeVarint(length);
+				writeVarint(index);
+				length = 0;
+			}
+		}
+
+		private void writeVarint(final int value) {
+			int remaining = value;
+			while ((remaining & ~0x7F) != 0) {
+				runs.write(remaining & 0x7F | 0x80);
+				remaining >>>= 7;
+			}
+			runs.write(remaining);
+		}
+	}
+
+	/**
+	 * Decodes uncompressed runs one palette index at a time, for consumers that do not need all indices at once.
+	 */
+	public static final class Decoder {
+		/**
+		 * The remaining runs.
+		 */
+		private final ByteBuffer runs;
+
+		/**
+		 * The palette index of the current run.
+		 */
+		private int index;
+
+		/**
+		 * The number of indices left in the current run.
+		 */
+		private int remaining;
+
+		/**
+		 * Create a new decoder.
+		 *
+		 * @param data the encoded bytes, not compressed
+		 */
+		public Decoder(final byte[] data) {
+			this.runs = ByteBuffer.wrap(data);
+		}
+
+		/**
+		 * Get the next palette index.
+		 *
+		 * @return the palette index
+		 * @throws IllegalArgumentException if the runs are malformed or have no more indices
+		 */
+		public int next() {
+			if (remaining == 0) {
+				if (!runs.hasRemaining()) {
+					throw new IllegalArgumentException("No more runs");
+				}
+				try {
+					remaining = Varints.read(runs);
+					index = Varints.read(runs);
+				} catch (final BufferUnderflowException e) {
+					throw new IllegalArgumentException("Truncated run", e);
+				}
+				if (remaining <= 0) {
+					throw new IllegalArgumentException("Run of length " + remaining);
+				}
+			}
+			remaining--;
+			return index;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.bukkit.DyeColor;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.Container;
+import org.bukkit.block.Sign;
+import org.bukkit.block.sign.Side;
+import org.bukkit.block.sign.SignSide;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * The content of a block entity that is not part of its block data, copied so that it can be applied to another block:
+ * the text of a sign or the items of a container.
+ */
+public final class TileContent {
+	/**
+	 * The sign sides.
+	 */
+	private static final Side[] SIDES = Side.values();
+
+	/**
+	 * The lines of every sign side, or null if the content is not a sign.
+	 */
+	private final String[][] lines;
+
+	/**
+	 * The color of every sign side.
+	 */
+	private final DyeColor[] colors;
+
+	/**
+	 * Whether the text of every sign side glows.
+	 */
+	private final boolean[] glowing;
+
+	/**
+	 * The items of the container, or null if the content is not a container.
+	 */
+	private final ItemStack[] items;
+
+	private TileContent(final String[][] lines, final DyeColor[] colors, final boolean[] glowing, final ItemStack[] items) {
+		this.lines = lines;
+		this.colors = colors;
+		this.glowing = glowing;
+		this.items = items;
+	}
+
+	/**
+	 * Copy the content of a block state.
+	 *
+	 * @param state the block state
+	 * @return the content, or null if the state has no content that is copied
+	 */
+	public static TileContent copyOf(final BlockState state) {
+		if (state instanceof final Sign sign) {
+			final String[][] lines = new String[SIDES.length][];
+			final DyeColor[] colors = new DyeColor[SIDES.length];
+			final boolean[] glowing = new boolean[SIDES.length];
+			for (final Side side : SIDES) {
+				final SignSide signSide = sign.getSide(side);
+				lines[side.ordinal()] = signSide.getLines().clone();
+				colors[side.ordinal()] = signSide.getColor();
+				glowing[side.ordinal()] = signSide.isGlowingText();
+			}
+			return new TileContent(lines, colors, glowing, null);
+		}
+		if (state instanceof final Container container) {
+			final ItemStack[] contents = container.getSnapshotInventory().getContents();
+			final ItemStack[] items = new ItemStack[contents.length];
+			for (int i = 0; i < contents.length; i++) {
+				items[i] = contents[i] == null ? null : contents[i].clone();
+			}
+			return new TileContent(null, null, null, items);
+		}
+		return null;
+	}
+
+	/**
+	 * Apply the content to a block state of the same kind and update the block.
+	 *
+	 * @param state the block state
+	 * @return true if the content was applied
+	 */
+	public boolean applyTo(final BlockState state) {
+		if (lines != null && state instanceof final Sign sign) {
+			for (final Side side : SIDES) {
+				final SignSide signSide = sign.getSide(side);
+				final String[] sideLines = lines[side.ordinal()];
+				for (int i = 0; i < sideLines.length; i++) {
+					signSide.setLine(i, sideLines[i]);
+				}
+				signSide.setColor(colors[side.ordinal()]);
+				signSide.setGlowingText(glowing[side.ordinal()]);
+			}
+			return state.update(true, false);
+		}
+		if (items != null && state instanceof final Container container) {
+			container.getSnapshotInventory().setContents(items);
+			return state.update(true, false);
+		}
+		return false;
+	}
+}
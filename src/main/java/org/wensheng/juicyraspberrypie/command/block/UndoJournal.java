@@ -0,0 +1,382 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The block edits of a session that can be undone and redone.
+ * An edit records until its writer is finished and then joins the edits that can be undone. Every job records its own
+ * edit, so that commands, undo and redo while a job runs leave the edit of the job alone; the edit of a command that
+ * failed before its writer was finished ends when the next command begins an edit, or on undo or redo.
+ * When the edits take more than the memory limit, the runs of the oldest edits are moved to a journal file; when that
+ * is full, the oldest edits are forgotten and the space they took in the file is reused. The oldest edits are also
+ * forgotten when there are more edits than allowed. Undo and redo hand out an {@link EditReplay}, which commands run at
+ * once and jobs step through over several ticks. Must only be used from the server main thread.
+ */
+public class UndoJournal implements AutoCloseable {
+	/**
+	 * The edits that can be undone, the newest last.
+	 */
+	private final Deque<JournalEdit> undoEdits = new ArrayDeque<>();
+
+	/**
+	 * The edits that can be redone, the most recently undone last.
+	 */
+	private final Deque<JournalEdit> redoEdits = new ArrayDeque<>();
+
+	/**
+	 * The edits of running jobs that are still recording.
+	 */
+	private final List<JournalEdit> jobEdits = new ArrayList<>();
+
+	/**
+	 * The file the runs of old edits are moved to.
+	 */
+	private final JournalFile file;
+
+	/**
+	 * The number of bytes the edits may take in memory.
+	 */
+	private final long memoryLimit;
+
+	/**
+	 * The number of bytes the edits may take in the journal file.
+	 */
+	private final long fileLimit;
+
+	/**
+	 * The number of edits that are kept.
+	 */
+	private final int maxEdits;
+
+	/**
+	 * The edit of the current command that is still recording, or null.
+	 */
+	private JournalEdit commandEdit;
+
+	/**
+	 * The estimated number of bytes the edits that can be undone or redone take in memory.
+	 */
+	private long memoryBytes;
+
+	/**
+	 * The number of bytes in the journal file that edits that can be undone or redone refer to.
+	 */
+	private long fileBytes;
+
+	/**
+	 * Create a new, empty journal.
+	 *
+	 * @param path        the path of the journal file, created once edits are moved there
+	 * @param memoryLimit the number of bytes the edits may take in memory
+	 * @param fileLimit   the number of bytes the edits may take in the journal file
+	 * @param maxEdits    the number of edits that are kept
+	 */
+	public UndoJournal(final Path path, final long memoryLimit, final long fileLimit, final int maxEdits) {
+		this.file = new JournalFile(path);
+		this.memoryLimit = memoryLimit;
+		this.fileLimit = fileLimit;
+		this.maxEdits = maxEdits;
+	}
+
+	/**
+	 * Begin the edit of a command. This ends the edit of the previous command if it was not ended yet, and forgets the
+	 * edits that could be redone.
+	 *
+	 * @param region the region that is edited
+	 * @return the edit to record the changed blocks in
+	 */
+	public JournalEdit begin(final Cuboid region) {
+		endCommandEdit();
+		clearRedo();
+		commandEdit = new JournalEdit(this, region);
+		return commandEdit;
+	}
+
+	/**
+	 * Begin the edit of a job, which records until it is ended, independent of other edits. This forgets the edits
+	 * that could be redone.
+	 *
+	 * @param region the region that is edited
+	 * @return the edit to record the changed blocks in
+	 */
+	public JournalEdit beginJob(final Cuboid region) {
+		clearRedo();
+		final JournalEdit edit = new JournalEdit(this, region);
+		jobEdits.add(edit);
+		return edit;
+	}
+
+	/**
+	 * End a recording edit, so that it can be undone. The edits that could be redone are forgotten, as the edit
+	 * changed the blocks after they were undone.
+	 *
+	 * @param edit the edit
+	 */
+	void end(final JournalEdit edit) {
+		if (edit == commandEdit) {
+			commandEdit = null;
+		} else if (!jobEdits.remove(edit)) {
+			return;
+		}
+		edit.seal();
+		clearRedo();
+		undoEdits.addLast(edit);
+		memoryBytes += edit.memorySize();
+		enforceLimits();
+	}
+
+	private void endCommandEdit() {
+		if (commandEdit != null) {
+			end(commandEdit);
+		}
+	}
+
+	/**
+	 * Start restoring the blocks before the newest edit. The edits of running jobs are not undone.
+	 *
+	 * @param maxBlocks the largest number of blocks the replay may go through
+	 * @return the replay, which writes the blocks as it is stepped
+	 * @throws IllegalStateException    if there is no edit to undo, or it is still being redone
+	 * @throws IllegalArgumentException if the edit has more blocks than allowed
+	 */
+	public EditReplay undo(final long maxBlocks) {
+		endCommandEdit();
+		final JournalEdit edit = checkReplayable(undoEdits.peekLast(), "Nothing to undo", maxBlocks);
+		undoEdits.pollLast();
+		redoEdits.addLast(edit);
+		return edit.replay(file, true);
+	}
+
+	/**
+	 * Start restoring the blocks after the most recently undone edit.
+	 *
+	 * @param maxBlocks the largest number of blocks the replay may go through
+	 * @return the replay, which writes the blocks as it is stepped
+	 * @throws IllegalStateException    if there is no edit to redo, or it is still being undone
+	 * @throws IllegalArgumentException if the edit has more blocks than allowed
+	 */
+	public EditReplay redo(final long maxBlocks) {
+		endCommandEdit();
+		final JournalEdit edit = checkReplayable(redoEdits.peekLast(), "Nothing to redo", maxBlocks);
+		redoEdits.pollLast();
+		undoEdits.addLast(edit);
+		return edit.replay(file, false);
+	}
+
+	private static JournalEdit checkReplayable(final JournalEdit edit, final String missing, final long maxBlocks) {
+		if (edit == null) {
+			throw new IllegalStateException(missing);
+		}
+		if (edit.isReplaying()) {
+			throw new IllegalStateException("The edit is still being replayed");
+		}
+		if (edit.getBlockCount() > maxBlocks) {
+			throw new IllegalArgumentException("The edit has more than " + maxBlocks + " blocks");
+		}
+		return edit;
+	}
+
+	/**
+	 * Get the region of the edit that {@link #undo(long)} would undo, so that its chunks can be loaded first.
+	 *
+	 * @return the region, or null if there is no edit to undo
+	 */
+	public Cuboid peekUndoRegion() {
+		final JournalEdit edit = commandEdit == null ? undoEdits.peekLast() : commandEdit;
+		return edit == null ? null : edit.getRegion();
+	}
+
+	/**
+	 * Get the region of the edit that {@link #redo(long)} would redo, so that its chunks can be loaded first.
+	 *
+	 * @return the region, or null if there is no edit to redo
+	 */
+	public Cuboid peekRedoRegion() {
+		final JournalEdit edit = commandEdit == null ? redoEdits.peekLast() : null;
+		return edit == null ? null : edit.getRegion();
+	}
+
+	/**
+	 * Get the number of edits that can be undone.
+	 *
+	 * @return the number of edits
+	 */
+	public int getUndoCount() {
+		return undoEdits.size();
+	}
+
+	/**
+	 * Get the number of edits that can be redone.
+	 *
+	 * @return the number of edits
+	 */
+	public int getRedoCount() {
+		return redoEdits.size();
+	}
+
+	/**
+	 * Get the number of edits that are still recording.
+	 *
+	 * @return the number of edits
+	 */
+	public int getRecordingCount() {
+		return jobEdits.size() + (commandEdit == null ? 0 : 1);
+	}
+
+	/**
+	 * Get the estimated number of bytes all edits take in memory.
+	 *
+	 * @return the number of bytes
+	 */
+	long memorySize() {
+		long size = memoryBytes;
+		if (commandEdit != null) {
+			size += commandEdit.memorySize();
+		}
+		for (final JournalEdit edit : jobEdits) {
+			size += edit.memorySize();
+		}
+		return size;
+	}
+
+	/**
+	 * Get the number of bytes in the journal file that edits refer to.
+	 *
+	 * @return the number of bytes
+	 */
+	long fileSize() {
+		return fileBytes;
+	}
+
+	private void enforceLimits() {
+		boolean shrunk = true;
+		while (shrunk && undoEdits.size() + redoEdits.size() > maxEdits) {
+			shrunk = forgetOldest();
+		}
+		shrunk = true;
+		while (shrunk && memorySize() > memoryLimit) {
+			shrunk = moveOldestToFile() || forgetOldest();
+		}
+	}
+
+	/**
+	 * Move the runs of the oldest edit that is still in memory to the journal file, if they fit.
+	 * The space of forgotten edits is reclaimed first if the file is full.
+	 *
+	 * @return true if an edit was moved
+	 */
+	private boolean moveOldestToFile() {
+		final JournalEdit edit = oldestInMemory();
+		if (edit == null || fileBytes + edit.runsSize() > fileLimit) {
+			return false;
+		}
+		try {
+			if (file.size() + edit.runsSize() > fileLimit) {
+				compactFile();
+			}
+			memoryBytes -= edit.memorySize();
+			edit.moveToFile(file);
+			memoryBytes += edit.memorySize();
+			fileBytes += edit.runsSize();
+			return true;
+		} catch (final IOException e) {
+			memoryBytes += edit.memorySize();
+			return false;
+		}
+	}
+
+	private JournalEdit oldestInMemory() {
+		for (final JournalEdit edit : undoEdits) {
+			if (!edit.isInFile() && edit.runsSize() > 0) {
+				return edit;
+			}
+		}
+		for (final JournalEdit edit : redoEdits) {
+			if (!edit.isInFile() && edit.runsSize() > 0) {
+				return edit;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Move the runs of all edits in the journal file to its start, over the space of forgotten edits.
+	 */
+	private void compactFile() {
+		final List<JournalEdit> edits = new ArrayList<>();
+		for (final JournalEdit edit : undoEdits) {
+			if (edit.isInFile()) {
+				edits.add(edit);
+			}
+		}
+		for (final JournalEdit edit : redoEdits) {
+			if (edit.isInFile()) {
+				edits.add(edit);
+			}
+		}
+		edits.sort(Comparator.comparingLong(JournalEdit::getFileOffset));
+		long offset = 0;
+		for (final JournalEdit edit : edits) {
+			edit.moveWithinFile(file, offset);
+			offset += edit.runsSize();
+		}
+		file.truncate(offset);
+	}
+
+	/**
+	 * Forget the oldest edit, preferring edits that can be undone over those that can be redone.
+	 *
+	 * @return true if an edit was forgotten
+	 */
+	private boolean forgetOldest() {
+		final JournalEdit oldest = undoEdits.isEmpty() ? redoEdits.pollFirst() : undoEdits.pollFirst();
+		if (oldest == null) {
+			return false;
+		}
+		forget(oldest);
+		return true;
+	}
+
+	private void clearRedo() {
+		for (final JournalEdit edit : redoEdits) {
+			forget(edit);
+		}
+		redoEdits.clear();
+	}
+
+	/**
+	 * Take an edit that was removed out of the totals, and start the journal file over once no edit refers to it.
+	 */
+	private void forget(final JournalEdit edit) {
+		memoryBytes -= edit.memorySize();
+		if (edit.isInFile()) {
+			fileBytes -= edit.runsSize();
+			if (fileBytes == 0) {
+				file.clear();
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (commandEdit != null) {
+			commandEdit.seal();
+			commandEdit = null;
+		}
+		jobEdits.forEach(JournalEdit::seal);
+		jobEdits.clear();
+		undoEdits.clear();
+		redoEdits.clear();
+		memoryBytes = 0;
+		fileBytes = 0;
+		file.close();
+	}
+}
@@ -0,0 +1,33 @@
+package org.wensheng.juicyraspberrypie.command.handlers.events.jobs;
+
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.job.JobManager;
+
+import java.util.stream.Collectors;
+
+/**
+ * Get the ids of the jobs of this session that finished since the last call, separated by '|'.
+ */
+public class Completed implements Handler {
+	/**
+	 * The job manager.
+	 */
+	private final JobManager jobManager;
+
+	/**
+	 * Create a new Completed event handler.
+	 *
+	 * @param jobManager The job manager.
+	 */
+	public Completed(final JobManager jobManager) {
+		this.jobManager = jobManager;
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		return jobManager.pollFinished(sessionAttachment).stream().map(String::valueOf).collect(Collectors.joining("|"));
+	}
+}
@@ -0,0 +1,31 @@
+package org.wensheng.juicyraspberrypie.command.handlers.jobs;
+
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.HandlerVoid;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.job.JobManager;
+
+/**
+ * Cancel a running job. Its result is a failure.
+ */
+public class Cancel implements HandlerVoid {
+	/**
+	 * The job manager.
+	 */
+	private final JobManager jobManager;
+
+	/**
+	 * Create a new Cancel handler.
+	 *
+	 * @param jobManager The job manager.
+	 */
+	public Cancel(final JobManager jobManager) {
+		this.jobManager = jobManager;
+	}
+
+	@Override
+	public void handleVoid(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		jobManager.cancel(sessionAttachment, instruction.nextInt());
+	}
+}
@@ -0,0 +1,39 @@
+package org.wensheng.juicyraspberrypie.command.handlers.jobs;
+
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.job.GetBlocksJob;
+import org.wensheng.juicyraspberrypie.command.job.JobManager;
+
+/**
+ * Read the blocks between two locations in a job over several ticks, like {@code world.getBlocks}. Returns the job id.
+ */
+public class GetBlocksInJob implements Handler {
+	/**
+	 * The job manager.
+	 */
+	private final JobManager jobManager;
+
+	/**
+	 * The largest number of blocks to read.
+	 */
+	private final long maxBlocks;
+
+	/**
+	 * Create a new GetBlocksInJob handler.
+	 *
+	 * @param jobManager The job manager.
+	 * @param maxBlocks  The largest number of blocks to read.
+	 */
+	public GetBlocksInJob(final JobManager jobManager, final long maxBlocks) {
+		this.jobManager = jobManager;
+		this.maxBlocks = maxBlocks;
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		return Integer.toString(jobManager.submit(new GetBlocksJob(sessionAttachment, instruction.nextCuboid(), maxBlocks)));
+	}
+}
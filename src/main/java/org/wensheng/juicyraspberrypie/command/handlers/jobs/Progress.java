@@ -0,0 +1,33 @@
+package org.wensheng.juicyraspberrypie.command.handlers.jobs;
+
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.job.Job;
+import org.wensheng.juicyraspberrypie.command.job.JobManager;
+
+/**
+ * Get the progress of a job as the number of steps done and the total number of steps.
+ */
+public class Progress implements Handler {
+	/**
+	 * The job manager.
+	 */
+	private final JobManager jobManager;
+
+	/**
+	 * Create a new Progress handler.
+	 *
+	 * @param jobManager The job manager.
+	 */
+	public Progress(final JobManager jobManager) {
+		this.jobManager = jobManager;
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final Job job = jobManager.get(sessionAttachment, instruction.nextInt());
+		return job.getDone() + "," + job.getTotal();
+	}
+}
@@ -0,0 +1,45 @@
+package org.wensheng.juicyraspberrypie.command.handlers.jobs;
+
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.UndoJournal;
+import org.wensheng.juicyraspberrypie.command.job.JobManager;
+import org.wensheng.juicyraspberrypie.command.job.ReplayJob;
+
+/**
+ * Restore the blocks after the most recently undone edit in a job over several ticks, like {@code world.redo}.
+ * Returns the job id.
+ */
+public class RedoInJob implements Handler {
+	/**
+	 * The job manager.
+	 */
+	private final JobManager jobManager;
+
+	/**
+	 * The largest number of blocks of an edit to redo.
+	 */
+	private final long maxBlocks;
+
+	/**
+	 * Create a new RedoInJob handler.
+	 *
+	 * @param jobManager The job manager.
+	 * @param maxBlocks  The largest number of blocks of an edit to redo.
+	 */
+	public RedoInJob(final JobManager jobManager, final long maxBlocks) {
+		this.jobManager = jobManager;
+		this.maxBlocks = maxBlocks;
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final UndoJournal journal = sessionAttachment.getUndoJournal();
+		if (journal == null) {
+			throw new IllegalStateException("The undo journal is not enabled");
+		}
+		return Integer.toString(jobManager.submit(new ReplayJob(sessionAttachment, journal.redo(maxBlocks))));
+	}
+}
@@ -0,0 +1,31 @@
+package org.wensheng.juicyraspberrypie.command.handlers.jobs;
+
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.job.JobManager;
+
+/**
+ * Get the result of a finished job and forget the job.
+ */
+public class Result implements Handler {
+	/**
+	 * The job manager.
+	 */
+	private final JobManager jobManager;
+
+	/**
+	 * Create a new Result handler.
+	 *
+	 * @param jobManager The job manager.
+	 */
+	public Result(final JobManager jobManager) {
+		this.jobManager = jobManager;
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		return jobManager.takeResult(sessionAttachment, instruction.nextInt());
+	}
+}
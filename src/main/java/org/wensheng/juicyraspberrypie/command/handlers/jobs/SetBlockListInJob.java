@@ -0,0 +1,51 @@
+package org.wensheng.juicyraspberrypie.command.handlers.jobs;
+
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.BlockDataCache;
+import org.wensheng.juicyraspberrypie.command.block.BlockList;
+import org.wensheng.juicyraspberrypie.command.block.BulkBlockWriter;
+import org.wensheng.juicyraspberrypie.command.job.JobManager;
+import org.wensheng.juicyraspberrypie.command.job.SetBlockListJob;
+
+/**
+ * Set a region of different blocks in a job over several ticks, like {@code world.setBlockList}. Returns the job id.
+ */
+public class SetBlockListInJob implements Handler {
+	/**
+	 * The job manager.
+	 */
+	private final JobManager jobManager;
+
+	/**
+	 * The cache for materials and block data.
+	 */
+	private final BlockDataCache blockDataCache;
+
+	/**
+	 * The largest number of blocks to set.
+	 */
+	private final long maxBlocks;
+
+	/**
+	 * Create a new SetBlockListInJob handler.
+	 *
+	 * @param jobManager     The job manager.
+	 * @param blockDataCache The cache for materials and block data.
+	 * @param maxBlocks      The largest number of blocks to set.
+	 */
+	public SetBlockListInJob(final JobManager jobManager, final BlockDataCache blockDataCache, final long maxBlocks) {
+		this.jobManager = jobManager;
+		this.blockDataCache = blockDataCache;
+		this.maxBlocks = maxBlocks;
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final BlockList blocks = BlockList.read(instruction, blockDataCache, maxBlocks);
+		final BulkBlockWriter writer = BulkBlockWriter.forJob(sessionAttachment, blocks.getCuboid(), blocks::covers);
+		return Integer.toString(jobManager.submit(new SetBlockListJob(sessionAttachment, blocks, writer)));
+	}
+}
@@ -0,0 +1,61 @@
+package org.wensheng.juicyraspberrypie.command.handlers.jobs;
+
+import org.bukkit.Material;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.BlockDataCache;
+import org.wensheng.juicyraspberrypie.command.block.BulkBlockWriter;
+import org.wensheng.juicyraspberrypie.command.job.JobManager;
+import org.wensheng.juicyraspberrypie.command.job.SetBlocksJob;
+
+/**
+ * Set the blocks between two locations in a job over several ticks, like {@code world.setBlocks}. Returns the job id.
+ */
+public class SetBlocksInJob implements Handler {
+	/**
+	 * The job manager.
+	 */
+	private final JobManager jobManager;
+
+	/**
+	 * The cache for materials and block data.
+	 */
+	private final BlockDataCache blockDataCache;
+
+	/**
+	 * The largest number of blocks to set.
+	 */
+	private final long maxBlocks;
+
+	/**
+	 * Create a new SetBlocksInJob handler.
+	 *
+	 * @param jobManager     The job manager.
+	 * @param blockDataCache The cache for materials and block data.
+	 * @param maxBlocks      The largest number of blocks to set.
+	 */
+	public SetBlocksInJob(final JobManager jobManager, final BlockDataCache blockDataCache, final long maxBlocks) {
+		this.jobManager = jobManager;
+		this.blockDataCache = blockDataCache;
+		this.maxBlocks = maxBlocks;
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final Cuboid cuboid = instruction.nextCuboid();
+		if (cuboid.getVolume() > maxBlocks) {
+			throw new IllegalArgumentException("Region has more than " + maxBlocks + " blocks");
+		}
+		final Material material = blockDataCache.material(instruction.next(), Material.SANDSTONE);
+		final int facing = instruction.hasNext() ? instruction.nextInt() : 0;
+		final BlockFace blockFace = blockDataCache.facing(facing);
+
+		final BlockData blockData = blockDataCache.blockData(material, blockFace);
+		return Integer.toString(jobManager.submit(new SetBlocksJob(sessionAttachment, cuboid, BulkBlockWriter.forJob(sessionAttachment, cuboid), blockData)));
+	}
+}
@@ -0,0 +1,166 @@
+package org.wensheng.juicyraspberrypie.command.handlers.jobs;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.BlockDataCache;
+import org.wensheng.juicyraspberrypie.command.block.BulkBlockWriter;
+import org.wensheng.juicyraspberrypie.command.block.MeshVoxelizer;
+import org.wensheng.juicyraspberrypie.command.job.JobManager;
+import org.wensheng.juicyraspberrypie.command.job.SetMeshJob;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Set the blocks of a triangle mesh in a job. The arguments are the origin, the base64 encoded vertices as
+ * little-endian 32 bit floats (x, y and z relative to the origin, in blocks), the base64 encoded faces as little-endian
+ * 32 bit ints (the indices of three vertices and a palette index), and the materials of the palette.
+ * The mesh is voxelized on a worker thread; the job sets the blocks once that is done. Returns the job id.
+ */
+public class SetMesh implements Handler {
+	/**
+	 * The largest distance of a vertex from the origin along any axis, the size of a world.
+	 */
+	private static final float MAX_COORDINATE = 30_000_000;
+
+	/**
+	 * The job manager.
+	 */
+	private final JobManager jobManager;
+
+	/**
+	 * The cache for materials and block data.
+	 */
+	private final BlockDataCache blockDataCache;
+
+	/**
+	 * The executor to voxelize the meshes with.
+	 */
+	private final Executor executor;
+
+	/**
+	 * The largest number of blocks of a mesh.
+	 */
+	private final int maxBlocks;
+
+	/**
+	 * Create a new SetMesh handler.
+	 *
+	 * @param jobManager     The job manager.
+	 * @param blockDataCache The cache for materials and block data.
+	 * @param executor       The executor to voxelize the meshes with.
+	 * @param maxBlocks      The largest number of blocks of a mesh.
+	 */
+	public SetMesh(final JobManager jobManager, final BlockDataCache blockDataCache, final Executor executor, final int maxBlocks) {
+		this.jobManager = jobManager;
+		this.blockDataCache = blockDataCache;
+		this.executor = executor;
+		this.maxBlocks = maxBlocks;
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final Location origin = instruction.nextLocation();
+		final float[] vertices = floats(Base64.getDecoder().decode(instruction.next()));
+		final int[] faces = ints(Base64.getDecoder().decode(instruction.next()));
+		final List<BlockData> palette = new ArrayList<>();
+		while (instruction.hasNext()) {
+			final String name = instruction.next();
+			final Material material = blockDataCache.material(name, null);
+			if (material == null) {
+				throw new IllegalArgumentException("Unknown material " + name);
+			}
+			palette.add(blockDataCache.blockData(material, blockDataCache.facing(0)));
+		}
+		if (vertices.length % 3 != 0 || faces.length % 4 != 0) {
+			throw new IllegalArgumentException("Vertices need 3 and faces 4 numbers each");
+		}
+		if (palette.size() > MeshVoxelizer.MAX_PALETTE) {
+			throw new IllegalArgumentException("At most " + MeshVoxelizer.MAX_PALETTE + " materials are supported");
+		}
+		for (int face = 3; face < faces.length; face += 4) {
+			if (faces[face] < 0 || faces[face] >= palette.size()) {
+				throw new IllegalArgumentException("Face " + face / 4 + " has no material");
+			}
+		}
+
+		final int originX = origin.getBlockX();
+		final int originY = origin.getBlockY();
+		final int originZ = origin.getBlockZ();
+		final Cuboid bounds = bounds(origin.getWorld(), vertices, originX, originY, originZ);
+		final CompletableFuture<long[]> voxels = new CompletableFuture<>();
+		executor.execute(() -> voxelize(voxels, vertices, faces, originX, originY, originZ, bounds));
+		return Integer.toString(jobManager.submit(new SetMeshJob(sessionAttachment, bounds, voxels,
+				BulkBlockWriter.forJob(sessionAttachment, bounds, (x, y, z) -> MeshVoxelizer.contains(voxels.join(), x, y, z, bounds)),
+				palette.toArray(new BlockData[0]))));
+	}
+
+	/**
+	 * Voxelize the mesh into the future, stopping early once the future is cancelled with the job.
+	 */
+	@SuppressWarnings("PMD.AvoidCatchingGenericException")
+	private void voxelize(final CompletableFuture<long[]> voxels, final float[] vertices, final int[] faces,
+						  final int originX, final int originY, final int originZ, final Cuboid bounds) {
+		try {
+			voxels.complete(MeshVoxelizer.voxelize(vertices, faces, originX, originY, originZ, bounds, maxBlocks, voxels::isDone));
+		} catch (final RuntimeException e) {
+			voxels.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * Get the region containing all vertices, limited to the height of the world.
+	 */
+	private static Cuboid bounds(final World world, final float[] vertices, final int originX, final int originY, final int originZ) {
+		if (vertices.length == 0) {
+			throw new IllegalArgumentException("The mesh has no vertices");
+		}
+		final int[] min = {Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE};
+		final int[] max = {Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE};
+		for (int i = 0; i < vertices.length; i++) {
+			if (!(Math.abs(vertices[i]) <= MAX_COORDINATE)) {
+				throw new IllegalArgumentException("Vertex " + i / 3 + " is further than " + MAX_COORDINATE + " blocks from the origin");
+			}
+			final int block = (int) Math.floor(vertices[i] + 0.5);
+			min[i % 3] = Math.min(min[i % 3], block);
+			max[i % 3] = Math.max(max[i % 3], block);
+		}
+		if ((long) max[0] - min[0] >= MeshVoxelizer.MAX_SIZE || (long) max[2] - min[2] >= MeshVoxelizer.MAX_SIZE) {
+			throw new IllegalArgumentException("The mesh is wider than " + MeshVoxelizer.MAX_SIZE + " blocks");
+		}
+		if ((long) max[1] - min[1] >= MeshVoxelizer.MAX_HEIGHT) {
+			throw new IllegalArgumentException("The mesh is higher than " + MeshVoxelizer.MAX_HEIGHT + " blocks");
+		}
+		final int minY = (int) Math.max((long) originY + min[1], world.getMinHeight());
+		final int maxY = (int) Math.min((long) originY + max[1], world.getMaxHeight() - 1);
+		if (minY > maxY) {
+			throw new IllegalArgumentException("The mesh is outside the height of the world");
+		}
+		return new Cuboid(world, Math.addExact(originX, min[0]), minY, Math.addExact(originZ, min[2]),
+				Math.addExact(originX, max[0]), maxY, Math.addExact(originZ, max[2]));
+	}
+
+	private static float[] floats(final byte[] bytes) {
+		final float[] floats = new float[bytes.length / Float.BYTES];
+		ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(floats);
+		return floats;
+	}
+
+	private static int[] ints(final byte[] bytes) {
+		final int[] ints = new int[bytes.length / Integer.BYTES];
+		ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(ints);
+		return ints;
+	}
+}
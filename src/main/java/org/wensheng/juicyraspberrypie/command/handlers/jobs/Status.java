@@ -0,0 +1,31 @@
+package org.wensheng.juicyraspberrypie.command.handlers.jobs;
+
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.job.JobManager;
+
+/**
+ * Get the state of a job: RUNNING, COMPLETED, CANCELLED or FAILED.
+ */
+public class Status implements Handler {
+	/**
+	 * The job manager.
+	 */
+	private final JobManager jobManager;
+
+	/**
+	 * Create a new Status handler.
+	 *
+	 * @param jobManager The job manager.
+	 */
+	public Status(final JobManager jobManager) {
+		this.jobManager = jobManager;
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		return jobManager.get(sessionAttachment, instruction.nextInt()).getState().name();
+	}
+}
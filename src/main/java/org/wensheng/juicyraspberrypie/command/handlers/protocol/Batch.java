@@ -0,0 +1,30 @@
+package org.wensheng.juicyraspberrypie.command.handlers.protocol;
+
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+
+/**
+ * The header of a batch, {@code batch(count,)}, followed by the given number of commands.
+ * The connection collects the commands and executes them back-to-back in the same tick, answering with a single
+ * response: "OK" if every command answered "OK", otherwise the answers of all commands separated by '|'.
+ * The header itself is never executed.
+ */
+public class Batch implements Handler {
+	/**
+	 * The largest number of commands in a batch.
+	 */
+	public static final int MAX_SIZE = 4096;
+
+	/**
+	 * Default Batch constructor.
+	 */
+	public Batch() {
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		throw new IllegalStateException("A batch header is not executed on its own");
+	}
+}
@@ -0,0 +1,31 @@
+package org.wensheng.juicyraspberrypie.command.handlers.protocol;
+
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.Registry;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+
+/**
+ * Get all commands in the order of their ids, for clients of the binary protocol.
+ */
+public class Commands implements Handler {
+	/**
+	 * The registry to get the commands from.
+	 */
+	private final Registry registry;
+
+	/**
+	 * Create a new Commands handler.
+	 *
+	 * @param registry The registry to get the commands from.
+	 */
+	public Commands(final Registry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		return String.join(",", registry.getCommands());
+	}
+}
@@ -0,0 +1,31 @@
+package org.wensheng.juicyraspberrypie.command.handlers.protocol;
+
+import org.bukkit.Material;
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Get all materials in the order of their ordinals, for clients of the binary protocol.
+ */
+public class Materials implements Handler {
+	/**
+	 * The names of all materials, joined once as they never change while the server is running.
+	 */
+	private final String names = Arrays.stream(Material.values()).map(Material::name).collect(Collectors.joining(","));
+
+	/**
+	 * Default Materials constructor.
+	 */
+	public Materials() {
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		return names;
+	}
+}
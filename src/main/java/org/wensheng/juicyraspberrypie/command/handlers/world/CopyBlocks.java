@@ -0,0 +1,179 @@
+package org.wensheng.juicyraspberrypie.command.handlers.world;
+
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.data.BlockData;
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.CuboidCursor;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.BulkBlockWriter;
+import org.wensheng.juicyraspberrypie.command.block.RegionSnapshot;
+import org.wensheng.juicyraspberrypie.command.block.TileContent;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copy or move the blocks between two locations so that the lowest corner ends up at a third location, optionally in
+ * the world named by the next argument. The text of signs and the items of containers are copied as well.
+ * The whole region is read before it is written, so source and destination may overlap. When moving, the source is
+ * cleared first. The result is the number of blocks written to the destination.
+ * The undo journal only records block data, so undoing a copy or move does not bring back the content of block
+ * entities.
+ */
+public class CopyBlocks implements Handler {
+	/**
+	 * The server to look up destination worlds.
+	 */
+	private final Server server;
+
+	/**
+	 * Whether the source is cleared.
+	 */
+	private final boolean move;
+
+	/**
+	 * The largest number of chunks a snapshot of the source is taken of.
+	 */
+	private final int maxChunks;
+
+	/**
+	 * The largest number of blocks copied by one command.
+	 */
+	private final long maxBlocks;
+
+	/**
+	 * Create a new CopyBlocks handler.
+	 *
+	 * @param server    The server to look up destination worlds.
+	 * @param move      Whether the source is cleared, moving the blocks instead of copying them.
+	 * @param maxChunks The largest number of chunks a snapshot of the source is taken of.
+	 * @param maxBlocks The largest number of blocks copied by one command.
+	 */
+	public CopyBlocks(final Server server, final boolean move, final int maxChunks, final long maxBlocks) {
+		this.server = server;
+		this.move = move;
+		this.maxChunks = maxChunks;
+		this.maxBlocks = maxBlocks;
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final Cuboid source = instruction.nextCuboid();
+		final Location origin = instruction.nextLocation();
+		final World world = destinationWorld(origin, instruction);
+		final Cuboid destination = destination(source, origin, world);
+		if (source.getVolume() > maxBlocks) {
+			throw new IllegalArgumentException("Region has more than " + maxBlocks + " blocks");
+		}
+		final int dx = source.getMinX() - destination.getMinX();
+		final int dy = source.getMinY() - destination.getMinY();
+		final int dz = source.getMinZ() - destination.getMinZ();
+
+		final RegionSnapshot snapshot = new RegionSnapshot(source, maxChunks);
+		final Map<Long, TileContent> tiles = copyTiles(source);
+
+		if (move) {
+			clear(sessionAttachment, source);
+		}
+		final BulkBlockWriter writer = BulkBlockWriter.forSession(sessionAttachment, destination,
+				(x, y, z) -> snapshot.getType(x + dx, y + dy, z + dz) != Material.VOID_AIR);
+		final CuboidCursor cursor = destination.cursor();
+		while (cursor.next()) {
+			final BlockData blockData = snapshot.getBlockData(cursor.getX() + dx, cursor.getY() + dy, cursor.getZ() + dz);
+			if (blockData.getMaterial() != Material.VOID_AIR) {
+				writer.set(cursor.getX(), cursor.getY(), cursor.getZ(), blockData);
+			}
+		}
+		writer.finish();
+		for (final Map.Entry<Long, TileContent> tile : tiles.entrySet()) {
+			final long index = tile.getKey();
+			final int y = (int) (index % source.getSizeY());
+			final int z = (int) (index / source.getSizeY() % source.getSizeZ());
+			final int x = (int) (index / source.getSizeY() / source.getSizeZ());
+			tile.getValue().applyTo(world.getBlockAt(destination.getMinX() + x, destination.getMinY() + y,
+					destination.getMinZ() + z).getState());
+		}
+		return Integer.toString(writer.getWritten());
+	}
+
+	/**
+	 * Read the source and the destination region of a command.
+	 *
+	 * @param sessionAttachment the session attachment
+	 * @param instruction       the instruction
+	 * @return the source and the destination
+	 */
+	@Override
+	public @NotNull List<Cuboid> getRegions(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final Cuboid source = instruction.nextCuboid();
+		final Location origin = instruction.nextLocation();
+		return List.of(source, destination(source, origin, destinationWorld(origin, instruction)));
+	}
+
+	private World destinationWorld(final Location origin, final Instruction instruction) {
+		if (!instruction.hasNext()) {
+			return origin.getWorld();
+		}
+		final String worldName = instruction.next();
+		final World world = server.getWorld(worldName);
+		if (world == null) {
+			throw new IllegalArgumentException("Unknown world " + worldName);
+		}
+		return world;
+	}
+
+	private static Cuboid destination(final Cuboid source, final Location origin, final World world) {
+		return new Cuboid(world, origin.getBlockX(), origin.getBlockY(), origin.getBlockZ(),
+				source.getMaxX() + origin.getBlockX() - source.getMinX(),
+				source.getMaxY() + origin.getBlockY() - source.getMinY(),
+				source.getMaxZ() + origin.getBlockZ() - source.getMinZ());
+	}
+
+	/**
+	 * Copy the content of the block entities in the region.
+	 *
+	 * @param region the region
+	 * @return the content by the index of the block in x, z, y order
+	 */
+	private static Map<Long, TileContent> copyTiles(final Cuboid region) {
+		final Map<Long, TileContent> tiles = new HashMap<>();
+		final World world = region.getWorld();
+		for (int chunkX = region.getMinX() >> 4; chunkX <= region.getMaxX() >> 4; chunkX++) {
+			for (int chunkZ = region.getMinZ() >> 4; chunkZ <= region.getMaxZ() >> 4; chunkZ++) {
+				final Chunk chunk = world.getChunkAt(chunkX, chunkZ);
+				for (final BlockState state : chunk.getTileEntities()) {
+					final TileContent content = region.contains(state.getX(), state.getY(), state.getZ()) ? TileContent.copyOf(state) : null;
+					if (content != null) {
+						tiles.put(region.indexOf(state.getX(), state.getY(), state.getZ()), content);
+					}
+				}
+			}
+		}
+		return tiles;
+	}
+
+	/**
+	 * Replace the blocks of the region with air.
+	 *
+	 * @param sessionAttachment the session, for diff mode and the undo journal
+	 * @param region            the region
+	 */
+	private static void clear(final SessionAttachment sessionAttachment, final Cuboid region) {
+		final BlockData air = Material.AIR.createBlockData();
+		final BulkBlockWriter writer = BulkBlockWriter.forSession(sessionAttachment, region);
+		final CuboidCursor cursor = region.cursor();
+		while (cursor.next()) {
+			writer.set(cursor.getX(), cursor.getY(), cursor.getZ(), air);
+		}
+		writer.finish();
+	}
+}
@@ -1,27 +1,148 @@
 package org.wensheng.juicyraspberrypie.command.handlers.world;
 
 import org.bukkit.Material;
-import org.codehaus.plexus.util.StringUtils;
+import org.bukkit.World;
 import org.jetbrains.annotations.NotNull;
-import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.AsyncHandler;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
 import org.wensheng.juicyraspberrypie.command.Instruction;
 import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.RegionSnapshot;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Get the blocks between two locations.
+ * Larger regions are read from chunk snapshots on a worker thread instead of the server main thread.
+ * The blocks are formatted while they are read, in x, z, y order, without collecting them first.
  */
-public class GetBlocks implements Handler {
+public class GetBlocks implements AsyncHandler {
 	/**
-	 * Default GetBlocks constructor.
+	 * The number of blocks below which reading the world directly is cheaper than taking chunk snapshots.
 	 */
-	public GetBlocks() {
+	private static final long SNAPSHOT_THRESHOLD = 4096;
+
+	/**
+	 * The executor to read the snapshots with.
+	 */
+	private final Executor executor;
+
+	/**
+	 * The largest number of blocks read by one command.
+	 */
+	private final long maxBlocks;
+
+	/**
+	 * The largest number of chunks a snapshot is taken of.
+	 */
+	private final int maxChunks;
+
+	/**
+	 * Create a new GetBlocks handler.
+	 *
+	 * @param executor  The executor to read the snapshots with.
+	 * @param maxBlocks The largest number of blocks read by one command.
+	 * @param maxChunks The largest number of chunks a snapshot is taken of.
+	 */
+	public GetBlocks(final Executor executor, final long maxBlocks, final int maxChunks) {
+		this.executor = executor;
+		this.maxBlocks = maxBlocks;
+		this.maxChunks = maxChunks;
 	}
 
 	@Override
-	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
-		final List<Material> list = instruction.nextLocationsBetween().stream().map(loc -> loc.getBlock().getType()).toList();
-		return StringUtils.join(list.iterator(), ",");
+	public @NotNull List<Cuboid> getRegions(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		return List.of(instruction.nextCuboid());
+	}
+
+	@Override
+	public @NotNull CompletableFuture<String> handleAsync(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final Cuboid cuboid = instruction.nextCuboid();
+		if (cuboid.getVolume() > maxBlocks) {
+			throw new IllegalArgumentException("Region has more than " + maxBlocks + " blocks");
+		}
+		final Format format = format(instruction);
+		if (cuboid.getVolume() < SNAPSHOT_THRESHOLD) {
+			final World world = cuboid.getWorld();
+			read(cuboid, (x, y, z) -> world.getBlockAt(x, y, z).getType(), format);
+			return CompletableFuture.completedFuture(format.finish());
+		}
+		final RegionSnapshot snapshot = new RegionSnapshot(cuboid, maxChunks);
+		return CompletableFuture.supplyAsync(() -> {
+			read(cuboid, snapshot::getType, format);
+			return format.finish();
+		}, executor);
+	}
+
+	private static void read(final Cuboid cuboid, final Types types, final Format format) {
+		for (int x = cuboid.getMinX(); x <= cuboid.getMaxX(); x++) {
+			for (int z = cuboid.getMinZ(); z <= cuboid.getMaxZ(); z++) {
+				for (int y = cuboid.getMinY(); y <= cuboid.getMaxY(); y++) {
+					format.add(types.getType(x, y, z));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read the formatting arguments that follow the cuboid and create the format that collects the result.
+	 * The format may be used on a worker thread.
+	 *
+	 * @param instruction the instruction
+	 * @return the format, to be given the materials in x, z, y order
+	 */
+	protected Format format(@NotNull final Instruction instruction) {
+		final StringBuilder result = new StringBuilder();
+		return new Format() {
+			@Override
+			public void add(final Material material) {
+				if (!result.isEmpty()) {
+					result.append(',');
+				}
+				result.append(material.name());
+			}
+
+			@Override
+			public String finish() {
+				return result.toString();
+			}
+		};
+	}
+
+	/**
+	 * Reads the material of a block.
+	 */
+	@FunctionalInterface
+	private interface Types {
+		/**
+		 * Get the material of a block.
+		 *
+		 * @param x the x coordinate
+		 * @param y the y coordinate
+		 * @param z the z coordinate
+		 * @return the material
+		 */
+		Material getType(int x, int y, int z);
+	}
+
+	/**
+	 * Turns the materials of a region into the result of a command, one block at a time.
+	 */
+	protected interface Format {
+		/**
+		 * Add the material of the next block.
+		 *
+		 * @param material the material
+		 */
+		void add(Material material);
+
+		/**
+		 * Get the result for all materials added.
+		 *
+		 * @return the result
+		 */
+		String finish();
 	}
 }
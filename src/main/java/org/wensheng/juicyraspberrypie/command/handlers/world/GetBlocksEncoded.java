@@ -0,0 +1,56 @@
+package org.wensheng.juicyraspberrypie.command.handlers.world;
+
+import org.bukkit.Material;
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.block.RunLengthCodec;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+
+/**
+ * Get the blocks between two locations in a compact form: the distinct materials separated by ',', a '|', and the
+ * base64 encoded runs of palette indices (see {@link RunLengthCodec}) in the same x, z, y order as {@code world.getBlocks}.
+ * If the argument after the locations is "true", the runs are compressed with deflate.
+ */
+public class GetBlocksEncoded extends GetBlocks {
+	/**
+	 * Create a new GetBlocksEncoded handler.
+	 *
+	 * @param executor  The executor to read the snapshots with.
+	 * @param maxBlocks The largest number of blocks read by one command.
+	 * @param maxChunks The largest number of chunks a snapshot is taken of.
+	 */
+	public GetBlocksEncoded(final Executor executor, final long maxBlocks, final int maxChunks) {
+		super(executor, maxBlocks, maxChunks);
+	}
+
+	@Override
+	protected Format format(@NotNull final Instruction instruction) {
+		final boolean compress = Boolean.parseBoolean(instruction.next());
+		final int[] paletteNumbers = new int[Material.values().length];
+		final List<Material> palette = new ArrayList<>();
+		final RunLengthCodec.Encoder encoder = new RunLengthCodec.Encoder();
+		return new Format() {
+			@Override
+			public void add(final Material material) {
+				final int ordinal = material.ordinal();
+				if (paletteNumbers[ordinal] == 0) {
+					palette.add(material);
+					paletteNumbers[ordinal] = palette.size();
+				}
+				encoder.add(paletteNumbers[ordinal] - 1);
+			}
+
+			@Override
+			public String finish() {
+				final byte[] runs = encoder.toByteArray();
+				return palette.stream().map(Material::name).collect(Collectors.joining(",")) + '|'
+						+ Base64.getEncoder().encodeToString(compress ? RunLengthCodec.deflate(runs) : runs);
+			}
+		};
+	}
+}
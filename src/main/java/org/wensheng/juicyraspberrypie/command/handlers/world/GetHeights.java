@@ -0,0 +1,110 @@
+package org.wensheng.juicyraspberrypie.command.handlers.world;
+
+import org.bukkit.HeightMap;
+import org.bukkit.World;
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.AsyncHandler;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.RegionSnapshot;
+import org.wensheng.juicyraspberrypie.command.block.RunLengthCodec;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Get the height of the highest block of every column between two x and z coordinates, optionally for the height map
+ * named by the next argument. The columns are read from chunk snapshots on a worker thread.
+ * The heights are separated by ',' in x, z order, z changing fastest. If the argument after the height map is "true",
+ * the result is the lowest possible height, a '|', and the base64 encoded, compressed runs of the heights minus that
+ * height (see {@link RunLengthCodec}).
+ */
+public class GetHeights implements AsyncHandler {
+	/**
+	 * The executor to read the snapshots with.
+	 */
+	private final Executor executor;
+
+	/**
+	 * The largest number of chunks a snapshot is taken of.
+	 */
+	private final int maxChunks;
+
+	/**
+	 * Create a new GetHeights handler.
+	 *
+	 * @param executor  The executor to read the snapshots with.
+	 * @param maxChunks The largest number of chunks a snapshot is taken of.
+	 */
+	public GetHeights(final Executor executor, final int maxChunks) {
+		this.executor = executor;
+		this.maxChunks = maxChunks;
+	}
+
+	@Override
+	public @NotNull List<Cuboid> getRegions(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		return List.of(nextColumns(sessionAttachment, instruction));
+	}
+
+	@Override
+	public @NotNull CompletableFuture<String> handleAsync(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final Cuboid columns = nextColumns(sessionAttachment, instruction);
+		final HeightMap heightMap = instruction.hasNext()
+				? HeightMap.valueOf(instruction.next().toUpperCase(Locale.ROOT)) : HeightMap.MOTION_BLOCKING;
+		if (heightMap == HeightMap.OCEAN_FLOOR_WG || heightMap == HeightMap.WORLD_SURFACE_WG) {
+			throw new IllegalArgumentException("Height map " + heightMap + " is only used during world generation");
+		}
+		final boolean packed = instruction.hasNext() && Boolean.parseBoolean(instruction.next());
+		final int base = columns.getWorld().getMinHeight() - 1;
+		final RegionSnapshot snapshot = new RegionSnapshot(columns, maxChunks);
+		return CompletableFuture.supplyAsync(() -> {
+			final int[] heights = new int[Math.toIntExact((long) columns.getSizeX() * columns.getSizeZ())];
+			int index = 0;
+			for (int x = columns.getMinX(); x <= columns.getMaxX(); x++) {
+				for (int z = columns.getMinZ(); z <= columns.getMaxZ(); z++) {
+					heights[index++] = snapshot.getHighestBlockYAt(x, z, heightMap);
+				}
+			}
+			return packed ? pack(heights, base) : join(heights);
+		}, executor);
+	}
+
+	/**
+	 * Read the columns of a command from two x and z coordinates, covering the whole height of the world of the session.
+	 *
+	 * @param sessionAttachment the session attachment
+	 * @param instruction       the instruction
+	 * @return the columns
+	 */
+	private static Cuboid nextColumns(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final int x1 = instruction.nextInt();
+		final int z1 = instruction.nextInt();
+		final int x2 = instruction.nextInt();
+		final int z2 = instruction.nextInt();
+		final World world = sessionAttachment.getWorld();
+		return new Cuboid(world, x1, world.getMinHeight(), z1, x2, world.getMaxHeight() - 1, z2);
+	}
+
+	private static String join(final int[] heights) {
+		final StringBuilder builder = new StringBuilder(heights.length * 4);
+		for (int i = 0; i < heights.length; i++) {
+			if (i > 0) {
+				builder.append(',');
+			}
+			builder.append(heights[i]);
+		}
+		return builder.toString();
+	}
+
+	private static String pack(final int[] heights, final int base) {
+		final int[] offsets = new int[heights.length];
+		for (int i = 0; i < heights.length; i++) {
+			offsets[i] = heights[i] - base;
+		}
+		return base + "|" + Base64.getEncoder().encodeToString(RunLengthCodec.encode(offsets, true));
+	}
+}
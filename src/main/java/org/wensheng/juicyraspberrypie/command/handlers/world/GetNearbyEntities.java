@@ -23,7 +23,7 @@ public class GetNearbyEntities implements Handler {
 	@SuppressWarnings("PMD.AvoidLiteralsInIfCondition")
 	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
 		final Location loc = instruction.nextLocation();
-		final double nearbyDistance = instruction.hasNext() ? Double.parseDouble(instruction.next()) : 10.0;
+		final double nearbyDistance = instruction.hasNext() ? instruction.nextDouble() : 10.0;
 		final Collection<Entity> nearbyEntities = loc.getNearbyEntities(nearbyDistance, 5.0, nearbyDistance);
 		final StringBuilder stringBuilder = new StringBuilder();
 		for (final Entity entity : nearbyEntities) {
@@ -0,0 +1,89 @@
+package org.wensheng.juicyraspberrypie.command.handlers.world;
+
+import org.bukkit.plugin.java.JavaPlugin;
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.AsyncHandler;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.ChunkPreloader;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Load the chunks between pairs of locations in the background and keep them loaded until the next preload of the
+ * session or until the session is closed. Without arguments, the chunks are released.
+ * The result is the number of chunks kept loaded, sent once all of them are loaded.
+ */
+public class Preload implements AsyncHandler {
+	/**
+	 * The preloader loading the chunks.
+	 */
+	private final ChunkPreloader preloader;
+
+	/**
+	 * Create a new Preload handler.
+	 *
+	 * @param preloader The preloader loading the chunks.
+	 */
+	public Preload(final ChunkPreloader preloader) {
+		this.preloader = preloader;
+	}
+
+	@Override
+	public @NotNull CompletableFuture<String> handleAsync(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final HeldChunks held = (HeldChunks) sessionAttachment.getContext(this).orElseThrow();
+		final List<Cuboid> regions = new ArrayList<>();
+		while (instruction.hasNext()) {
+			regions.add(instruction.nextCuboid());
+		}
+		if (regions.isEmpty()) {
+			held.close();
+			return CompletableFuture.completedFuture("0");
+		}
+		return preloader.load(regions).thenApply(tickets -> {
+			if (sessionAttachment.isClosed()) {
+				tickets.close();
+			} else {
+				held.hold(tickets);
+			}
+			return Integer.toString(tickets.size());
+		});
+	}
+
+	@Override
+	public @NotNull Optional<Object> createContext(@NotNull final JavaPlugin plugin, @NotNull final SessionAttachment sessionAttachment) {
+		return Optional.of(new HeldChunks());
+	}
+
+	/**
+	 * The chunks kept loaded for a session.
+	 */
+	private static final class HeldChunks implements AutoCloseable {
+		/**
+		 * The tickets of the chunks, or null.
+		 */
+		private ChunkPreloader.Tickets tickets;
+
+		/**
+		 * Keep the chunks of new tickets loaded instead of the chunks held so far.
+		 *
+		 * @param newTickets the tickets
+		 */
+		private void hold(final ChunkPreloader.Tickets newTickets) {
+			close();
+			tickets = newTickets;
+		}
+
+		@Override
+		public void close() {
+			if (tickets != null) {
+				tickets.close();
+				tickets = null;
+			}
+		}
+	}
+}
@@ -2,34 +2,60 @@ package org.wensheng.juicyraspberrypie.command.handlers.world;
 
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
-import org.bukkit.block.data.BlockData;
-import org.bukkit.block.data.Directional;
 import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
 import org.wensheng.juicyraspberrypie.command.HandlerVoid;
 import org.wensheng.juicyraspberrypie.command.Instruction;
 import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.BlockDataCache;
+import org.wensheng.juicyraspberrypie.command.block.BulkBlockWriter;
 
 /**
  * Set a block at a location.
+ * In diff mode (see {@link SessionAttachment#isDiffMode()}) a block that already matches is left alone, and the result
+ * is the number of blocks changed instead of "OK".
  */
 public class SetBlock implements HandlerVoid {
 	/**
-	 * Default SetBlock constructor.
+	 * The cache for materials and block data.
 	 */
-	public SetBlock() {
+	protected final BlockDataCache blockDataCache;
+
+	/**
+	 * Create a new SetBlock handler.
+	 *
+	 * @param blockDataCache The cache for materials and block data.
+	 */
+	public SetBlock(final BlockDataCache blockDataCache) {
+		this.blockDataCache = blockDataCache;
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final int changed = setBlocks(sessionAttachment, instruction);
+		return sessionAttachment.isDiffMode() ? Integer.toString(changed) : OK;
 	}
 
 	@Override
 	public void handleVoid(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		setBlocks(sessionAttachment, instruction);
+	}
+
+	/**
+	 * Set the blocks of the instruction.
+	 *
+	 * @param sessionAttachment the session attachment
+	 * @param instruction       the instruction
+	 * @return the number of blocks changed
+	 */
+	protected int setBlocks(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
 		final Location loc = instruction.nextLocation();
-		Material material = Material.matchMaterial(instruction.next());
-		if (material == null) {
-			material = Material.valueOf("SANDSTONE");
-		}
-		final int facing = instruction.hasNext() ? Integer.parseInt(instruction.next()) : 0;
-		final BlockFace blockFace = BlockFace.values()[facing];
-		updateBlock(loc, material, blockFace);
+		final Material material = blockDataCache.material(instruction.next(), Material.SANDSTONE);
+		final int facing = instruction.hasNext() ? instruction.nextInt() : 0;
+		final BlockFace blockFace = blockDataCache.facing(facing);
+		return updateBlock(loc, material, blockFace, sessionAttachment) ? 1 : 0;
 	}
 
 	/**
@@ -38,12 +64,27 @@ public class SetBlock implements HandlerVoid {
 	 * @param loc       the location
 	 * @param blockType the block type
 	 * @param blockFace the block face
+	 * @param session   the session, for diff mode and the undo journal
+	 * @return true if the block was changed
+	 */
+	protected boolean updateBlock(final Location loc, final Material blockType, final BlockFace blockFace, final SessionAttachment session) {
+		return updateBlock(loc.getBlock(), blockType, blockFace, session);
+	}
+
+	/**
+	 * Update the block with the specified block type and block face.
+	 *
+	 * @param block     the block
+	 * @param blockType the block type
+	 * @param blockFace the block face
+	 * @param session   the session, for diff mode and the undo journal
+	 * @return true if the block was changed
 	 */
-	protected void updateBlock(final Location loc, final Material blockType, final BlockFace blockFace) {
-		final BlockData blockData = blockType.createBlockData();
-		if (blockData instanceof Directional) {
-			((Directional) blockData).setFacing(blockFace);
-		}
-		loc.getBlock().setBlockData(blockData);
+	protected boolean updateBlock(final Block block, final Material blockType, final BlockFace blockFace, final SessionAttachment session) {
+		final Cuboid cuboid = new Cuboid(block.getWorld(), block.getX(), block.getY(), block.getZ(), block.getX(), block.getY(), block.getZ());
+		final BulkBlockWriter writer = BulkBlockWriter.forSession(session, cuboid);
+		final boolean changed = writer.set(block.getX(), block.getY(), block.getZ(), blockDataCache.blockData(blockType, blockFace));
+		writer.finish();
+		return changed;
 	}
 }
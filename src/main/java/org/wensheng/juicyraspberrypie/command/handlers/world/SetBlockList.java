@@ -0,0 +1,67 @@
+package org.wensheng.juicyraspberrypie.command.handlers.world;
+
+import org.bukkit.block.data.BlockData;
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.CuboidCursor;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.BlockDataCache;
+import org.wensheng.juicyraspberrypie.command.block.BlockList;
+import org.wensheng.juicyraspberrypie.command.block.BulkBlockWriter;
+import org.wensheng.juicyraspberrypie.command.block.RunLengthCodec;
+
+import java.util.List;
+
+/**
+ * Set a region of different blocks at once, the counterpart of {@link GetBlocksEncoded}.
+ * The arguments are the lowest corner, the size along x, y and z, whether the runs are compressed, whether air should
+ * be skipped, the base64 encoded runs of palette indices in x, z, y order (see {@link RunLengthCodec}), and the
+ * materials of the palette. The result is the number of blocks set; in diff mode, blocks that already match are not
+ * counted. Regions are written in one tick, so their size is limited; larger regions are set with
+ * {@code jobs.setBlockList}.
+ */
+public class SetBlockList implements Handler {
+	/**
+	 * The cache for materials and block data.
+	 */
+	private final BlockDataCache blockDataCache;
+
+	/**
+	 * The largest number of blocks set by one command.
+	 */
+	private final long maxBlocks;
+
+	/**
+	 * Create a new SetBlockList handler.
+	 *
+	 * @param blockDataCache The cache for materials and block data.
+	 * @param maxBlocks      The largest number of blocks set by one command.
+	 */
+	public SetBlockList(final BlockDataCache blockDataCache, final long maxBlocks) {
+		this.blockDataCache = blockDataCache;
+		this.maxBlocks = maxBlocks;
+	}
+
+	@Override
+	public @NotNull List<Cuboid> getRegions(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		return List.of(BlockList.nextRegion(instruction));
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final BlockList blocks = BlockList.read(instruction, blockDataCache, maxBlocks);
+		final Cuboid cuboid = blocks.getCuboid();
+		final BulkBlockWriter writer = BulkBlockWriter.forSession(sessionAttachment, cuboid, blocks::covers);
+		final CuboidCursor cursor = cuboid.cursor();
+		while (cursor.next()) {
+			final BlockData blockData = blocks.get(cursor.getX(), cursor.getY(), cursor.getZ());
+			if (blockData != null) {
+				writer.set(cursor.getX(), cursor.getY(), cursor.getZ(), blockData);
+			}
+		}
+		writer.finish();
+		return Integer.toString(writer.getWritten());
+	}
+}
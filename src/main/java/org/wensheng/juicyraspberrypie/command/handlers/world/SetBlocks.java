@@ -1,34 +1,50 @@
 package org.wensheng.juicyraspberrypie.command.handlers.world;
 
-import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
 import org.jetbrains.annotations.NotNull;
-import org.wensheng.juicyraspberrypie.command.HandlerVoid;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.CuboidCursor;
 import org.wensheng.juicyraspberrypie.command.Instruction;
 import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.BlockDataCache;
+import org.wensheng.juicyraspberrypie.command.block.BulkBlockWriter;
 
 import java.util.List;
 
 /**
  * Set blocks between two locations
  */
-public class SetBlocks extends SetBlock implements HandlerVoid {
+public class SetBlocks extends SetBlock {
 	/**
-	 * Default SetBlocks constructor.
+	 * Create a new SetBlocks handler.
+	 *
+	 * @param blockDataCache The cache for materials and block data.
 	 */
-	public SetBlocks() {
-		super();
+	public SetBlocks(final BlockDataCache blockDataCache) {
+		super(blockDataCache);
 	}
 
 	@Override
-	public void handleVoid(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
-		final List<Location> locations = instruction.nextLocationsBetween();
-		final Material mat = Material.matchMaterial(instruction.next());
-		final Material material = mat == null ? Material.valueOf("SANDSTONE") : mat;
-		final int facing = instruction.hasNext() ? Integer.parseInt(instruction.next()) : 0;
-		final BlockFace blockFace = BlockFace.values()[facing];
+	public @NotNull List<Cuboid> getRegions(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		return List.of(instruction.nextCuboid());
+	}
+
+	@Override
+	protected int setBlocks(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final Cuboid cuboid = instruction.nextCuboid();
+		final Material material = blockDataCache.material(instruction.next(), Material.SANDSTONE);
+		final int facing = instruction.hasNext() ? instruction.nextInt() : 0;
+		final BlockFace blockFace = blockDataCache.facing(facing);
 
-		locations.forEach(loc -> updateBlock(loc, material, blockFace));
+		final BulkBlockWriter writer = BulkBlockWriter.forSession(sessionAttachment, cuboid);
+		final BlockData blockData = blockDataCache.blockData(material, blockFace);
+		final CuboidCursor cursor = cuboid.cursor();
+		while (cursor.next()) {
+			writer.set(cursor.getX(), cursor.getY(), cursor.getZ(), blockData);
+		}
+		writer.finish();
+		return writer.getWritten();
 	}
 }
@@ -0,0 +1,35 @@
+package org.wensheng.juicyraspberrypie.command.handlers.world;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.block.BlockDataCache;
+import org.wensheng.juicyraspberrypie.command.shape.Cylinder;
+
+/**
+ * Set the blocks of an upright cylinder. The arguments are the center of the bottom layer, the radius, the height,
+ * the material, and optionally whether the cylinder is a hollow tube and the thickness of its wall (default 1).
+ */
+public class SetCylinder extends SetShape {
+	/**
+	 * Create a new SetCylinder handler.
+	 *
+	 * @param blockDataCache The cache for materials and block data.
+	 * @param maxBlocks      The largest number of blocks in the bounds of a shape.
+	 */
+	public SetCylinder(final BlockDataCache blockDataCache, final long maxBlocks) {
+		super(blockDataCache, maxBlocks);
+	}
+
+	@Override
+	protected ShapeRequest nextShape(@NotNull final Instruction instruction) {
+		final Location base = instruction.nextLocation();
+		final double radius = instruction.nextDouble();
+		final int height = instruction.nextInt();
+		final Material material = nextMaterial(instruction);
+		final boolean hollow = instruction.hasNext() && Boolean.parseBoolean(instruction.next());
+		final double thickness = instruction.hasNext() ? instruction.nextDouble() : 1;
+		return new ShapeRequest(new Cylinder(base, radius, height, hollow ? radius - thickness : 0), material);
+	}
+}
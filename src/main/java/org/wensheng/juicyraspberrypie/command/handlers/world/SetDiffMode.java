@@ -0,0 +1,23 @@
+package org.wensheng.juicyraspberrypie.command.handlers.world;
+
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.HandlerVoid;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+
+/**
+ * Turn diff mode of the session on or off. In diff mode, block-setting commands skip blocks that already match and
+ * answer the number of blocks they changed.
+ */
+public class SetDiffMode implements HandlerVoid {
+	/**
+	 * Default SetDiffMode constructor.
+	 */
+	public SetDiffMode() {
+	}
+
+	@Override
+	public void handleVoid(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		sessionAttachment.setDiffMode(Boolean.parseBoolean(instruction.next()));
+	}
+}
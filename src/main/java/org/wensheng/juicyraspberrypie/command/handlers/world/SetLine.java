@@ -0,0 +1,32 @@
+package org.wensheng.juicyraspberrypie.command.handlers.world;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.block.BlockDataCache;
+import org.wensheng.juicyraspberrypie.command.shape.Line;
+
+/**
+ * Set the blocks of a line. The arguments are the two ends, the material, and optionally the thickness (default 1).
+ */
+public class SetLine extends SetShape {
+	/**
+	 * Create a new SetLine handler.
+	 *
+	 * @param blockDataCache The cache for materials and block data.
+	 * @param maxBlocks      The largest number of blocks in the bounds of a shape.
+	 */
+	public SetLine(final BlockDataCache blockDataCache, final long maxBlocks) {
+		super(blockDataCache, maxBlocks);
+	}
+
+	@Override
+	protected ShapeRequest nextShape(@NotNull final Instruction instruction) {
+		final Location start = instruction.nextLocation();
+		final Location end = instruction.nextLocation();
+		final Material material = nextMaterial(instruction);
+		final double thickness = instruction.hasNext() ? instruction.nextDouble() : 1;
+		return new ShapeRequest(new Line(start, end, thickness), material);
+	}
+}
@@ -0,0 +1,39 @@
+package org.wensheng.juicyraspberrypie.command.handlers.world;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.block.BlockDataCache;
+import org.wensheng.juicyraspberrypie.command.shape.Polygon;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Set the blocks of a flat polygon. The arguments are the material, whether the polygon is filled, the thickness,
+ * and the points as the remaining arguments.
+ */
+public class SetPolygon extends SetShape {
+	/**
+	 * Create a new SetPolygon handler.
+	 *
+	 * @param blockDataCache The cache for materials and block data.
+	 * @param maxBlocks      The largest number of blocks in the bounds of a shape.
+	 */
+	public SetPolygon(final BlockDataCache blockDataCache, final long maxBlocks) {
+		super(blockDataCache, maxBlocks);
+	}
+
+	@Override
+	protected ShapeRequest nextShape(@NotNull final Instruction instruction) {
+		final Material material = nextMaterial(instruction);
+		final boolean filled = Boolean.parseBoolean(instruction.next());
+		final double thickness = instruction.nextDouble();
+		final List<Location> vertices = new ArrayList<>();
+		while (instruction.hasNext(3)) {
+			vertices.add(instruction.nextLocation());
+		}
+		return new ShapeRequest(new Polygon(vertices, filled, thickness), material);
+	}
+}
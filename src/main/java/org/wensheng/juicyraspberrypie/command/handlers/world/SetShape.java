@@ -0,0 +1,82 @@
+package org.wensheng.juicyraspberrypie.command.handlers.world;
+
+import org.bukkit.Material;
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.BlockDataCache;
+import org.wensheng.juicyraspberrypie.command.block.BulkBlockWriter;
+import org.wensheng.juicyraspberrypie.command.shape.Shape;
+
+import java.util.List;
+
+/**
+ * Set the blocks of a shape. The result is the number of blocks set.
+ */
+public abstract class SetShape implements Handler {
+	/**
+	 * The cache for materials and block data.
+	 */
+	protected final BlockDataCache blockDataCache;
+
+	/**
+	 * The largest number of blocks in the bounds of a shape.
+	 */
+	private final long maxBlocks;
+
+	/**
+	 * Create a new shape handler.
+	 *
+	 * @param blockDataCache The cache for materials and block data.
+	 * @param maxBlocks      The largest number of blocks in the bounds of a shape.
+	 */
+	protected SetShape(final BlockDataCache blockDataCache, final long maxBlocks) {
+		this.blockDataCache = blockDataCache;
+		this.maxBlocks = maxBlocks;
+	}
+
+	@Override
+	public @NotNull List<Cuboid> getRegions(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		return List.of(nextShape(instruction).shape().getBounds());
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final ShapeRequest request = nextShape(instruction);
+		final Shape shape = request.shape();
+		if (shape.getBounds().getVolume() > maxBlocks) {
+			throw new IllegalArgumentException("Shape has more than " + maxBlocks + " blocks in its bounds");
+		}
+		final BulkBlockWriter writer = BulkBlockWriter.forSession(sessionAttachment, shape.getBounds(), shape::contains);
+		return Integer.toString(shape.fill(writer, blockDataCache.blockData(request.material(), blockDataCache.facing(0))));
+	}
+
+	/**
+	 * Read the shape and its material from the instruction.
+	 *
+	 * @param instruction the instruction
+	 * @return the shape and its material
+	 */
+	protected abstract ShapeRequest nextShape(@NotNull Instruction instruction);
+
+	/**
+	 * Read a material name from the instruction.
+	 *
+	 * @param instruction the instruction
+	 * @return the material, sandstone if the name does not match a material
+	 */
+	protected Material nextMaterial(@NotNull final Instruction instruction) {
+		return blockDataCache.material(instruction.next(), Material.SANDSTONE);
+	}
+
+	/**
+	 * A shape and the material to fill it with.
+	 *
+	 * @param shape    the shape
+	 * @param material the material
+	 */
+	protected record ShapeRequest(Shape shape, Material material) {
+	}
+}
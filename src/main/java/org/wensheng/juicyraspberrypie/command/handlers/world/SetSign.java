@@ -10,6 +10,7 @@ import org.jetbrains.annotations.NotNull;
 import org.wensheng.juicyraspberrypie.command.HandlerVoid;
 import org.wensheng.juicyraspberrypie.command.Instruction;
 import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.BlockDataCache;
 
 /**
  * Sets a sign at the specified location with specified data.
@@ -23,18 +24,23 @@ import org.wensheng.juicyraspberrypie.command.SessionAttachment;
  */
 public class SetSign implements HandlerVoid {
 	/**
-	 * Default SetSign constructor.
+	 * The cache for materials.
 	 */
-	public SetSign() {
+	private final BlockDataCache blockDataCache;
+
+	/**
+	 * Create a new SetSign handler.
+	 *
+	 * @param blockDataCache The cache for materials.
+	 */
+	public SetSign(final BlockDataCache blockDataCache) {
+		this.blockDataCache = blockDataCache;
 	}
 
 	@Override
 	public void handleVoid(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
 		final Location loc = instruction.nextLocation();
-		Material material = Material.matchMaterial(instruction.next());
-		if (material == null) {
-			material = Material.BIRCH_SIGN;
-		}
+		final Material material = blockDataCache.material(instruction.next(), Material.BIRCH_SIGN);
 		if (!material.toString().contains("_SIGN")) {
 			throw new IllegalArgumentException("material must be sign");
 		}
@@ -42,7 +48,7 @@ public class SetSign implements HandlerVoid {
 		final Block thisBlock = loc.getBlock();
 		thisBlock.setType(material);
 
-		int facing = instruction.hasNext() ? Integer.parseInt(instruction.next()) : 0;
+		int facing = instruction.hasNext() ? instruction.nextInt() : 0;
 		if (facing >= 4 || facing < 0) {
 			facing = 0;
 		}
@@ -56,8 +62,8 @@ public class SetSign implements HandlerVoid {
 		sign.update();
 	}
 
-	private static void setSignFace(final int facing, final Block thisBlock) {
-		final BlockFace blockFace = BlockFace.values()[facing];
+	private void setSignFace(final int facing, final Block thisBlock) {
+		final BlockFace blockFace = blockDataCache.facing(facing);
 		final BlockData blockData = thisBlock.getBlockData();
 		if (blockData instanceof final org.bukkit.block.data.type.WallSign signData) {
 			signData.setFacing(blockFace);
@@ -0,0 +1,34 @@
+package org.wensheng.juicyraspberrypie.command.handlers.world;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.block.BlockDataCache;
+import org.wensheng.juicyraspberrypie.command.shape.Sphere;
+
+/**
+ * Set the blocks of a sphere. The arguments are the center, the radius, the material, and optionally whether the
+ * sphere is hollow and the thickness of its shell (default 1).
+ */
+public class SetSphere extends SetShape {
+	/**
+	 * Create a new SetSphere handler.
+	 *
+	 * @param blockDataCache The cache for materials and block data.
+	 * @param maxBlocks      The largest number of blocks in the bounds of a shape.
+	 */
+	public SetSphere(final BlockDataCache blockDataCache, final long maxBlocks) {
+		super(blockDataCache, maxBlocks);
+	}
+
+	@Override
+	protected ShapeRequest nextShape(@NotNull final Instruction instruction) {
+		final Location center = instruction.nextLocation();
+		final double radius = instruction.nextDouble();
+		final Material material = nextMaterial(instruction);
+		final boolean hollow = instruction.hasNext() && Boolean.parseBoolean(instruction.next());
+		final double thickness = instruction.hasNext() ? instruction.nextDouble() : 1;
+		return new ShapeRequest(new Sphere(center, radius, hollow ? radius - thickness : 0), material);
+	}
+}
@@ -0,0 +1,61 @@
+package org.wensheng.juicyraspberrypie.command.handlers.world;
+
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.HandlerVoid;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.UndoJournal;
+
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * Start or stop recording the block edits of the session in an undo journal.
+ * Stopping forgets all recorded edits.
+ */
+public class SetUndoJournal implements HandlerVoid {
+	/**
+	 * The directory for the journal files.
+	 */
+	private final Path directory;
+
+	/**
+	 * The number of bytes the edits of a session may take in memory.
+	 */
+	private final long memoryLimit;
+
+	/**
+	 * The number of bytes the edits of a session may take in its journal file.
+	 */
+	private final long fileLimit;
+
+	/**
+	 * The number of edits that are kept per session.
+	 */
+	private final int maxEdits;
+
+	/**
+	 * Create a new SetUndoJournal handler.
+	 *
+	 * @param directory   The directory for the journal files.
+	 * @param memoryLimit The number of bytes the edits of a session may take in memory.
+	 * @param fileLimit   The number of bytes the edits of a session may take in its journal file.
+	 * @param maxEdits    The number of edits that are kept per session.
+	 */
+	public SetUndoJournal(final Path directory, final long memoryLimit, final long fileLimit, final int maxEdits) {
+		this.directory = directory;
+		this.memoryLimit = memoryLimit;
+		this.fileLimit = fileLimit;
+		this.maxEdits = maxEdits;
+	}
+
+	@Override
+	public void handleVoid(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		if (!Boolean.parseBoolean(instruction.next())) {
+			sessionAttachment.setUndoJournal(null);
+		} else if (sessionAttachment.getUndoJournal() == null) {
+			final Path path = directory.resolve(UUID.randomUUID() + ".journal");
+			sessionAttachment.setUndoJournal(new UndoJournal(path, memoryLimit, fileLimit, maxEdits));
+		}
+	}
+}
@@ -32,13 +32,13 @@ public class SpawnParticle implements HandlerVoid {
 		}
 		final int count;
 		if (instruction.hasNext()) {
-			count = Integer.parseInt(instruction.next());
+			count = instruction.nextInt();
 		} else {
 			count = 10;
 		}
 		final double speed;
 		if (instruction.hasNext()) {
-			speed = Double.parseDouble(instruction.next());
+			speed = instruction.nextDouble();
 		} else {
 			speed = 1.0;
 		}
@@ -0,0 +1,123 @@
+package org.wensheng.juicyraspberrypie.command.handlers.world;
+
+import org.bukkit.Color;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Particle;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.entity.Player;
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.HandlerVoid;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.particle.ParticleLimiter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Spawn a particle at many locations in one command: the particle, the number of particles per location, the speed,
+ * the material for particles showing a block, and then the coordinates of every location. Particles showing a color
+ * take the color of every location as hexadecimal RGB after its coordinates.
+ * Every player only receives the particles within the view distance of the {@link ParticleLimiter}, and no more than
+ * its limit per tick; the rest is dropped for that player.
+ */
+public class SpawnParticles implements HandlerVoid {
+	/**
+	 * The size of particles showing a color.
+	 */
+	private static final float DUST_SIZE = 1.0f;
+
+	/**
+	 * The limiter deciding which players receive the particles.
+	 */
+	private final ParticleLimiter limiter;
+
+	/**
+	 * Create a new SpawnParticles handler.
+	 *
+	 * @param limiter The limiter deciding which players receive the particles.
+	 */
+	public SpawnParticles(final ParticleLimiter limiter) {
+		this.limiter = limiter;
+	}
+
+	@Override
+	public void handleVoid(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final String name = instruction.next();
+		final Particle particle;
+		try {
+			particle = Particle.valueOf(String.valueOf(name).toUpperCase(Locale.ROOT));
+		} catch (final IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown particle " + name, e);
+		}
+		final int count = instruction.nextInt();
+		final double speed = instruction.nextDouble();
+		final Class<?> dataType = particle.getDataType();
+		final boolean colored = dataType == Particle.DustOptions.class;
+		final Object sharedData;
+		if (dataType == BlockData.class) {
+			final String materialName = instruction.next();
+			final Material material = materialName == null ? null : Material.matchMaterial(materialName);
+			if (material == null || !material.isBlock()) {
+				throw new IllegalArgumentException("Unknown block " + materialName);
+			}
+			sharedData = material.createBlockData();
+		} else if (dataType == Void.class || colored) {
+			sharedData = null;
+		} else {
+			throw new IllegalArgumentException("Particle " + particle + " takes data that is not supported");
+		}
+
+		final List<double[]> positions = new ArrayList<>();
+		final List<Object> data = new ArrayList<>();
+		final Map<Integer, Particle.DustOptions> dustOptions = new HashMap<>();
+		while (instruction.hasNext()) {
+			positions.add(new double[]{instruction.nextDouble(), instruction.nextDouble(), instruction.nextDouble()});
+			if (colored) {
+				final int rgb = parseColor(instruction.next());
+				data.add(dustOptions.computeIfAbsent(rgb, key -> new Particle.DustOptions(Color.fromRGB(key), DUST_SIZE)));
+			} else {
+				data.add(sharedData);
+			}
+		}
+		spawn(sessionAttachment.getWorld(), particle, count, speed, positions, data);
+	}
+
+	private void spawn(final World world, final Particle particle, final int count, final double speed,
+					   final List<double[]> positions, final List<Object> data) {
+		final double maxDistanceSquared = limiter.getViewDistance() * limiter.getViewDistance();
+		final int cost = Math.max(1, count);
+		for (final Player viewer : world.getPlayers()) {
+			final Location viewerLocation = viewer.getLocation();
+			final int remaining = limiter.remaining(viewer);
+			int sent = 0;
+			for (int i = 0; i < positions.size() && sent + cost <= remaining; i++) {
+				final double[] position = positions.get(i);
+				final double dx = position[0] - viewerLocation.getX();
+				final double dy = position[1] - viewerLocation.getY();
+				final double dz = position[2] - viewerLocation.getZ();
+				if (dx * dx + dy * dy + dz * dz <= maxDistanceSquared) {
+					viewer.spawnParticle(particle, position[0], position[1], position[2], count, 0, 0, 0, speed, data.get(i));
+					sent += cost;
+				}
+			}
+			limiter.spend(viewer, sent);
+		}
+	}
+
+	private static int parseColor(final String color) {
+		if (color == null) {
+			throw new IllegalArgumentException("Missing color");
+		}
+		try {
+			return Integer.parseInt(color.startsWith("#") ? color.substring(1) : color, 16) & 0xFFFFFF;
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid color " + color, e);
+		}
+	}
+}
@@ -0,0 +1,47 @@
+package org.wensheng.juicyraspberrypie.command.handlers.world;
+
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.Handler;
+import org.wensheng.juicyraspberrypie.command.Instruction;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.UndoJournal;
+
+import java.util.List;
+
+/**
+ * Restore the blocks before the newest edit recorded in the undo journal of the session.
+ * The blocks are written within one tick, so edits with more blocks than allowed fail; {@code jobs.undo} replays them
+ * over several ticks. The result is the number of blocks written.
+ */
+public class Undo implements Handler {
+	/**
+	 * The largest number of blocks of an edit to undo.
+	 */
+	private final long maxBlocks;
+
+	/**
+	 * Create a new Undo handler.
+	 *
+	 * @param maxBlocks The largest number of blocks of an edit to undo.
+	 */
+	public Undo(final long maxBlocks) {
+		this.maxBlocks = maxBlocks;
+	}
+
+	@Override
+	public @NotNull List<Cuboid> getRegions(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final UndoJournal journal = sessionAttachment.getUndoJournal();
+		final Cuboid region = journal == null ? null : journal.peekUndoRegion();
+		return region == null ? List.of() : List.of(region);
+	}
+
+	@Override
+	public String handle(@NotNull final SessionAttachment sessionAttachment, @NotNull final Instruction instruction) {
+		final UndoJournal journal = sessionAttachment.getUndoJournal();
+		if (journal == null) {
+			throw new IllegalStateException("The undo journal is not enabled");
+		}
+		return Integer.toString(journal.undo(maxBlocks).run());
+	}
+}
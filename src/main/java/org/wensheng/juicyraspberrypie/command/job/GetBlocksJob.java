@@ -0,0 +1,82 @@
+package org.wensheng.juicyraspberrypie.command.job;
+
+import org.bukkit.World;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+
+/**
+ * Read the materials of a cuboid, one block per step.
+ * The result lists the materials in the same order as {@code world.getBlocks}. The blocks are read in that order, so
+ * that every material is appended to the result right away instead of being kept for every block until the end.
+ */
+public class GetBlocksJob extends Job {
+	/**
+	 * The blocks to read.
+	 */
+	private final Cuboid cuboid;
+
+	/**
+	 * The world of the cuboid.
+	 */
+	private final World world;
+
+	/**
+	 * The materials read so far, separated by ','.
+	 */
+	private StringBuilder materials = new StringBuilder();
+
+	/**
+	 * The number of blocks read.
+	 */
+	private long done;
+
+	/**
+	 * Create a new job.
+	 *
+	 * @param owner     the session that submitted the job
+	 * @param cuboid    the blocks to read
+	 * @param maxBlocks the largest number of blocks
+	 * @throws IllegalArgumentException if the cuboid has more blocks
+	 */
+	public GetBlocksJob(final SessionAttachment owner, final Cuboid cuboid, final long maxBlocks) {
+		super(owner);
+		if (cuboid.getVolume() > maxBlocks) {
+			throw new IllegalArgumentException("Region has more than " + maxBlocks + " blocks");
+		}
+		this.cuboid = cuboid;
+		this.world = cuboid.getWorld();
+	}
+
+	@Override
+	protected boolean step() {
+		if (done == cuboid.getVolume()) {
+			return true;
+		}
+		final int y = cuboid.getMinY() + (int) (done % cuboid.getSizeY());
+		final int z = cuboid.getMinZ() + (int) (done / cuboid.getSizeY() % cuboid.getSizeZ());
+		final int x = cuboid.getMinX() + (int) (done / cuboid.getSizeY() / cuboid.getSizeZ());
+		if (done > 0) {
+			materials.append(',');
+		}
+		materials.append(world.getBlockAt(x, y, z).getType());
+		done++;
+		return false;
+	}
+
+	@Override
+	protected String complete() {
+		final String result = materials.toString();
+		materials = null;
+		return result;
+	}
+
+	@Override
+	public long getDone() {
+		return done;
+	}
+
+	@Override
+	public long getTotal() {
+		return cuboid.getVolume();
+	}
+}
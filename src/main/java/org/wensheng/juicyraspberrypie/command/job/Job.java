@@ -0,0 +1,207 @@
+package org.wensheng.juicyraspberrypie.command.job;
+
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+
+/**
+ * An operation that is too large for a single tick and is executed in slices by the {@link JobManager}.
+ * A job is split into small steps, like reading or writing a single block, and the manager checks the clock between
+ * steps to stop a slice when its time is up.
+ */
+public abstract class Job {
+	/**
+	 * The number of steps between two checks of the clock.
+	 */
+	private static final int STEPS_PER_CLOCK_CHECK = 64;
+
+	/**
+	 * The session that submitted the job.
+	 */
+	private final SessionAttachment owner;
+
+	/**
+	 * The id assigned by the job manager.
+	 */
+	private int id;
+
+	/**
+	 * The state.
+	 */
+	private JobState state = JobState.RUNNING;
+
+	/**
+	 * The result once the job is finished.
+	 */
+	private String result;
+
+	/**
+	 * Whether the owner was notified that the job finished.
+	 */
+	private boolean notified;
+
+	/**
+	 * The tick of the job manager after which the finished job is dropped, or -1 until the manager saw it finished.
+	 */
+	private long expiryTick = -1;
+
+	/**
+	 * Create a new job.
+	 *
+	 * @param owner the session that submitted the job
+	 */
+	protected Job(final SessionAttachment owner) {
+		this.owner = owner;
+	}
+
+	/**
+	 * Perform the next step.
+	 *
+	 * @return true if there are no more steps
+	 */
+	protected abstract boolean step();
+
+	/**
+	 * Check whether the job can perform steps. A job that waits for work done elsewhere, like on a worker thread,
+	 * is skipped until it is ready.
+	 *
+	 * @return true if the job can perform steps
+	 */
+	protected boolean isReady() {
+		return true;
+	}
+
+	/**
+	 * Get the result after the last step.
+	 *
+	 * @return the result
+	 */
+	protected abstract String complete();
+
+	/**
+	 * Get the number of steps performed.
+	 *
+	 * @return the number of steps performed
+	 */
+	public abstract long getDone();
+
+	/**
+	 * Get the total number of steps.
+	 *
+	 * @return the total number of steps
+	 */
+	public abstract long getTotal();
+
+	/**
+	 * Perform steps until the job is finished or the deadline has passed.
+	 *
+	 * @param deadlineNanos the deadline as {@link System#nanoTime()}
+	 */
+	@SuppressWarnings("PMD.AvoidCatchingGenericException")
+	void run(final long deadlineNanos) {
+		try {
+			if (!isReady()) {
+				return;
+			}
+			int steps = 0;
+			while (!step()) {
+				if (++steps % STEPS_PER_CLOCK_CHECK == 0 && System.nanoTime() >= deadlineNanos) {
+					return;
+				}
+			}
+			finish(JobState.COMPLETED, complete());
+		} catch (final RuntimeException e) {
+			finish(JobState.FAILED, "Fail: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Stop the job if it is still running.
+	 */
+	void cancel() {
+		if (state == JobState.RUNNING) {
+			finish(JobState.CANCELLED, "Fail: Job " + id + " was cancelled");
+		}
+	}
+
+	/**
+	 * Called once when the job completed, failed or was cancelled, to release what it still holds, like work on a
+	 * worker thread or an edit of the undo journal.
+	 */
+	protected void onFinish() {
+	}
+
+	private void finish(final JobState state, final String result) {
+		this.state = state;
+		this.result = result;
+		onFinish();
+	}
+
+	/**
+	 * Get the session that submitted the job.
+	 *
+	 * @return the owner
+	 */
+	public SessionAttachment getOwner() {
+		return owner;
+	}
+
+	/**
+	 * Get the id.
+	 *
+	 * @return the id
+	 */
+	public int getId() {
+		return id;
+	}
+
+	void setId(final int id) {
+		this.id = id;
+	}
+
+	/**
+	 * Get the state.
+	 *
+	 * @return the state
+	 */
+	public JobState getState() {
+		return state;
+	}
+
+	/**
+	 * Get the result.
+	 *
+	 * @return the result, or null while the job is running
+	 */
+	public String getResult() {
+		return result;
+	}
+
+	/**
+	 * Check whether a finished job was kept for long enough, counted from the first check after it finished.
+	 *
+	 * @param tick      the current tick of the job manager
+	 * @param keepTicks the number of ticks to keep a finished job
+	 * @return true if the job is finished and expired
+	 */
+	boolean isExpired(final long tick, final long keepTicks) {
+		if (state == JobState.RUNNING) {
+			return false;
+		}
+		if (expiryTick < 0) {
+			expiryTick = tick + keepTicks;
+		}
+		return tick > expiryTick;
+	}
+
+	/**
+	 * Mark the owner as notified if the job is finished.
+	 *
+	 * @return true if the job is finished and the owner was not notified before
+	 */
+	boolean notifyFinished() {
+		if (state == JobState.RUNNING || notified) {
+			return false;
+		}
+		notified = true;
+		return true;
+	}
+}
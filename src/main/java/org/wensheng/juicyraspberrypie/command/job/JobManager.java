@@ -0,0 +1,169 @@
+package org.wensheng.juicyraspberrypie.command.job;
+
+import org.jetbrains.annotations.NotNull;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the jobs of all sessions on the server main thread, a slice per tick.
+ * The time of a tick is shared evenly between the running jobs, starting with a different job every tick.
+ * Finished jobs are kept until their owner fetched the result or disconnected, but at most for a configured number
+ * of ticks, so that results nobody asks for do not pile up.
+ */
+public class JobManager {
+	/**
+	 * The jobs by id, only accessed from the server main thread.
+	 */
+	private final Map<Integer, Job> jobs = new LinkedHashMap<>();
+
+	/**
+	 * The id of the next submitted job.
+	 */
+	private int nextId = 1;
+
+	/**
+	 * The number of running jobs to skip in the next tick, so that every job gets to go first in turn.
+	 */
+	private int rotation;
+
+	/**
+	 * The number of ticks a finished job is kept.
+	 */
+	private final long resultTicks;
+
+	/**
+	 * The number of ticks run so far.
+	 */
+	private long ticks;
+
+	/**
+	 * Create a new job manager.
+	 *
+	 * @param resultTicks the number of ticks a finished job is kept for its owner to fetch the result
+	 */
+	public JobManager(final long resultTicks) {
+		this.resultTicks = resultTicks;
+	}
+
+	/**
+	 * Submit a job to be run from the next tick on.
+	 *
+	 * @param job the job
+	 * @return the id of the job
+	 */
+	public int submit(@NotNull final Job job) {
+		final int id = nextId++;
+		job.setId(id);
+		jobs.put(id, job);
+		return id;
+	}
+
+	/**
+	 * Get a job of a session.
+	 *
+	 * @param owner the session
+	 * @param id    the id of the job
+	 * @return the job
+	 * @throws IllegalArgumentException if the session has no job with the id
+	 */
+	public @NotNull Job get(@NotNull final SessionAttachment owner, final int id) {
+		final Job job = jobs.get(id);
+		if (job == null || job.getOwner() != owner) {
+			throw new IllegalArgumentException("Unknown job " + id);
+		}
+		return job;
+	}
+
+	/**
+	 * Cancel a job of a session.
+	 *
+	 * @param owner the session
+	 * @param id    the id of the job
+	 * @throws IllegalArgumentException if the session has no job with the id
+	 */
+	public void cancel(@NotNull final SessionAttachment owner, final int id) {
+		get(owner, id).cancel();
+	}
+
+	/**
+	 * Remove a finished job of a session and get its result.
+	 *
+	 * @param owner the session
+	 * @param id    the id of the job
+	 * @return the result
+	 * @throws IllegalArgumentException if the session has no job with the id
+	 * @throws IllegalStateException    if the job is still running
+	 */
+	public String takeResult(@NotNull final SessionAttachment owner, final int id) {
+		final Job job = get(owner, id);
+		if (job.getState() == JobState.RUNNING) {
+			throw new IllegalStateException("Job " + id + " is still running");
+		}
+		jobs.remove(id);
+		return job.getResult();
+	}
+
+	/**
+	 * Get the ids of the jobs of a session that finished since the last call.
+	 *
+	 * @param owner the session
+	 * @return the ids of the finished jobs
+	 */
+	public @NotNull List<Integer> pollFinished(@NotNull final SessionAttachment owner) {
+		final List<Integer> finished = new ArrayList<>();
+		for (final Job job : jobs.values()) {
+			if (job.getOwner() == owner && job.notifyFinished()) {
+				finished.add(job.getId());
+			}
+		}
+		return finished;
+	}
+
+	/**
+	 * Run the jobs for the given time and drop the jobs of closed sessions and expired finished jobs.
+	 *
+	 * @param allowanceNanos the time the jobs may take
+	 * @return the time spent in nanoseconds
+	 */
+	public long tick(final long allowanceNanos) {
+		final long start = System.nanoTime();
+		ticks++;
+		final List<Job> running = new ArrayList<>();
+		final Iterator<Job> iterator = jobs.values().iterator();
+		while (iterator.hasNext()) {
+			final Job job = iterator.next();
+			if (job.getOwner().isClosed() || job.isExpired(ticks, resultTicks)) {
+				job.cancel();
+				iterator.remove();
+			} else if (job.getState() == JobState.RUNNING) {
+				running.add(job);
+			}
+		}
+		if (running.isEmpty()) {
+			return System.nanoTime() - start;
+		}
+		rotation = (rotation + 1) % running.size();
+		final long deadline = start + allowanceNanos;
+		for (int i = 0; i < running.size(); i++) {
+			final long now = System.nanoTime();
+			if (now >= deadline) {
+				break;
+			}
+			running.get((rotation + i) % running.size()).run(now + (deadline - now) / (running.size() - i));
+		}
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Cancel and drop all jobs.
+	 */
+	public void clear() {
+		jobs.values().forEach(Job::cancel);
+		jobs.clear();
+	}
+}
@@ -0,0 +1,23 @@
+package org.wensheng.juicyraspberrypie.command.job;
+
+/**
+ * The state of a {@link Job}.
+ */
+public enum JobState {
+	/**
+	 * The job has steps left.
+	 */
+	RUNNING,
+	/**
+	 * The job performed all steps.
+	 */
+	COMPLETED,
+	/**
+	 * The job was cancelled by its owner.
+	 */
+	CANCELLED,
+	/**
+	 * A step of the job failed.
+	 */
+	FAILED
+}
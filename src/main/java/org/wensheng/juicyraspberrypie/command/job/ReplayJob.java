@@ -0,0 +1,50 @@
+package org.wensheng.juicyraspberrypie.command.job;
+
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.EditReplay;
+
+/**
+ * Undo or redo an edit of the undo journal, one block per step, and then set the blocks on its surface with physics.
+ */
+public class ReplayJob extends Job {
+	/**
+	 * The replay of the edit.
+	 */
+	private final EditReplay replay;
+
+	/**
+	 * Create a new job.
+	 *
+	 * @param owner  the session that submitted the job
+	 * @param replay the replay of the edit
+	 */
+	public ReplayJob(final SessionAttachment owner, final EditReplay replay) {
+		super(owner);
+		this.replay = replay;
+	}
+
+	@Override
+	protected boolean step() {
+		return replay.step();
+	}
+
+	@Override
+	protected void onFinish() {
+		replay.stop();
+	}
+
+	@Override
+	protected String complete() {
+		return Integer.toString(replay.getWritten());
+	}
+
+	@Override
+	public long getDone() {
+		return replay.getDone();
+	}
+
+	@Override
+	public long getTotal() {
+		return replay.getTotal();
+	}
+}
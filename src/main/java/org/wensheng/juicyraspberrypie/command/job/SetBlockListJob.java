@@ -0,0 +1,79 @@
+package org.wensheng.juicyraspberrypie.command.job;
+
+import org.bukkit.block.data.BlockData;
+import org.wensheng.juicyraspberrypie.command.CuboidCursor;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.BlockList;
+import org.wensheng.juicyraspberrypie.command.block.BulkBlockWriter;
+
+/**
+ * Set the blocks of a block list, one block per step, and then set the blocks on its surface with physics.
+ */
+public class SetBlockListJob extends Job {
+	/**
+	 * The blocks to set.
+	 */
+	private final BlockList blocks;
+
+	/**
+	 * The cursor over the region.
+	 */
+	private final CuboidCursor cursor;
+
+	/**
+	 * The writer.
+	 */
+	private final BulkBlockWriter writer;
+
+	/**
+	 * The number of blocks of the region visited so far.
+	 */
+	private long done;
+
+	/**
+	 * Create a new job.
+	 *
+	 * @param owner  the session that submitted the job
+	 * @param blocks the blocks to set
+	 * @param writer the writer for the region of the blocks
+	 */
+	public SetBlockListJob(final SessionAttachment owner, final BlockList blocks, final BulkBlockWriter writer) {
+		super(owner);
+		this.blocks = blocks;
+		this.cursor = blocks.getCuboid().cursor();
+		this.writer = writer;
+	}
+
+	@Override
+	protected boolean step() {
+		if (cursor.next()) {
+			done++;
+			final BlockData blockData = blocks.get(cursor.getX(), cursor.getY(), cursor.getZ());
+			if (blockData != null) {
+				writer.set(cursor.getX(), cursor.getY(), cursor.getZ(), blockData);
+			}
+			return false;
+		}
+		return !writer.finishNext();
+	}
+
+	@Override
+	protected void onFinish() {
+		writer.endEdit();
+	}
+
+	@Override
+	protected String complete() {
+		return Integer.toString(writer.getWritten());
+	}
+
+	@Override
+	public long getDone() {
+		return done;
+	}
+
+	@Override
+	public long getTotal() {
+		return blocks.getCuboid().getVolume();
+	}
+}
@@ -0,0 +1,78 @@
+package org.wensheng.juicyraspberrypie.command.job;
+
+import org.bukkit.block.data.BlockData;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.CuboidCursor;
+import org.wensheng.juicyraspberrypie.command.HandlerVoid;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.BulkBlockWriter;
+
+/**
+ * Fill a cuboid with a block, one block per step, and then set the blocks on its surface with physics.
+ */
+public class SetBlocksJob extends Job {
+	/**
+	 * The blocks to set.
+	 */
+	private final Cuboid cuboid;
+
+	/**
+	 * The cursor over the blocks.
+	 */
+	private final CuboidCursor cursor;
+
+	/**
+	 * The writer.
+	 */
+	private final BulkBlockWriter writer;
+
+	/**
+	 * The block data to set.
+	 */
+	private final BlockData blockData;
+
+	/**
+	 * Create a new job.
+	 *
+	 * @param owner     the session that submitted the job
+	 * @param cuboid    the blocks to set
+	 * @param writer    the writer for the cuboid
+	 * @param blockData the block data to set
+	 */
+	public SetBlocksJob(final SessionAttachment owner, final Cuboid cuboid, final BulkBlockWriter writer, final BlockData blockData) {
+		super(owner);
+		this.cuboid = cuboid;
+		this.cursor = cuboid.cursor();
+		this.writer = writer;
+		this.blockData = blockData;
+	}
+
+	@Override
+	protected boolean step() {
+		if (cursor.next()) {
+			writer.set(cursor.getX(), cursor.getY(), cursor.getZ(), blockData);
+			return false;
+		}
+		return !writer.finishNext();
+	}
+
+	@Override
+	protected void onFinish() {
+		writer.endEdit();
+	}
+
+	@Override
+	protected String complete() {
+		return writer.isSkippingUnchanged() ? Integer.toString(writer.getWritten()) : HandlerVoid.OK;
+	}
+
+	@Override
+	public long getDone() {
+		return writer.getVisited();
+	}
+
+	@Override
+	public long getTotal() {
+		return cuboid.getVolume();
+	}
+}
@@ -0,0 +1,110 @@
+package org.wensheng.juicyraspberrypie.command.job;
+
+import org.bukkit.block.data.BlockData;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.SessionAttachment;
+import org.wensheng.juicyraspberrypie.command.block.BulkBlockWriter;
+import org.wensheng.juicyraspberrypie.command.block.MeshVoxelizer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Set the blocks of a mesh once it has been voxelized on a worker thread, one block per step.
+ */
+public class SetMeshJob extends Job {
+	/**
+	 * The region the mesh was voxelized in.
+	 */
+	private final Cuboid bounds;
+
+	/**
+	 * The keys of the blocks, see {@link MeshVoxelizer}.
+	 */
+	private final CompletableFuture<long[]> voxels;
+
+	/**
+	 * The writer.
+	 */
+	private final BulkBlockWriter writer;
+
+	/**
+	 * The block data by palette index.
+	 */
+	private final BlockData[] palette;
+
+	/**
+	 * The keys of the blocks once voxelized.
+	 */
+	private long[] keys;
+
+	/**
+	 * The index of the next block.
+	 */
+	private int next;
+
+	/**
+	 * Create a new job.
+	 *
+	 * @param owner   the session that submitted the job
+	 * @param bounds  the region the mesh is voxelized in
+	 * @param voxels  the keys of the blocks, once voxelized
+	 * @param writer  the writer for the region
+	 * @param palette the block data by palette index
+	 */
+	public SetMeshJob(final SessionAttachment owner, final Cuboid bounds, final CompletableFuture<long[]> voxels,
+					  final BulkBlockWriter writer, final BlockData[] palette) {
+		super(owner);
+		this.bounds = bounds;
+		this.voxels = voxels;
+		this.writer = writer;
+		this.palette = palette;
+	}
+
+	@Override
+	protected boolean isReady() {
+		return voxels.isDone();
+	}
+
+	@Override
+	protected boolean step() {
+		if (keys == null) {
+			try {
+				keys = voxels.join();
+			} catch (final CompletionException e) {
+				if (e.getCause() instanceof RuntimeException cause) {
+					throw cause;
+				}
+				throw e;
+			}
+		}
+		if (next == keys.length) {
+			return !writer.finishNext();
+		}
+		final long key = keys[next++];
+		writer.set(MeshVoxelizer.getX(key, bounds), MeshVoxelizer.getY(key, bounds), MeshVoxelizer.getZ(key, bounds),
+				palette[MeshVoxelizer.getPaletteIndex(key)]);
+		return false;
+	}
+
+	@Override
+	protected void onFinish() {
+		voxels.cancel(false);
+		writer.endEdit();
+	}
+
+	@Override
+	protected String complete() {
+		return Integer.toString(writer.getWritten());
+	}
+
+	@Override
+	public long getDone() {
+		return next;
+	}
+
+	@Override
+	public long getTotal() {
+		return keys == null ? 0 : keys.length;
+	}
+}
@@ -0,0 +1,78 @@
+package org.wensheng.juicyraspberrypie.command.particle;
+
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Limits the particles sent to every player, so that effect scripts cannot flood the connections of the players.
+ * Particles farther from a player than the view distance are not sent to that player at all, and every player receives
+ * at most a fixed number of particles per tick. Must only be used from the server main thread.
+ */
+public class ParticleLimiter {
+	/**
+	 * The distance beyond which a player does not receive particles.
+	 */
+	private final double viewDistance;
+
+	/**
+	 * The largest number of particles a player receives per tick.
+	 */
+	private final int maxPerTick;
+
+	/**
+	 * The number of particles every player received in the current tick.
+	 */
+	private final Map<UUID, Integer> sent = new HashMap<>();
+
+	/**
+	 * Create a new limiter.
+	 *
+	 * @param viewDistance the distance beyond which a player does not receive particles
+	 * @param maxPerTick   the largest number of particles a player receives per tick
+	 */
+	public ParticleLimiter(final double viewDistance, final int maxPerTick) {
+		this.viewDistance = viewDistance;
+		this.maxPerTick = maxPerTick;
+	}
+
+	/**
+	 * Get the distance beyond which a player does not receive particles.
+	 *
+	 * @return the distance in blocks
+	 */
+	public double getViewDistance() {
+		return viewDistance;
+	}
+
+	/**
+	 * Get the number of particles a player may still receive in the current tick.
+	 *
+	 * @param player the player
+	 * @return the number of particles
+	 */
+	public int remaining(final Player player) {
+		return Math.max(0, maxPerTick - sent.getOrDefault(player.getUniqueId(), 0));
+	}
+
+	/**
+	 * Count particles sent to a player in the current tick.
+	 *
+	 * @param player the player
+	 * @param count  the number of particles
+	 */
+	public void spend(final Player player, final int count) {
+		if (count > 0) {
+			sent.merge(player.getUniqueId(), count, Integer::sum);
+		}
+	}
+
+	/**
+	 * Start a new tick, in which every player may receive the full number of particles again.
+	 */
+	public void nextTick() {
+		sent.clear();
+	}
+}
@@ -0,0 +1,67 @@
+package org.wensheng.juicyraspberrypie.command.shape;
+
+import org.bukkit.Location;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+
+/**
+ * An upright cylinder, or a tube if it has an inner radius.
+ */
+public final class Cylinder implements Shape {
+	/**
+	 * The bounds.
+	 */
+	private final Cuboid bounds;
+
+	/**
+	 * The x coordinate of the axis.
+	 */
+	private final double centerX;
+
+	/**
+	 * The z coordinate of the axis.
+	 */
+	private final double centerZ;
+
+	/**
+	 * The square of the radius.
+	 */
+	private final double radiusSquared;
+
+	/**
+	 * The square of the inner radius, 0 for a solid cylinder.
+	 */
+	private final double innerRadiusSquared;
+
+	/**
+	 * Create a new cylinder.
+	 *
+	 * @param base        the center of the bottom layer
+	 * @param radius      the radius, blocks closer to the axis belong to the cylinder
+	 * @param height      the number of layers
+	 * @param innerRadius the radius of the hollow inside, blocks closer to the axis do not belong to the cylinder
+	 */
+	public Cylinder(final Location base, final double radius, final int height, final double innerRadius) {
+		if (height <= 0) {
+			throw new IllegalArgumentException("Height must be positive");
+		}
+		centerX = base.getX();
+		centerZ = base.getZ();
+		radiusSquared = radius * radius;
+		innerRadiusSquared = innerRadius > 0 ? innerRadius * innerRadius : 0;
+		bounds = Shape.bounds(base.getWorld(), centerX - radius, base.getBlockY(), centerZ - radius,
+				centerX + radius, base.getBlockY() + height - 1, centerZ + radius);
+	}
+
+	@Override
+	public Cuboid getBounds() {
+		return bounds;
+	}
+
+	@Override
+	public boolean contains(final int x, final int y, final int z) {
+		final double dx = x - centerX;
+		final double dz = z - centerZ;
+		final double distanceSquared = dx * dx + dz * dz;
+		return distanceSquared < radiusSquared && distanceSquared >= innerRadiusSquared;
+	}
+}
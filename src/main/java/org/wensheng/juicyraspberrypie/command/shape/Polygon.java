@@ -0,0 +1,155 @@
+package org.wensheng.juicyraspberrypie.command.shape;
+
+import org.bukkit.Location;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+
+import java.util.List;
+
+/**
+ * A flat polygon through a list of points, either filled or only its outline, with a thickness.
+ * The points are expected to lie in one plane; the plane is fitted through them otherwise. Like a {@link Line}, the
+ * outline and a filled polygon take every block they pass through, so thin polygons have no gaps when tilted.
+ */
+public final class Polygon implements Shape {
+	/**
+	 * The bounds.
+	 */
+	private final Cuboid bounds;
+
+	/**
+	 * The coordinates of the points.
+	 */
+	private final double[][] points;
+
+	/**
+	 * Whether the polygon is filled.
+	 */
+	private final boolean filled;
+
+	/**
+	 * Half the thickness.
+	 */
+	private final double radius;
+
+	/**
+	 * The largest distance of a block from the plane for a filled polygon: half the thickness, or more if the plane
+	 * is tilted and passes through blocks whose centers are farther away.
+	 */
+	private final double planeDistance;
+
+	/**
+	 * The unit normal of the plane.
+	 */
+	private final double[] normal;
+
+	/**
+	 * The first axis of the plane the points are projected onto for the inside test.
+	 */
+	private final int axisU;
+
+	/**
+	 * The second axis of the plane the points are projected onto for the inside test.
+	 */
+	private final int axisV;
+
+	/**
+	 * Create a new polygon.
+	 *
+	 * @param vertices  the points, at least three
+	 * @param filled    whether the polygon is filled, otherwise only the outline belongs to it
+	 * @param thickness the thickness, blocks closer to the plane or outline than half of it belong to the polygon
+	 */
+	public Polygon(final List<Location> vertices, final boolean filled, final double thickness) {
+		if (vertices.size() < 3) {
+			throw new IllegalArgumentException("A polygon needs at least 3 points");
+		}
+		this.filled = filled;
+		this.radius = thickness / 2;
+		points = new double[vertices.size()][];
+		final double[] min = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE};
+		final double[] max = {-Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE};
+		for (int i = 0; i < points.length; i++) {
+			final Location vertex = vertices.get(i);
+			points[i] = new double[] {vertex.getX(), vertex.getY(), vertex.getZ()};
+			for (int axis = 0; axis < 3; axis++) {
+				min[axis] = Math.min(min[axis], points[i][axis]);
+				max[axis] = Math.max(max[axis], points[i][axis]);
+			}
+		}
+		normal = newellNormal(points);
+		final int dominant = Math.abs(normal[0]) >= Math.abs(normal[1])
+				? Math.abs(normal[0]) >= Math.abs(normal[2]) ? 0 : 2
+				: Math.abs(normal[1]) >= Math.abs(normal[2]) ? 1 : 2;
+		axisU = (dominant + 1) % 3;
+		axisV = (dominant + 2) % 3;
+		planeDistance = Math.max(radius, Line.HALF_BLOCK * (Math.abs(normal[0]) + Math.abs(normal[1]) + Math.abs(normal[2])));
+		final double reach = Math.max(radius, 0.5);
+		bounds = Shape.bounds(vertices.get(0).getWorld(), min[0] - reach, min[1] - reach, min[2] - reach,
+				max[0] + reach, max[1] + reach, max[2] + reach);
+	}
+
+	/**
+	 * Compute the unit normal of a polygon with Newell's method, which also works for concave polygons.
+	 */
+	private static double[] newellNormal(final double[][] points) {
+		final double[] normal = new double[3];
+		for (int i = 0; i < points.length; i++) {
+			final double[] current = points[i];
+			final double[] next = points[(i + 1) % points.length];
+			normal[0] += (current[1] - next[1]) * (current[2] + next[2]);
+			normal[1] += (current[2] - next[2]) * (current[0] + next[0]);
+			normal[2] += (current[0] - next[0]) * (current[1] + next[1]);
+		}
+		final double length = Math.sqrt(normal[0] * normal[0] + normal[1] * normal[1] + normal[2] * normal[2]);
+		if (length == 0) {
+			throw new IllegalArgumentException("The points of a polygon must not be on one line");
+		}
+		for (int axis = 0; axis < 3; axis++) {
+			normal[axis] /= length;
+		}
+		return normal;
+	}
+
+	@Override
+	public Cuboid getBounds() {
+		return bounds;
+	}
+
+	@Override
+	public boolean contains(final int x, final int y, final int z) {
+		if (!filled) {
+			return isNearOutline(x, y, z);
+		}
+		final double[] point = {x, y, z};
+		final double distance = (x - points[0][0]) * normal[0] + (y - points[0][1]) * normal[1] + (z - points[0][2]) * normal[2];
+		return Math.abs(distance) <= planeDistance && (isInside(point[axisU], point[axisV]) || isNearOutline(x, y, z));
+	}
+
+	private boolean isNearOutline(final int x, final int y, final int z) {
+		final double radiusSquared = radius * radius;
+		for (int i = 0; i < points.length; i++) {
+			final double[] next = points[(i + 1) % points.length];
+			if (Line.crosses(x, y, z, points[i], next) || Line.distanceSquared(x, y, z, points[i], next) <= radiusSquared) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Check whether a point projected onto the plane of the axes is inside the projected polygon (even-odd rule).
+	 */
+	private boolean isInside(final double u, final double v) {
+		boolean inside = false;
+		for (int i = 0, j = points.length - 1; i < points.length; j = i++) {
+			final double ui = points[i][axisU];
+			final double vi = points[i][axisV];
+			final double uj = points[j][axisU];
+			final double vj = points[j][axisV];
+			if (vi > v != vj > v && u < (uj - ui) * (v - vi) / (vj - vi) + ui) {
+				inside = !inside;
+			}
+		}
+		return inside;
+	}
+}
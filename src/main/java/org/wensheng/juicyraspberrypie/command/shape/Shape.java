@@ -0,0 +1,72 @@
+package org.wensheng.juicyraspberrypie.command.shape;
+
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.CuboidCursor;
+import org.wensheng.juicyraspberrypie.command.block.BulkBlockWriter;
+
+/**
+ * A solid that can be rasterized into blocks. A block belongs to the shape if its coordinates, taken as a point,
+ * are inside the solid.
+ */
+public interface Shape {
+	/**
+	 * Get the region containing all blocks of the shape.
+	 *
+	 * @return the bounds
+	 */
+	Cuboid getBounds();
+
+	/**
+	 * Check whether a block belongs to the shape.
+	 *
+	 * @param x the x coordinate
+	 * @param y the y coordinate
+	 * @param z the z coordinate
+	 * @return true if the block belongs to the shape
+	 */
+	boolean contains(int x, int y, int z);
+
+	/**
+	 * Set all blocks of the shape, visiting the bounds in cursor order.
+	 *
+	 * @param writer    the writer for the bounds, covering the blocks of the shape
+	 * @param blockData the block data to set
+	 * @return the number of blocks written
+	 */
+	default int fill(final BulkBlockWriter writer, final BlockData blockData) {
+		final CuboidCursor cursor = getBounds().cursor();
+		while (cursor.next()) {
+			if (contains(cursor.getX(), cursor.getY(), cursor.getZ())) {
+				writer.set(cursor.getX(), cursor.getY(), cursor.getZ(), blockData);
+			}
+		}
+		writer.finish();
+		return writer.getWritten();
+	}
+
+	/**
+	 * Create the bounds of a shape from its extent, limited to the height of the world.
+	 *
+	 * @param world the world
+	 * @param minX  the lowest x coordinate of the extent
+	 * @param minY  the lowest y coordinate of the extent
+	 * @param minZ  the lowest z coordinate of the extent
+	 * @param maxX  the highest x coordinate of the extent
+	 * @param maxY  the highest y coordinate of the extent
+	 * @param maxZ  the highest z coordinate of the extent
+	 * @return the bounds
+	 * @throws IllegalArgumentException if the extent is outside the height of the world
+	 */
+	static Cuboid bounds(final World world, final double minX, final double minY, final double minZ,
+						 final double maxX, final double maxY, final double maxZ) {
+		final int lowY = Math.max((int) Math.floor(minY), world.getMinHeight());
+		final int highY = Math.min((int) Math.ceil(maxY), world.getMaxHeight() - 1);
+		if (lowY > highY) {
+			throw new IllegalArgumentException("Shape is outside the height of the world");
+		}
+		return new Cuboid(world, (int) Math.floor(minX), lowY, (int) Math.floor(minZ),
+				(int) Math.ceil(maxX), highY, (int) Math.ceil(maxZ));
+	}
+}
@@ -0,0 +1,70 @@
+package org.wensheng.juicyraspberrypie.command.shape;
+
+import org.bukkit.Location;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+
+/**
+ * A sphere, or a spherical shell if it has an inner radius.
+ */
+public final class Sphere implements Shape {
+	/**
+	 * The bounds.
+	 */
+	private final Cuboid bounds;
+
+	/**
+	 * The x coordinate of the center.
+	 */
+	private final double centerX;
+
+	/**
+	 * The y coordinate of the center.
+	 */
+	private final double centerY;
+
+	/**
+	 * The z coordinate of the center.
+	 */
+	private final double centerZ;
+
+	/**
+	 * The square of the radius.
+	 */
+	private final double radiusSquared;
+
+	/**
+	 * The square of the inner radius, 0 for a solid sphere.
+	 */
+	private final double innerRadiusSquared;
+
+	/**
+	 * Create a new sphere.
+	 *
+	 * @param center      the center
+	 * @param radius      the radius, blocks closer than it belong to the sphere
+	 * @param innerRadius the radius of the hollow inside, blocks closer than it do not belong to the sphere
+	 */
+	public Sphere(final Location center, final double radius, final double innerRadius) {
+		centerX = center.getX();
+		centerY = center.getY();
+		centerZ = center.getZ();
+		radiusSquared = radius * radius;
+		innerRadiusSquared = innerRadius > 0 ? innerRadius * innerRadius : 0;
+		bounds = Shape.bounds(center.getWorld(), centerX - radius, centerY - radius, centerZ - radius,
+				centerX + radius, centerY + radius, centerZ + radius);
+	}
+
+	@Override
+	public Cuboid getBounds() {
+		return bounds;
+	}
+
+	@Override
+	public boolean contains(final int x, final int y, final int z) {
+		final double dx = x - centerX;
+		final double dy = y - centerY;
+		final double dz = z - centerZ;
+		final double distanceSquared = dx * dx + dy * dy + dz * dz;
+		return distanceSquared < radiusSquared && distanceSquared >= innerRadiusSquared;
+	}
+}
@@ -0,0 +1,95 @@
+package org.wensheng.juicyraspberrypie;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MpscRingBufferTests {
+	@Test
+	void rejects_capacity_that_is_not_a_power_of_two() {
+		assertThrows(IllegalArgumentException.class, () -> new MpscRingBuffer<String>(12));
+	}
+
+	@Nested
+	class offer {
+		@Test
+		void fails_when_full() {
+			final MpscRingBuffer<String> buffer = new MpscRingBuffer<>(4);
+			for (int i = 0; i < 4; i++) {
+				assertThat(buffer.offer("element" + i), is(true));
+			}
+			assertThat(buffer.offer("overflow"), is(false));
+			assertThat(buffer.size(), is(4));
+		}
+
+		@Test
+		void succeeds_again_after_poll() {
+			final MpscRingBuffer<String> buffer = new MpscRingBuffer<>(2);
+			buffer.offer("one");
+			buffer.offer("two");
+			buffer.poll();
+			assertThat(buffer.offer("three"), is(true));
+		}
+	}
+
+	@Nested
+	class poll {
+		@Test
+		void returns_null_when_empty() {
+			assertThat(new MpscRingBuffer<String>(2).poll(), is(nullValue()));
+		}
+
+		@Test
+		void keeps_insertion_order_across_wraps() {
+			final MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(4);
+			final List<Integer> polled = new ArrayList<>();
+			for (int i = 0; i < 10; i++) {
+				buffer.offer(i);
+				polled.add(buffer.poll());
+			}
+			assertThat(polled, contains(0, 1, 2, 3, 4, 5, 6, 7, 8, 9));
+			assertThat(buffer.isEmpty(), is(true));
+		}
+
+		@Test
+		@SuppressWarnings("PMD.DoNotUseThreads")
+		void receives_every_element_of_concurrent_producers() throws InterruptedException {
+			final MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(64);
+			final int producers = 4;
+			final int perProducer = 10_000;
+			final List<Thread> threads = new ArrayList<>();
+			for (int p = 0; p < producers; p++) {
+				final int offset = p * perProducer;
+				final Thread thread = new Thread(() -> {
+					for (int i = 0; i < perProducer; i++) {
+						while (!buffer.offer(offset + i)) {
+							Thread.yield();
+						}
+					}
+				});
+				threads.add(thread);
+				thread.start();
+			}
+			final Set<Integer> received = new HashSet<>();
+			while (received.size() < producers * perProducer) {
+				final Integer element = buffer.poll();
+				if (element != null) {
+					received.add(element);
+				}
+			}
+			for (final Thread thread : threads) {
+				thread.join();
+			}
+			assertThat(received, hasSize(producers * perProducer));
+			assertThat(buffer.poll(), is(nullValue()));
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package org.wensheng.juicyraspberrypie;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class ParsedCommandTests {
+	private static List<String> split(final String combined) {
+		final List<String> answers = new ArrayList<>();
+		final StringBuilder answer = new StringBuilder();
+		for (int i = 0; i < combined.length(); i++) {
+			final char c = combined.charAt(i);
+			if (c == '\\') {
+				answer.append(combined.charAt(++i));
+			} else if (c == '|') {
+				answers.add(answer.toString());
+				answer.setLength(0);
+			} else {
+				answer.append(c);
+			}
+		}
+		answers.add(answer.toString());
+		return answers;
+	}
+
+	@Nested
+	class combine {
+		@Test
+		void answers_ok_if_every_command_answered_ok() {
+			assertThat(ParsedCommand.combine(List.of("OK", "OK")), is("OK"));
+		}
+
+		@Test
+		void separates_the_answers_with_bars() {
+			assertThat(ParsedCommand.combine(List.of("OK", "1,2,3", "Fail: no")), is("OK|1,2,3|Fail: no"));
+		}
+
+		@Test
+		void escapes_bars_and_backslashes_within_answers() {
+			assertThat(ParsedCommand.combine(List.of("a|b", "c\\d")), is("a\\|b|c\\\\d"));
+		}
+
+		@Test
+		void keeps_answers_with_bars_and_backslashes_apart() {
+			final List<String> answers = List.of("stone|dirt", "\\", "|", "", "C:\\path\\|x", "OK");
+			assertThat(split(ParsedCommand.combine(answers)), is(answers));
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package org.wensheng.juicyraspberrypie;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class SessionSchedulerTests {
+	private static final long MILLIS = 1_000_000L;
+
+	private final TickBudget budget = new TickBudget(30 * MILLIS, 50 * MILLIS, 5 * MILLIS);
+
+	private void runTicks(final SessionScheduler scheduler, final int ticks) {
+		for (int i = 0; i < ticks; i++) {
+			budget.startTick(0);
+			scheduler.tick(budget);
+			budget.endTick();
+		}
+	}
+
+	@Nested
+	class tick {
+		@Test
+		void shares_the_budget_by_weight() {
+			final SessionScheduler scheduler = new SessionScheduler(Map.of("10.0.0.1", 2.0));
+			final FakeSession heavy = new FakeSession("10.0.0.1", MILLIS);
+			final FakeSession light = new FakeSession("10.0.0.2", MILLIS);
+			scheduler.add(heavy);
+			scheduler.add(light);
+			runTicks(scheduler, 10);
+			assertThat(heavy.executed, is(200));
+			assertThat(light.executed, is(100));
+		}
+
+		@Test
+		void gives_the_whole_budget_to_the_only_busy_session() {
+			final SessionScheduler scheduler = new SessionScheduler(Map.of());
+			final FakeSession busy = new FakeSession("10.0.0.1", MILLIS);
+			final FakeSession idle = new FakeSession("10.0.0.2", MILLIS);
+			idle.pending = 0;
+			scheduler.add(busy);
+			scheduler.add(idle);
+			runTicks(scheduler, 1);
+			assertThat(busy.executed, is(30));
+			assertThat(idle.executed, is(0));
+		}
+
+		@Test
+		void carries_overruns_over_to_the_next_ticks() {
+			final SessionScheduler scheduler = new SessionScheduler(Map.of());
+			final FakeSession slow = new FakeSession("10.0.0.1", 40 * MILLIS);
+			final FakeSession fast = new FakeSession("10.0.0.2", MILLIS);
+			scheduler.add(slow);
+			scheduler.add(fast);
+			runTicks(scheduler, 40);
+			final long slowNanos = slow.executed * 40 * MILLIS;
+			final long fastNanos = fast.executed * MILLIS;
+			assertThat((double) slowNanos / fastNanos, is(closeTo(1.0, 0.1)));
+		}
+
+		@Test
+		void removes_closed_sessions() {
+			final SessionScheduler scheduler = new SessionScheduler(Map.of());
+			final FakeSession session = new FakeSession("10.0.0.1", MILLIS);
+			scheduler.add(session);
+			runTicks(scheduler, 1);
+			session.pendingRemoval = true;
+			runTicks(scheduler, 1);
+			final int executed = session.executed;
+			session.pendingRemoval = false;
+			runTicks(scheduler, 1);
+			assertThat(session.closed, is(true));
+			assertThat(session.executed, is(executed));
+		}
+	}
+
+	private static final class FakeSession implements ScheduledSession {
+		private final String hostAddress;
+
+		private final long commandNanos;
+
+		private int pending = Integer.MAX_VALUE;
+
+		private int executed;
+
+		private boolean pendingRemoval;
+
+		private boolean closed;
+
+		private FakeSession(final String hostAddress, final long commandNanos) {
+			this.hostAddress = hostAddress;
+			this.commandNanos = commandNanos;
+		}
+
+		@Override
+		public String getHostAddress() {
+			return hostAddress;
+		}
+
+		@Override
+		public boolean hasPendingCommands() {
+			return pending > 0;
+		}
+
+		@Override
+		public long execute(final long allowanceNanos) {
+			long spentNanos = 0;
+			while (spentNanos < allowanceNanos && pending > 0) {
+				pending--;
+				executed++;
+				spentNanos += commandNanos;
+			}
+			return spentNanos;
+		}
+
+		@Override
+		public void tick() {
+		}
+
+		@Override
+		public boolean isPendingRemoval() {
+			return pendingRemoval;
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package org.wensheng.juicyraspberrypie;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class TickBudgetTests {
+	private static final long MILLIS = 1_000_000L;
+
+	private final TickBudget budget = new TickBudget(30 * MILLIS, 10 * MILLIS, 5 * MILLIS);
+
+	@Nested
+	class startTick {
+		@Test
+		void grants_the_maximum_on_an_idle_server() {
+			budget.startTick(5);
+			assertThat(budget.remaining(), is(30 * MILLIS));
+		}
+
+		@Test
+		void shrinks_to_the_headroom_of_a_busy_server() {
+			budget.startTick(42);
+			assertThat(budget.remaining(), is(8 * MILLIS));
+		}
+
+		@Test
+		void keeps_the_minimum_on_a_lagging_server() {
+			budget.startTick(120);
+			assertThat(budget.remaining(), is(MILLIS));
+		}
+
+		@Test
+		void does_not_count_time_spent_on_commands_as_other_work() {
+			for (int i = 0; i < 1000; i++) {
+				budget.startTick(45);
+				budget.spend(budget.remaining());
+				budget.endTick();
+			}
+			budget.startTick(45);
+			assertThat(budget.remaining(), is(greaterThan(5 * MILLIS)));
+		}
+
+		@Test
+		void resets_the_spent_time() {
+			budget.startTick(5);
+			budget.spend(20 * MILLIS);
+			budget.endTick();
+			budget.startTick(5);
+			assertThat(budget.remaining(), is(30 * MILLIS));
+		}
+	}
+
+	@Nested
+	class sessionAllowance {
+		@Test
+		void is_limited_by_the_session_maximum() {
+			budget.startTick(5);
+			assertThat(budget.sessionAllowance(0), is(10 * MILLIS));
+			assertThat(budget.sessionAllowance(4 * MILLIS), is(6 * MILLIS));
+		}
+
+		@Test
+		void is_limited_by_the_remaining_time() {
+			budget.startTick(5);
+			budget.spend(27 * MILLIS);
+			assertThat(budget.sessionAllowance(0), is(3 * MILLIS));
+		}
+	}
+
+	@Nested
+	class jobAllowance {
+		@Test
+		void is_limited_by_the_job_maximum() {
+			budget.startTick(5);
+			assertThat(budget.jobAllowance(), is(5 * MILLIS));
+		}
+
+		@Test
+		void keeps_the_minimum_when_sessions_used_everything() {
+			budget.startTick(5);
+			budget.spend(30 * MILLIS);
+			assertThat(budget.remaining(), is(0L));
+			assertThat(budget.jobAllowance(), is(MILLIS));
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package org.wensheng.juicyraspberrypie.command;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class CuboidTests {
+	private static List<int[]> visit(final Cuboid cuboid) {
+		final List<int[]> blocks = new ArrayList<>();
+		final CuboidCursor cursor = cuboid.cursor();
+		while (cursor.next()) {
+			blocks.add(new int[]{cursor.getX(), cursor.getY(), cursor.getZ(), (int) cursor.getIndex()});
+		}
+		return blocks;
+	}
+
+	@Nested
+	class cursor {
+		private final Cuboid cuboid = new Cuboid(null, 20, 40, -3, -5, 10, 17);
+
+		@Test
+		void visits_every_block_once() {
+			final Set<List<Integer>> visited = new HashSet<>();
+			for (final int[] block : visit(cuboid)) {
+				assertThat(visited.add(List.of(block[0], block[1], block[2])), is(true));
+				assertThat(block[0], is(both(greaterThanOrEqualTo(-5)).and(lessThanOrEqualTo(20))));
+				assertThat(block[1], is(both(greaterThanOrEqualTo(10)).and(lessThanOrEqualTo(40))));
+				assertThat(block[2], is(both(greaterThanOrEqualTo(-3)).and(lessThanOrEqualTo(17))));
+			}
+			assertThat((long) visited.size(), is(cuboid.getVolume()));
+		}
+
+		@Test
+		void visits_one_chunk_section_after_the_other() {
+			final Set<List<Integer>> finished = new HashSet<>();
+			List<Integer> current = null;
+			for (final int[] block : visit(cuboid)) {
+				final List<Integer> section = List.of(block[0] >> 4, block[1] >> 4, block[2] >> 4);
+				if (!section.equals(current)) {
+					assertThat(finished.add(section), is(true));
+					current = section;
+				}
+			}
+			assertThat(finished, hasSize(3 * 3 * 3));
+		}
+
+		@Test
+		void indexes_blocks_in_x_z_y_order() {
+			for (final int[] block : visit(cuboid)) {
+				final int expected = ((block[0] + 5) * cuboid.getSizeZ() + block[2] + 3) * cuboid.getSizeY() + block[1] - 10;
+				assertThat(block[3], is(expected));
+			}
+		}
+
+		@Test
+		void visits_a_single_block() {
+			final List<int[]> blocks = visit(new Cuboid(null, 7, 8, 9, 7, 8, 9));
+			assertThat(blocks, hasSize(1));
+			assertThat(blocks.get(0), is(new int[]{7, 8, 9, 0}));
+		}
+
+		@Test
+		void knows_which_blocks_are_ahead() {
+			final List<int[]> blocks = visit(cuboid);
+			final CuboidCursor cursor = cuboid.cursor();
+			for (int i = 0; cursor.next(); i++) {
+				if (i % 97 == 0) {
+					for (int j = 0; j < blocks.size(); j += 13) {
+						final int[] block = blocks.get(j);
+						assertThat(cursor.isAhead(block[0], block[1], block[2]), is(j > i));
+					}
+				}
+			}
+		}
+
+		@Test
+		void has_every_block_ahead_before_the_start_and_none_after_the_end() {
+			final CuboidCursor cursor = cuboid.cursor();
+			assertThat(cursor.isAhead(-5, 10, -3), is(true));
+			for (long i = 0; i < cuboid.getVolume(); i++) {
+				cursor.next();
+			}
+			assertThat(cursor.next(), is(false));
+			assertThat(cursor.isAhead(20, 40, 17), is(false));
+		}
+	}
+
+	@Nested
+	class volume {
+		@Test
+		void multiplies_the_sizes() {
+			assertThat(new Cuboid(null, 0, 0, 0, 9, 4, 1).getVolume(), is(100L));
+		}
+
+		@Test
+		void does_not_overflow_for_the_widest_coordinates() {
+			assertThat(new Cuboid(null, Integer.MIN_VALUE, 0, 0, Integer.MAX_VALUE, 0, 0).getVolume(), is(1L << 32));
+		}
+
+		@Test
+		void saturates_if_it_does_not_fit_in_a_long() {
+			final Cuboid cuboid = new Cuboid(null, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE,
+					Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+			assertThat(cuboid.getVolume(), is(Long.MAX_VALUE));
+		}
+	}
+}
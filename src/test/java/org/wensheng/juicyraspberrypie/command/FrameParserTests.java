@@ -0,0 +1,114 @@
+package org.wensheng.juicyraspberrypie.command;
+
+import org.bukkit.Material;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class FrameParserTests {
+	private final FrameParser parser = new FrameParser(null);
+
+	private final ByteBuffer body = ByteBuffer.allocate(256);
+
+	private boolean parse() {
+		body.flip();
+		return parser.parse(body);
+	}
+
+	private List<String> remainingArguments() {
+		final List<String> arguments = new ArrayList<>();
+		parser.getInstruction().forEachRemaining(arguments::add);
+		return arguments;
+	}
+
+	@Nested
+	class parse {
+		@Test
+		void reads_the_command_id() {
+			body.put((byte) 0);
+			Varints.write(body, 300);
+			assertThat(parse(), is(true));
+			assertThat(parser.getCommandId(), is(300));
+			assertThat(parser.getRequestId(), is(nullValue()));
+			assertThat(parser.getInstruction().hasNext(), is(false));
+		}
+
+		@Test
+		void reads_the_request_id_and_quiet_flag() {
+			body.put((byte) (FrameParser.FLAG_REQUEST_ID | FrameParser.FLAG_QUIET));
+			Varints.write(body, 42);
+			Varints.write(body, 7);
+			assertThat(parse(), is(true));
+			assertThat(parser.getRequestId(), is("42"));
+			assertThat(parser.isQuiet(), is(true));
+			assertThat(parser.getCommandId(), is(7));
+		}
+
+		@Test
+		void reads_typed_arguments() {
+			body.put((byte) 0).put((byte) 1);
+			body.put((byte) FrameParser.TYPE_INT).putInt(Integer.reverseBytes(-64));
+			body.put((byte) FrameParser.TYPE_DOUBLE).putLong(Long.reverseBytes(Double.doubleToLongBits(2.5)));
+			body.put((byte) FrameParser.TYPE_NULL);
+			body.put((byte) FrameParser.TYPE_MATERIAL);
+			Varints.write(body, Material.STONE.ordinal());
+			final byte[] text = "h\u00e9llo".getBytes(StandardCharsets.UTF_8);
+			body.put((byte) FrameParser.TYPE_STRING);
+			Varints.write(body, text.length);
+			body.put(text);
+			assertThat(parse(), is(true));
+			assertThat(remainingArguments(), contains(is("-64"), is("2.5"), nullValue(), is("STONE"), is("h\u00e9llo")));
+		}
+
+		@Test
+		void decodes_numbers_without_text() {
+			body.put((byte) 0).put((byte) 1);
+			body.put((byte) FrameParser.TYPE_INT).putInt(Integer.reverseBytes(-64));
+			body.put((byte) FrameParser.TYPE_DOUBLE).putLong(Long.reverseBytes(Double.doubleToLongBits(2.5)));
+			assertThat(parse(), is(true));
+			final Instruction instruction = parser.getInstruction();
+			assertThat(instruction.nextInt(), is(-64));
+			assertThat(instruction.nextDouble(), is(2.5));
+		}
+
+		@Test
+		void rejects_truncated_arguments() {
+			body.put((byte) 0).put((byte) 1);
+			body.put((byte) FrameParser.TYPE_INT).put((byte) 1);
+			assertThat(parse(), is(false));
+		}
+
+		@Test
+		void rejects_unknown_types() {
+			body.put((byte) 0).put((byte) 1).put((byte) 99);
+			assertThat(parse(), is(false));
+		}
+	}
+
+	@Nested
+	class getHandler {
+		@Test
+		void resolves_ids_in_registration_order() {
+			final Registry registry = new Registry();
+			final Handler first = (sessionAttachment, instruction) -> "first";
+			final Handler second = (sessionAttachment, instruction) -> "second";
+			registry.register("a", first);
+			registry.register("b", second);
+			registry.register("a", first);
+			body.put((byte) 0).put((byte) 1);
+			parse();
+			assertThat(parser.getHandler(registry), is(sameInstance(second)));
+			assertThat(registry.getCommands(), contains("a", "b"));
+			body.clear().put((byte) 0).put((byte) 2);
+			parse();
+			assertThat(parser.getHandler(registry), is(nullValue()));
+		}
+	}
+}
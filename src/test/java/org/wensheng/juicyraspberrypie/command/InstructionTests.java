@@ -47,4 +47,17 @@ class InstructionTests {
 			assertThat(instruction.hasNext(), is(false));
 		}
 	}
+
+	@Nested
+	class rewind {
+		@Test
+		void reads_arguments_again() {
+			final Instruction instruction = new Instruction(new String[]{"1", "two"}, null);
+			instruction.nextInt();
+			instruction.next();
+			instruction.rewind();
+			assertThat(instruction.nextInt(), is(1));
+			assertThat(instruction.allArguments(), is("two"));
+		}
+	}
 }
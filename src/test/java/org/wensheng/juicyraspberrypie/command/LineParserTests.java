@@ -0,0 +1,140 @@
+package org.wensheng.juicyraspberrypie.command;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class LineParserTests {
+	private final LineParser parser = new LineParser(null);
+
+	private List<String> remainingArguments() {
+		final List<String> arguments = new ArrayList<>();
+		parser.getInstruction().forEachRemaining(arguments::add);
+		return arguments;
+	}
+
+	@Nested
+	class parse {
+		@ParameterizedTest
+		@ValueSource(strings = {"", "   ", "world.getBlock", "world.getBlock(1,2,3,", "world.getBlock)1,2,3,("})
+		void rejects_wrong_format(@NotNull final String line) {
+			assertThat(parser.parse(line), is(false));
+		}
+
+		private static @NotNull Stream<Arguments> splits_arguments() {
+			return Stream.of(
+					Arguments.of("getPlayer()", "getPlayer", List.of()),
+					Arguments.of("  world.getBlock(1,2,3,)\r", "world.getBlock", List.of("1", "2", "3")),
+					Arguments.of("chat.post(hello world,)", "chat.post", List.of("hello world")),
+					Arguments.of("chat.post(unterminated)", "chat.post", List.of())
+			);
+		}
+
+		@ParameterizedTest
+		@MethodSource
+		void splits_arguments(@NotNull final String line, @NotNull final String method, @NotNull final List<String> arguments) {
+			assertThat(parser.parse(line), is(true));
+			assertThat(parser.getMethodName(), is(method));
+			assertThat(remainingArguments(), is(arguments));
+		}
+
+		@Test
+		void maps_empty_arguments_to_null() {
+			parser.parse("a(,two,,)");
+			assertThat(remainingArguments(), contains(nullValue(), is("two"), nullValue()));
+		}
+
+		@Test
+		void grows_beyond_initial_capacity() {
+			parser.parse("a(" + "x,".repeat(100) + ")");
+			assertThat(remainingArguments(), hasSize(100));
+		}
+
+		@Test
+		void creates_an_instruction_per_line() {
+			parser.parse("a(one,)");
+			parser.getInstruction().next();
+			parser.parse("b(two,)");
+			assertThat(remainingArguments(), contains("two"));
+		}
+	}
+
+	@Nested
+	class requestId {
+		@Test
+		void is_absent_without_prefix() {
+			parser.parse("world.getBlock(1,2,3,)");
+			assertThat(parser.getRequestId(), is(nullValue()));
+			assertThat(parser.isQuiet(), is(false));
+		}
+
+		@Test
+		void is_stripped_from_the_method_name() {
+			assertThat(parser.parse("#42 world.getBlock(1,2,3,)"), is(true));
+			assertThat(parser.getRequestId(), is("42"));
+			assertThat(parser.isQuiet(), is(false));
+			assertThat(parser.getMethodName(), is("world.getBlock"));
+		}
+
+		@Test
+		void may_ask_for_a_quiet_response() {
+			assertThat(parser.parse("#a7!   world.setBlock(1,2,3,stone,)"), is(true));
+			assertThat(parser.getRequestId(), is("a7"));
+			assertThat(parser.isQuiet(), is(true));
+		}
+
+		@Test
+		void is_kept_when_the_command_is_missing() {
+			assertThat(parser.parse("#42"), is(false));
+			assertThat(parser.getRequestId(), is("42"));
+		}
+
+		@ParameterizedTest
+		@ValueSource(strings = {"# world.getBlock(1,2,3,)", "#! world.getBlock(1,2,3,)"})
+		void must_not_be_empty(@NotNull final String line) {
+			assertThat(parser.parse(line), is(false));
+			assertThat(parser.getRequestId(), is(nullValue()));
+		}
+	}
+
+	@Nested
+	class getHandler {
+		@Test
+		void resolves_registered_methods() {
+			final Registry registry = new Registry();
+			final Handler handler = (sessionAttachment, instruction) -> "OK";
+			registry.register("world.getBlock", handler);
+			parser.parse("world.getBlock(1,2,3,)");
+			assertThat(parser.getHandler(registry), is(sameInstance(handler)));
+			parser.parse("world.getBlocks(1,2,3,)");
+			assertThat(parser.getHandler(registry), is(nullValue()));
+		}
+	}
+
+	@Nested
+	class numbers {
+		@ParameterizedTest
+		@ValueSource(strings = {"0", "-3", "2.5", "-0.0", "0.1", "123456.789", " 7 ", "1e3", "123456789012345678", ".5"})
+		void parse_like_Double_parseDouble(@NotNull final String number) {
+			parser.parse("a(" + number + ",)");
+			assertThat(parser.getInstruction().nextDouble(), is(Double.parseDouble(number)));
+		}
+
+		@Test
+		void parse_ints() {
+			parser.parse("a(-42,)");
+			assertThat(parser.getInstruction().nextInt(), is(-42));
+		}
+	}
+}
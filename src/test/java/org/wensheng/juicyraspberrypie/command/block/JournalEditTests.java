@@ -0,0 +1,158 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.bukkit.block.data.BlockData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+class JournalEditTests {
+	private static final BlockData STONE = TestWorld.blockData("stone");
+
+	private static final BlockData DIRT = TestWorld.blockData("dirt");
+
+	private static final BlockData GLASS = TestWorld.blockData("glass");
+
+	private final TestWorld world = new TestWorld();
+
+	private final Cuboid region = new Cuboid(world.getWorld(), 0, 0, 0, 17, 1, 1);
+
+	@TempDir
+	static Path directory;
+
+	private UndoJournal journal;
+
+	private UndoJournal journal() {
+		if (journal == null) {
+			journal = new UndoJournal(directory.resolve(UUID.randomUUID() + ".journal"), 1 << 20, 1 << 20, 16);
+		}
+		return journal;
+	}
+
+	@AfterEach
+	void close() throws IOException {
+		if (journal != null) {
+			journal.close();
+		}
+	}
+
+	@Nested
+	class recording {
+		@Test
+		void restores_the_blocks_before_and_after_the_edit() {
+			final JournalEdit edit = journal().begin(region);
+			world.set(edit, 1, 0, 0, STONE);
+			world.set(edit, 17, 1, 1, DIRT);
+			edit.end();
+			assertThat(journal().undo(Long.MAX_VALUE).run(), is(2));
+			assertThat(world.get(1, 0, 0), is(TestWorld.AIR));
+			assertThat(world.get(17, 1, 1), is(TestWorld.AIR));
+			assertThat(journal().redo(Long.MAX_VALUE).run(), is(2));
+			assertThat(world.get(1, 0, 0), is(STONE));
+			assertThat(world.get(17, 1, 1), is(DIRT));
+		}
+
+		@Test
+		void leaves_blocks_that_were_not_recorded() {
+			final JournalEdit edit = journal().begin(region);
+			world.set(edit, 2, 0, 0, STONE);
+			world.set(3, 0, 0, GLASS);
+			edit.end();
+			journal().undo(Long.MAX_VALUE).run();
+			assertThat(world.get(3, 0, 0), is(GLASS));
+		}
+
+		@Test
+		void keeps_recording_blocks_out_of_order() {
+			final JournalEdit edit = journal().begin(region);
+			world.set(edit, 17, 1, 1, STONE);
+			world.set(edit, 0, 0, 0, DIRT);
+			world.set(edit, 16, 0, 0, GLASS);
+			world.set(edit, 5, 1, 1, STONE);
+			assertThat(edit.isRecording(), is(true));
+			edit.end();
+			assertThat(journal().undo(Long.MAX_VALUE).run(), is(4));
+			assertThat(world.get(17, 1, 1), is(TestWorld.AIR));
+			assertThat(world.get(0, 0, 0), is(TestWorld.AIR));
+			assertThat(world.get(16, 0, 0), is(TestWorld.AIR));
+			assertThat(world.get(5, 1, 1), is(TestWorld.AIR));
+			journal().redo(Long.MAX_VALUE).run();
+			assertThat(world.get(17, 1, 1), is(STONE));
+			assertThat(world.get(0, 0, 0), is(DIRT));
+			assertThat(world.get(16, 0, 0), is(GLASS));
+			assertThat(world.get(5, 1, 1), is(STONE));
+		}
+
+		@Test
+		void restores_the_first_and_the_last_data_of_a_block_written_twice() {
+			world.set(4, 0, 0, GLASS);
+			final JournalEdit edit = journal().begin(region);
+			world.set(edit, 4, 0, 0, STONE);
+			world.set(edit, 4, 0, 0, DIRT);
+			world.set(edit, 4, 0, 0, TestWorld.AIR);
+			edit.end();
+			journal().undo(Long.MAX_VALUE).run();
+			assertThat(world.get(4, 0, 0), is(GLASS));
+			journal().redo(Long.MAX_VALUE).run();
+			assertThat(world.get(4, 0, 0), is(TestWorld.AIR));
+		}
+
+		@Test
+		void ignores_blocks_outside_the_region() {
+			final JournalEdit edit = journal().begin(region);
+			world.set(edit, 18, 0, 0, STONE);
+			edit.end();
+			assertThat(journal().undo(Long.MAX_VALUE).run(), is(0));
+			assertThat(world.get(18, 0, 0), is(STONE));
+		}
+
+		@Test
+		void does_nothing_once_ended() {
+			final JournalEdit edit = journal().begin(region);
+			world.set(edit, 1, 0, 0, STONE);
+			edit.end();
+			world.set(edit, 2, 0, 0, STONE);
+			edit.end();
+			assertThat(journal().getUndoCount(), is(1));
+			assertThat(journal().undo(Long.MAX_VALUE).run(), is(1));
+			assertThat(world.get(2, 0, 0), is(STONE));
+		}
+	}
+
+	@Nested
+	class memory {
+		@Test
+		void grows_with_the_recorded_blocks() {
+			final JournalEdit edit = journal().begin(region);
+			final long empty = edit.memorySize();
+			for (int x = 0; x < 16; x++) {
+				world.set(edit, x, 0, 0, x % 2 == 0 ? STONE : DIRT);
+			}
+			assertThat(edit.memorySize(), is(greaterThan(empty)));
+		}
+
+		@Test
+		void keeps_only_the_palette_once_moved_to_the_file() throws IOException {
+			final JournalEdit edit = journal().begin(region);
+			for (int x = 0; x < 16; x++) {
+				world.set(edit, x, 0, 0, x % 2 == 0 ? STONE : DIRT);
+			}
+			edit.end();
+			final long sealed = edit.memorySize();
+			try (JournalFile file = new JournalFile(directory.resolve(UUID.randomUUID() + ".journal"))) {
+				edit.moveToFile(file);
+				assertThat(edit.isInFile(), is(true));
+				assertThat(edit.memorySize(), is(sealed - edit.runsSize()));
+				assertThat(file.size(), is(edit.runsSize()));
+			}
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.CuboidCursor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.stream.Stream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MeshVoxelizerTests {
+	private static final Cuboid BOUNDS = new Cuboid(null, -40, -64, -40, 40, 100, 40);
+
+	private static final float[] SQUARE = {0, 0, 0, 4, 0, 0, 4, 0, 4, 0, 0, 4};
+
+	private static final int[] SQUARE_FACES = {0, 1, 2, 0, 0, 2, 3, 0};
+
+	private static long[] voxelize(final float[] vertices, final int[] faces, final Cuboid bounds, final int maxBlocks) {
+		return MeshVoxelizer.voxelize(vertices, faces, 0, 0, 0, bounds, maxBlocks, () -> false);
+	}
+
+	@Nested
+	class keys {
+		private static Stream<Arguments> hold_the_position_of_the_block() {
+			return Stream.of(
+					Arguments.of(0, 0, 0),
+					Arguments.of(-1, -1, -1),
+					Arguments.of(-40, -64, -40),
+					Arguments.of(40, 100, 40),
+					Arguments.of(17, -33, -16),
+					Arguments.of(-17, 33, 15)
+			);
+		}
+
+		@ParameterizedTest
+		@MethodSource
+		void hold_the_position_of_the_block(final int x, final int y, final int z) {
+			final long[] keys = voxelize(new float[]{x, y, z}, new int[]{0, 0, 0, 7}, BOUNDS, 10);
+			assertThat(keys.length, is(1));
+			assertThat(MeshVoxelizer.getX(keys[0], BOUNDS), is(x));
+			assertThat(MeshVoxelizer.getY(keys[0], BOUNDS), is(y));
+			assertThat(MeshVoxelizer.getZ(keys[0], BOUNDS), is(z));
+			assertThat(MeshVoxelizer.getPaletteIndex(keys[0]), is(7));
+		}
+
+		@Test
+		void hold_the_largest_palette_index() {
+			final long[] keys = voxelize(new float[]{-3, -3, -3}, new int[]{0, 0, 0, MeshVoxelizer.MAX_PALETTE - 1}, BOUNDS, 10);
+			assertThat(MeshVoxelizer.getPaletteIndex(keys[0]), is(MeshVoxelizer.MAX_PALETTE - 1));
+			assertThat(MeshVoxelizer.getX(keys[0], BOUNDS), is(-3));
+		}
+
+		@Test
+		void are_sorted_in_the_order_of_a_cursor() {
+			final float[] vertices = {-20, -10, -20, 20, 30, -20, 0, 5, 20};
+			final long[] keys = voxelize(vertices, new int[]{0, 1, 2, 0}, BOUNDS, 100_000);
+			final List<List<Integer>> expected = new ArrayList<>();
+			final CuboidCursor cursor = BOUNDS.cursor();
+			while (cursor.next()) {
+				if (MeshVoxelizer.contains(keys, cursor.getX(), cursor.getY(), cursor.getZ(), BOUNDS)) {
+					expected.add(List.of(cursor.getX(), cursor.getY(), cursor.getZ()));
+				}
+			}
+			final List<List<Integer>> actual = new ArrayList<>();
+			for (final long key : keys) {
+				actual.add(List.of(MeshVoxelizer.getX(key, BOUNDS), MeshVoxelizer.getY(key, BOUNDS), MeshVoxelizer.getZ(key, BOUNDS)));
+			}
+			assertThat(actual, is(expected));
+		}
+	}
+
+	@Nested
+	class voxelize {
+		@Test
+		void fills_a_flat_square() {
+			final long[] keys = voxelize(SQUARE, SQUARE_FACES, BOUNDS, 100);
+			assertThat(keys.length, is(25));
+			for (int x = 0; x <= 4; x++) {
+				for (int z = 0; z <= 4; z++) {
+					assertThat(MeshVoxelizer.contains(keys, x, 0, z, BOUNDS), is(true));
+				}
+			}
+			assertThat(MeshVoxelizer.contains(keys, 5, 0, 0, BOUNDS), is(false));
+			assertThat(MeshVoxelizer.contains(keys, 0, 1, 0, BOUNDS), is(false));
+		}
+
+		@Test
+		void places_the_mesh_at_the_origin() {
+			final long[] keys = MeshVoxelizer.voxelize(SQUARE, SQUARE_FACES, 10, 20, -30, BOUNDS, 100, () -> false);
+			assertThat(MeshVoxelizer.contains(keys, 14, 20, -26, BOUNDS), is(true));
+			assertThat(MeshVoxelizer.contains(keys, 0, 0, 0, BOUNDS), is(false));
+		}
+
+		@Test
+		void keeps_the_lower_palette_index_where_faces_meet() {
+			final long[] keys = voxelize(SQUARE, new int[]{0, 1, 2, 3, 0, 1, 2, 1}, BOUNDS, 100);
+			for (final long key : keys) {
+				assertThat(MeshVoxelizer.getPaletteIndex(key), is(1));
+			}
+		}
+
+		@Test
+		void leaves_out_blocks_outside_the_bounds() {
+			final Cuboid bounds = new Cuboid(null, 0, 0, 0, 2, 0, 2);
+			final long[] keys = voxelize(SQUARE, SQUARE_FACES, bounds, 100);
+			assertThat(keys.length, is(9));
+			assertThat(MeshVoxelizer.contains(keys, 3, 0, 3, bounds), is(false));
+		}
+
+		@Test
+		void rejects_meshes_with_too_many_blocks() {
+			assertThrows(IllegalArgumentException.class, () -> voxelize(SQUARE, SQUARE_FACES, BOUNDS, 24));
+		}
+
+		@Test
+		void rejects_long_thin_triangles_before_sampling_them() {
+			final float[] vertices = {0, 0, 0, 60000, 0, 0, 60000, 0, 0.01f};
+			final Cuboid bounds = new Cuboid(null, 0, 0, 0, 60000, 0, 0);
+			final IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+					() -> voxelize(vertices, new int[]{0, 1, 2, 0}, bounds, 100_000));
+			assertThat(e.getMessage(), containsString("samples"));
+		}
+
+		@Test
+		void rejects_vertices_far_away() {
+			final float[] vertices = {0, 0, 0, 0, 1e30f, 0, 1, 0, 0};
+			assertThrows(IllegalArgumentException.class, () -> voxelize(vertices, new int[]{0, 1, 2, 0}, BOUNDS, Integer.MAX_VALUE));
+		}
+
+		@Test
+		void rejects_missing_vertices() {
+			assertThrows(IllegalArgumentException.class, () -> voxelize(SQUARE, new int[]{0, 1, 4, 0}, BOUNDS, 100));
+		}
+
+		@Test
+		void rejects_bounds_that_are_too_high() {
+			final Cuboid bounds = new Cuboid(null, 0, -64, 0, 1, MeshVoxelizer.MAX_HEIGHT, 1);
+			assertThrows(IllegalArgumentException.class, () -> voxelize(SQUARE, SQUARE_FACES, bounds, 100));
+		}
+
+		@Test
+		void rejects_bounds_that_are_too_wide() {
+			final Cuboid bounds = new Cuboid(null, 0, 0, 0, MeshVoxelizer.MAX_SIZE, 0, 1);
+			assertThrows(IllegalArgumentException.class, () -> voxelize(SQUARE, SQUARE_FACES, bounds, 100));
+		}
+
+		@Test
+		void stops_once_cancelled() {
+			assertThrows(CancellationException.class,
+					() -> MeshVoxelizer.voxelize(SQUARE, SQUARE_FACES, 0, 0, 0, BOUNDS, 100, () -> true));
+		}
+	}
+}
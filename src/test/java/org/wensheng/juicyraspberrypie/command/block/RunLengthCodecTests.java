@@ -0,0 +1,98 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RunLengthCodecTests {
+	private static int[] terrain() {
+		final int[] indices = new int[64 * 64 * 64];
+		final Random random = new Random(42);
+		for (int column = 0; column < 64 * 64; column++) {
+			final int surface = 20 + random.nextInt(8);
+			for (int y = 0; y < 64; y++) {
+				indices[column * 64 + y] = y < surface ? 1 : y == surface ? 2 : 0;
+			}
+		}
+		return indices;
+	}
+
+	@Nested
+	class encode {
+		@Test
+		void writes_length_and_index_of_every_run() {
+			assertThat(RunLengthCodec.encode(new int[]{3, 3, 3, 0, 200}, false),
+					is(new byte[]{3, 3, 1, 0, 1, (byte) 0xC8, 1}));
+		}
+
+		@Test
+		void writes_nothing_for_no_indices() {
+			assertThat(RunLengthCodec.encode(new int[0], false).length, is(0));
+		}
+
+		@Test
+		void shrinks_terrain() {
+			assertThat(RunLengthCodec.encode(terrain(), true).length, is(lessThan(64 * 64 * 64 / 50)));
+		}
+	}
+
+	@Nested
+	class decode {
+		@ParameterizedTest
+		@ValueSource(booleans = {false, true})
+		void restores_encoded_indices(final boolean compress) {
+			final int[] indices = terrain();
+			assertThat(RunLengthCodec.decode(RunLengthCodec.encode(indices, compress), indices.length, compress), is(indices));
+		}
+
+		@Test
+		void rejects_too_few_indices() {
+			assertThrows(IllegalArgumentException.class, () -> RunLengthCodec.decode(new byte[]{3, 0}, 4, false));
+		}
+
+		@Test
+		void rejects_too_many_indices() {
+			assertThrows(IllegalArgumentException.class, () -> RunLengthCodec.decode(new byte[]{3, 0, 2, 1}, 4, false));
+		}
+
+		@Test
+		void rejects_truncated_runs() {
+			assertThrows(IllegalArgumentException.class, () -> RunLengthCodec.decode(new byte[]{4}, 4, false));
+		}
+
+		@Test
+		void rejects_malformed_compressed_data() {
+			final byte[] data = new byte[16];
+			Arrays.fill(data, (byte) 0x55);
+			assertThrows(IllegalArgumentException.class, () -> RunLengthCodec.decode(data, 4, true));
+		}
+	}
+
+	@Nested
+	class decoder {
+		@Test
+		void restores_encoded_indices_one_at_a_time() {
+			final int[] indices = terrain();
+			final RunLengthCodec.Decoder decoder = new RunLengthCodec.Decoder(RunLengthCodec.encode(indices, false));
+			final int[] decoded = new int[indices.length];
+			for (int i = 0; i < decoded.length; i++) {
+				decoded[i] = decoder.next();
+			}
+			assertThat(decoded, is(indices));
+			assertThrows(IllegalArgumentException.class, decoder::next);
+		}
+
+		@Test
+		void rejects_truncated_runs() {
+			assertThrows(IllegalArgumentException.class, () -> new RunLengthCodec.Decoder(new byte[]{4}).next());
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+final class TestWorld {
+	static final BlockData AIR = blockData("air");
+
+	private final Map<List<Integer>, BlockData> blocks = new HashMap<>();
+
+	private final World world = (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class},
+			(proxy, method, args) -> "getBlockAt".equals(method.getName()) && args.length == 3
+					? block((Integer) args[0], (Integer) args[1], (Integer) args[2]) : null);
+
+	static BlockData blockData(final String name) {
+		return (BlockData) Proxy.newProxyInstance(BlockData.class.getClassLoader(), new Class<?>[]{BlockData.class},
+				(proxy, method, args) -> switch (method.getName()) {
+					case "equals" -> proxy == args[0];
+					case "hashCode" -> System.identityHashCode(proxy);
+					case "toString", "getAsString" -> name;
+					default -> null;
+				});
+	}
+
+	private Block block(final int x, final int y, final int z) {
+		final List<Integer> position = List.of(x, y, z);
+		return (Block) Proxy.newProxyInstance(Block.class.getClassLoader(), new Class<?>[]{Block.class},
+				(proxy, method, args) -> switch (method.getName()) {
+					case "getBlockData" -> get(x, y, z);
+					case "setBlockData" -> blocks.put(position, (BlockData) args[0]);
+					case "getX" -> x;
+					case "getY" -> y;
+					case "getZ" -> z;
+					default -> null;
+				});
+	}
+
+	World getWorld() {
+		return world;
+	}
+
+	BlockData get(final int x, final int y, final int z) {
+		return blocks.getOrDefault(List.of(x, y, z), AIR);
+	}
+
+	void set(final int x, final int y, final int z, final BlockData data) {
+		blocks.put(List.of(x, y, z), data);
+	}
+
+	void set(final JournalEdit edit, final int x, final int y, final int z, final BlockData data) {
+		edit.record(x, y, z, get(x, y, z), data);
+		set(x, y, z, data);
+	}
+}
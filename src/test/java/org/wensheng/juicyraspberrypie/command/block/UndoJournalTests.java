@@ -0,0 +1,302 @@
+package org.wensheng.juicyraspberrypie.command.block;
+
+import org.bukkit.block.data.BlockData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UndoJournalTests {
+	private static final BlockData STONE = TestWorld.blockData("stone");
+
+	private static final BlockData DIRT = TestWorld.blockData("dirt");
+
+	private final TestWorld world = new TestWorld();
+
+	@TempDir
+	static Path directory;
+
+	private final List<UndoJournal> journals = new ArrayList<>();
+
+	private UndoJournal journal(final long memoryLimit, final long fileLimit, final int maxEdits) {
+		final UndoJournal journal = new UndoJournal(directory.resolve(UUID.randomUUID() + ".journal"), memoryLimit, fileLimit, maxEdits);
+		journals.add(journal);
+		return journal;
+	}
+
+	private UndoJournal journal() {
+		return journal(1 << 20, 1 << 20, 16);
+	}
+
+	private Cuboid column(final int x) {
+		return new Cuboid(world.getWorld(), x, 0, 0, x, 1023, 0);
+	}
+
+	private void fill(final UndoJournal journal, final int x) {
+		final JournalEdit edit = journal.begin(column(x));
+		for (int y = 0; y < 1024; y++) {
+			world.set(edit, x, y, 0, y % 3 == 0 ? STONE : DIRT);
+		}
+		edit.end();
+	}
+
+	/**
+	 * Measure the memory of one edit of {@link #fill}, once in memory and once moved to the file, and the size of its
+	 * runs in the file.
+	 */
+	private long[] measure() {
+		final UndoJournal inMemory = journal();
+		fill(inMemory, 1000);
+		final long memory = inMemory.memorySize();
+		final UndoJournal inFile = journal(memory - 1, 1 << 20, 16);
+		fill(inFile, 1001);
+		return new long[]{memory, inFile.memorySize(), inFile.fileSize()};
+	}
+
+	@AfterEach
+	void close() throws IOException {
+		for (final UndoJournal journal : journals) {
+			journal.close();
+		}
+	}
+
+	@Nested
+	class edits {
+		@Test
+		void undo_and_redo_the_newest_edit_first() {
+			final UndoJournal journal = journal();
+			fill(journal, 0);
+			fill(journal, 1);
+			journal.undo(Long.MAX_VALUE).run();
+			assertThat(world.get(1, 0, 0), is(TestWorld.AIR));
+			assertThat(world.get(0, 0, 0), is(not(TestWorld.AIR)));
+			journal.redo(Long.MAX_VALUE).run();
+			assertThat(world.get(1, 0, 0), is(not(TestWorld.AIR)));
+			assertThat(journal.getUndoCount(), is(2));
+		}
+
+		@Test
+		void forget_the_edits_to_redo_when_a_new_edit_begins() {
+			final UndoJournal journal = journal();
+			fill(journal, 0);
+			journal.undo(Long.MAX_VALUE).run();
+			fill(journal, 1);
+			assertThat(journal.getRedoCount(), is(0));
+			assertThrows(IllegalStateException.class, () -> journal.redo(Long.MAX_VALUE));
+		}
+
+		@Test
+		void fail_without_edits() {
+			final UndoJournal journal = journal();
+			assertThrows(IllegalStateException.class, () -> journal.undo(Long.MAX_VALUE));
+			assertThrows(IllegalStateException.class, () -> journal.redo(Long.MAX_VALUE));
+		}
+
+		@Test
+		void end_the_edit_of_a_failed_command_with_the_next_command() {
+			final UndoJournal journal = journal();
+			world.set(journal.begin(column(0)), 0, 0, 0, STONE);
+			assertThat(journal.getUndoCount(), is(0));
+			journal.begin(column(1));
+			assertThat(journal.getUndoCount(), is(1));
+		}
+
+		@Test
+		void tell_the_regions_of_the_edits_to_undo_and_redo() {
+			final UndoJournal journal = journal();
+			assertThat(journal.peekUndoRegion(), is(nullValue()));
+			fill(journal, 0);
+			fill(journal, 1);
+			journal.undo(Long.MAX_VALUE).run();
+			assertThat(journal.peekUndoRegion().getMinX(), is(0));
+			assertThat(journal.peekRedoRegion().getMinX(), is(1));
+			journal.begin(column(2));
+			assertThat(journal.peekUndoRegion().getMinX(), is(2));
+			assertThat(journal.peekRedoRegion(), is(nullValue()));
+		}
+
+		@Test
+		void end_the_edit_of_a_failed_command_on_undo() {
+			final UndoJournal journal = journal();
+			world.set(journal.begin(column(0)), 0, 0, 0, STONE);
+			assertThat(journal.undo(Long.MAX_VALUE).run(), is(1));
+			assertThat(world.get(0, 0, 0), is(TestWorld.AIR));
+		}
+	}
+
+	@Nested
+	class jobs {
+		@Test
+		void keep_recording_while_commands_run_and_edits_are_undone() {
+			final UndoJournal journal = journal();
+			final JournalEdit job = journal.beginJob(column(5));
+			world.set(job, 5, 0, 0, STONE);
+			fill(journal, 0);
+			world.set(job, 5, 1, 0, STONE);
+			journal.undo(Long.MAX_VALUE).run();
+			assertThat(world.get(0, 0, 0), is(TestWorld.AIR));
+			assertThat(world.get(5, 0, 0), is(STONE));
+			world.set(job, 5, 2, 0, STONE);
+			assertThat(journal.getRecordingCount(), is(1));
+			job.end();
+			assertThat(journal.getRecordingCount(), is(0));
+			assertThat(journal.undo(Long.MAX_VALUE).run(), is(3));
+			assertThat(world.get(5, 0, 0), is(TestWorld.AIR));
+			assertThat(world.get(5, 2, 0), is(TestWorld.AIR));
+		}
+
+		@Test
+		void join_the_edits_to_undo_when_they_end() {
+			final UndoJournal journal = journal();
+			final JournalEdit first = journal.beginJob(column(0));
+			final JournalEdit second = journal.beginJob(column(1));
+			world.set(first, 0, 0, 0, STONE);
+			world.set(second, 1, 0, 0, STONE);
+			second.end();
+			first.end();
+			journal.undo(Long.MAX_VALUE).run();
+			assertThat(world.get(0, 0, 0), is(TestWorld.AIR));
+			assertThat(world.get(1, 0, 0), is(STONE));
+		}
+
+		@Test
+		void stop_recording_once_the_journal_is_closed() throws IOException {
+			final UndoJournal journal = journal();
+			final JournalEdit job = journal.beginJob(column(0));
+			journal.close();
+			world.set(job, 0, 0, 0, STONE);
+			job.end();
+			assertThat(job.isRecording(), is(false));
+			assertThat(journal.getUndoCount(), is(0));
+		}
+	}
+
+	@Nested
+	class replays {
+		@Test
+		void write_the_blocks_step_by_step() {
+			final UndoJournal journal = journal();
+			fill(journal, 0);
+			final EditReplay replay = journal.undo(Long.MAX_VALUE);
+			assertThat(replay.getTotal(), is(2048L));
+			for (int i = 0; i < 1024; i++) {
+				assertThat(replay.step(), is(false));
+			}
+			assertThat(world.get(0, 0, 0), is(STONE));
+			while (!replay.step()) {
+				assertThat(replay.getDone(), is(lessThanOrEqualTo(replay.getTotal())));
+			}
+			assertThat(replay.getDone(), is(2048L));
+			assertThat(replay.getWritten(), is(1024));
+			assertThat(world.get(0, 0, 0), is(TestWorld.AIR));
+			assertThat(world.get(0, 1023, 0), is(TestWorld.AIR));
+		}
+
+		@Test
+		void refuse_edits_with_more_blocks_than_allowed() {
+			final UndoJournal journal = journal();
+			fill(journal, 0);
+			assertThrows(IllegalArgumentException.class, () -> journal.undo(1023));
+			assertThat(journal.getUndoCount(), is(1));
+			assertThat(journal.undo(1024).run(), is(1024));
+		}
+
+		@Test
+		void refuse_an_edit_that_is_still_being_replayed() {
+			final UndoJournal journal = journal();
+			fill(journal, 0);
+			final EditReplay replay = journal.undo(Long.MAX_VALUE);
+			replay.step();
+			assertThrows(IllegalStateException.class, () -> journal.redo(Long.MAX_VALUE));
+			replay.stop();
+			assertThat(journal.redo(Long.MAX_VALUE).run(), is(1024));
+		}
+	}
+
+	@Nested
+	class limits {
+		@Test
+		void forget_the_oldest_edits_beyond_the_number_of_edits() {
+			final UndoJournal journal = journal(1 << 20, 1 << 20, 3);
+			for (int x = 0; x < 5; x++) {
+				fill(journal, x);
+			}
+			assertThat(journal.getUndoCount(), is(3));
+		}
+
+		@Test
+		void move_old_edits_to_the_file_and_undo_them_from_there() {
+			final long[] size = measure();
+			final UndoJournal journal = journal(size[0] + 3 * size[1], 1 << 20, 16);
+			for (int x = 0; x < 4; x++) {
+				fill(journal, x);
+			}
+			assertThat(journal.fileSize(), is(3 * size[2]));
+			for (int x = 3; x >= 0; x--) {
+				assertThat(journal.undo(Long.MAX_VALUE).run(), is(1024));
+				assertThat(world.get(x, 0, 0), is(TestWorld.AIR));
+			}
+			for (int x = 0; x < 4; x++) {
+				journal.redo(Long.MAX_VALUE).run();
+			}
+			assertThat(world.get(0, 3, 0), is(STONE));
+			assertThat(world.get(3, 4, 0), is(DIRT));
+		}
+
+		@Test
+		void keep_the_newest_edits_in_memory_when_the_file_is_full() {
+			final long[] size = measure();
+			final UndoJournal journal = journal(2 * size[0] + 3 * size[1], 3 * size[2], 64);
+			for (int x = 0; x < 20; x++) {
+				fill(journal, x);
+			}
+			assertThat(journal.getUndoCount(), is(5));
+			assertThat(journal.memorySize(), is(2 * size[0] + 3 * size[1]));
+			assertThat(journal.fileSize(), is(3 * size[2]));
+			for (int x = 19; x > 14; x--) {
+				journal.undo(Long.MAX_VALUE).run();
+				assertThat(world.get(x, 0, 0), is(TestWorld.AIR));
+				assertThat(world.get(x - 1, 0, 0), is(STONE));
+			}
+		}
+
+		@Test
+		void reclaim_the_file_once_its_edits_are_forgotten() {
+			final long[] size = measure();
+			final UndoJournal journal = journal(size[0] + 2 * size[1], 1 << 20, 16);
+			fill(journal, 0);
+			fill(journal, 1);
+			assertThat(journal.fileSize(), is(size[2]));
+			journal.undo(Long.MAX_VALUE).run();
+			journal.undo(Long.MAX_VALUE).run();
+			fill(journal, 2);
+			assertThat(journal.fileSize(), is(0L));
+			assertThat(journal.getUndoCount(), is(1));
+		}
+
+		@Test
+		void count_the_memory_of_every_edit() {
+			final UndoJournal journal = journal();
+			fill(journal, 0);
+			final long one = journal.memorySize();
+			fill(journal, 1);
+			fill(journal, 2);
+			assertThat(journal.memorySize(), is(greaterThan(2 * one)));
+			journal.undo(Long.MAX_VALUE).run();
+			fill(journal, 3);
+			assertThat(journal.getUndoCount(), is(3));
+			assertThat(journal.memorySize(), is(lessThan(4 * one)));
+		}
+	}
+}
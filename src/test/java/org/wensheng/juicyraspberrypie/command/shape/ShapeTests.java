@@ -0,0 +1,197 @@
+package org.wensheng.juicyraspberrypie.command.shape;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.wensheng.juicyraspberrypie.command.Cuboid;
+import org.wensheng.juicyraspberrypie.command.CuboidCursor;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ShapeTests {
+	private static final World WORLD = (World) Proxy.newProxyInstance(World.class.getClassLoader(),
+			new Class<?>[]{World.class}, (proxy, method, args) -> switch (method.getName()) {
+				case "getMinHeight" -> -64;
+				case "getMaxHeight" -> 320;
+				default -> null;
+			});
+
+	private static Location at(final double x, final double y, final double z) {
+		return new Location(WORLD, x, y, z);
+	}
+
+	private static Set<List<Integer>> blocks(final Shape shape) {
+		final Set<List<Integer>> blocks = new HashSet<>();
+		final CuboidCursor cursor = shape.getBounds().cursor();
+		while (cursor.next()) {
+			if (shape.contains(cursor.getX(), cursor.getY(), cursor.getZ())) {
+				blocks.add(List.of(cursor.getX(), cursor.getY(), cursor.getZ()));
+			}
+		}
+		return blocks;
+	}
+
+	private static boolean connected(final Set<List<Integer>> blocks, final List<Integer> from, final List<Integer> to) {
+		final Set<List<Integer>> seen = new HashSet<>(List.of(from));
+		final Deque<List<Integer>> queue = new ArrayDeque<>(List.of(from));
+		while (!queue.isEmpty()) {
+			final List<Integer> block = queue.poll();
+			if (block.equals(to)) {
+				return true;
+			}
+			for (int dx = -1; dx <= 1; dx++) {
+				for (int dy = -1; dy <= 1; dy++) {
+					for (int dz = -1; dz <= 1; dz++) {
+						final List<Integer> next = List.of(block.get(0) + dx, block.get(1) + dy, block.get(2) + dz);
+						if (blocks.contains(next) && seen.add(next)) {
+							queue.add(next);
+						}
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	@Nested
+	class line {
+		@Test
+		void has_no_gaps_on_a_3d_diagonal() {
+			final Set<List<Integer>> blocks = blocks(new Line(at(0, 0, 0), at(10, 5, 5), 1));
+			assertThat(connected(blocks, List.of(0, 0, 0), List.of(10, 5, 5)), is(true));
+			for (int x = 0; x <= 10; x++) {
+				final int column = x;
+				assertThat(blocks.stream().anyMatch(block -> block.get(0) == column), is(true));
+			}
+		}
+
+		@ParameterizedTest
+		@ValueSource(ints = {1, 3, 7, 13})
+		void connects_its_ends_in_any_direction(final int seed) {
+			final Random random = new Random(seed);
+			final int[] end = {random.nextInt(41) - 20, random.nextInt(41) - 20, random.nextInt(41) - 20};
+			final Set<List<Integer>> blocks = blocks(new Line(at(0, 100, 0), at(end[0], 100 + end[1], end[2]), 1));
+			assertThat(connected(blocks, List.of(0, 100, 0), List.of(end[0], 100 + end[1], end[2])), is(true));
+		}
+
+		@Test
+		void is_one_block_wide_along_an_axis() {
+			assertThat(blocks(new Line(at(0, 0, 0), at(9, 0, 0), 1)), hasSize(10));
+		}
+
+		@Test
+		void does_not_take_every_block_around_an_edge_it_passes_through() {
+			assertThat(blocks(new Line(at(0, 0, 0), at(5, 5, 0), 1)), hasSize(lessThanOrEqualTo(11)));
+		}
+
+		@Test
+		void contains_the_blocks_within_half_the_thickness() {
+			final Line line = new Line(at(0, 0, 0), at(10, 0, 0), 5);
+			assertThat(line.contains(5, 2, 0), is(true));
+			assertThat(line.contains(5, 2, 2), is(false));
+		}
+	}
+
+	@Nested
+	class polygon {
+		@Test
+		void has_no_gaps_in_a_tilted_outline() {
+			final Polygon polygon = new Polygon(List.of(at(0, 0, 0), at(12, 7, 3), at(3, 9, 11)), false, 1);
+			final Set<List<Integer>> blocks = blocks(polygon);
+			assertThat(connected(blocks, List.of(0, 0, 0), List.of(12, 7, 3)), is(true));
+			assertThat(connected(blocks, List.of(12, 7, 3), List.of(3, 9, 11)), is(true));
+		}
+
+		@Test
+		void fills_a_tilted_plane_without_holes() {
+			final Polygon polygon = new Polygon(List.of(at(0, 0, 0), at(20, 10, 0), at(20, 10, 20), at(0, 0, 20)), true, 1);
+			final Set<List<Integer>> blocks = blocks(polygon);
+			for (int x = 1; x < 20; x++) {
+				for (int z = 1; z < 20; z++) {
+					final int column = x;
+					final int row = z;
+					assertThat(blocks.stream().anyMatch(block -> block.get(0) == column && block.get(2) == row), is(true));
+				}
+			}
+		}
+
+		@Test
+		void fills_a_flat_square() {
+			final Polygon polygon = new Polygon(List.of(at(0, 64, 0), at(4, 64, 0), at(4, 64, 4), at(0, 64, 4)), true, 1);
+			assertThat(blocks(polygon), hasSize(25));
+		}
+
+		@Test
+		void rejects_points_on_one_line() {
+			assertThrows(IllegalArgumentException.class, () -> new Polygon(List.of(at(0, 0, 0), at(1, 1, 1), at(2, 2, 2)), true, 1));
+		}
+	}
+
+	@Nested
+	class sphere {
+		@Test
+		void contains_the_blocks_closer_than_the_radius() {
+			final Sphere sphere = new Sphere(at(0, 64, 0), 3, 0);
+			assertThat(sphere.contains(0, 66, 0), is(true));
+			assertThat(sphere.contains(0, 67, 0), is(false));
+			assertThat(sphere.contains(2, 66, 0), is(true));
+		}
+
+		@Test
+		void leaves_out_the_inside_of_a_shell() {
+			final Sphere sphere = new Sphere(at(0, 64, 0), 5, 3);
+			assertThat(sphere.contains(0, 64, 0), is(false));
+			assertThat(sphere.contains(4, 64, 0), is(true));
+		}
+
+		@Test
+		void has_bounds_as_large_as_its_radius_requests() {
+			final Cuboid bounds = new Sphere(at(0, 64, 0), 1e30, 0).getBounds();
+			assertThat(bounds.getVolume(), is(greaterThan(1L << 40)));
+		}
+	}
+
+	@Nested
+	class cylinder {
+		@Test
+		void has_the_requested_number_of_layers() {
+			final Cylinder cylinder = new Cylinder(at(0, 64, 0), 2, 3, 0);
+			assertThat(cylinder.getBounds().getMinY(), is(64));
+			assertThat(cylinder.getBounds().getMaxY(), is(66));
+			assertThat(blocks(cylinder), hasSize(3 * 9));
+		}
+
+		@Test
+		void rejects_no_layers() {
+			assertThrows(IllegalArgumentException.class, () -> new Cylinder(at(0, 64, 0), 2, 0, 0));
+		}
+	}
+
+	@Nested
+	class bounds {
+		@Test
+		void are_limited_to_the_height_of_the_world() {
+			final Cuboid bounds = Shape.bounds(WORLD, 0, -100, 0, 1, 400, 1);
+			assertThat(bounds.getMinY(), is(-64));
+			assertThat(bounds.getMaxY(), is(319));
+		}
+
+		@Test
+		void reject_shapes_outside_the_height_of_the_world() {
+			assertThrows(IllegalArgumentException.class, () -> Shape.bounds(WORLD, 0, 400, 0, 1, 410, 1));
+		}
+	}
+}